@@ -0,0 +1,84 @@
+import jdk.incubator.vector.*;
+
+/**
+ * ColumnKernel on jdk.incubator.vector lanes: each loop step tests a whole vector of items (e.g. 8 codes, or 4
+ * masks or prices, with 256-bit AVX2) and ORs the lanes of the passing items into result word bits.
+ * <p>Compiled apart from src, since it needs --add-modules jdk.incubator.vector; loaded by name by ColumnKernel,
+ * which falls back to ColumnKernel.SCALAR without it. Items left over past the last whole vector run the scalar
+ * loop.
+ */
+public final class VectorColumnKernel implements ColumnKernel {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // Same lane count as DOUBLES, so a price compare's mask can pick lanes of PRICE_LANE_BITS.
+    private static final VectorSpecies<Long> PRICE_LONGS = VectorSpecies.of(long.class, DOUBLES.vectorShape());
+    // Lane k holds k, the distance to shift a lane's pass (1) or fail (0) to its bit of the result word.
+    private static final IntVector INT_LANE_INDEXES = IntVector.zero(INTS).addIndex(1);
+    private static final LongVector LONG_LANE_BITS = laneBits(LONGS);
+    private static final LongVector PRICE_LANE_BITS = laneBits(PRICE_LONGS);
+
+    /**
+     * Creates a VectorColumnKernel; public for ColumnKernel's reflective load. Use ColumnKernel.VECTOR.
+     */
+    public VectorColumnKernel() {}
+
+    /**
+     * Builds the lanes picked for passing items: lane k holds 1 << k, so ORing them gives the items' result bits.
+     * @param species the lanes' species
+     * @return LongVector
+     */
+    private static LongVector laneBits(VectorSpecies<Long> species) {
+        return LongVector.broadcast(species, 1).lanewise(VectorOperators.LSHL, LongVector.zero(species).addIndex(1));
+    }
+
+    @Override
+    public long codeWord(int[] codes, long allowed, int from, int to) {
+        //Int lanes shift by 0-31, so the 64-bit allowed mask is split into halves and each lane picks its half.
+        IntVector lowHalf = IntVector.broadcast(INTS, (int) allowed);
+        IntVector highHalf = IntVector.broadcast(INTS, (int) (allowed >>> 32));
+        long word = 0L;
+        int id = from;
+        for (; id <= to - INTS.length(); id += INTS.length()) {
+            IntVector code = IntVector.fromArray(INTS, codes, id);
+            //Shift counts are taken mod 32, and NO_VALUE (-1) is unsigned >= 32, so it reads bit 63 as in SCALAR.
+            IntVector half = lowHalf.blend(highHalf, code.compare(VectorOperators.UNSIGNED_GE, 32));
+            int passes = half.lanewise(VectorOperators.LSHR, code)
+                    .lanewise(VectorOperators.AND, 1)
+                    .lanewise(VectorOperators.LSHL, INT_LANE_INDEXES)
+                    .reduceLanes(VectorOperators.OR);
+            word |= (passes & 0xFFFFFFFFL) << (id - from);
+        }
+        return word | SCALAR.codeWord(codes, allowed, id, to) << (id - from);
+    }
+
+    @Override
+    public long maskWord(long[] masks, long operand, int from, int to) {
+        LongVector operandLanes = LongVector.broadcast(LONGS, operand);
+        LongVector none = LongVector.zero(LONGS);
+        long word = 0L;
+        int id = from;
+        for (; id <= to - LONGS.length(); id += LONGS.length()) {
+            VectorMask<Long> passes = LongVector.fromArray(LONGS, masks, id)
+                    .and(operandLanes)
+                    .compare(VectorOperators.NE, 0);
+            word |= none.blend(LONG_LANE_BITS, passes).reduceLanes(VectorOperators.OR) << (id - from);
+        }
+        return word | SCALAR.maskWord(masks, operand, id, to) << (id - from);
+    }
+
+    @Override
+    public long priceWord(double[] prices, double minPrice, double maxPrice, int from, int to) {
+        LongVector none = LongVector.zero(PRICE_LONGS);
+        long word = 0L;
+        int id = from;
+        for (; id <= to - DOUBLES.length(); id += DOUBLES.length()) {
+            DoubleVector price = DoubleVector.fromArray(DOUBLES, prices, id);
+            VectorMask<Double> passes = price.compare(VectorOperators.GE, minPrice)
+                    .and(price.compare(VectorOperators.LE, maxPrice));
+            long bits = none.blend(PRICE_LANE_BITS, passes.cast(PRICE_LONGS)).reduceLanes(VectorOperators.OR);
+            word |= bits << (id - from);
+        }
+        return word | SCALAR.priceWord(prices, minPrice, maxPrice, id, to) << (id - from);
+    }
+}
@@ -0,0 +1,271 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A utility class that encodes Filter values as bits within primitive long masks.
+ * <p>Each Filter gets its own long; the bit index for a value is:
+ * <li>its ordinal for Filters with their own Enum (e.g. TYPE, PROTEIN, SAUCES),
+ * <li>0 for false and 1 for true for Boolean Filters (e.g. PICKLES),
+ * <li>its id in a Dictionary for free-text Filters (i.e. BUN, CHEESE, LEAFY_GREENS).
+ * <p>Each Menu has its own Dictionary, assigning ids to the values its items hold as they're added, so masks are
+ * only comparable within one Menu; see CompiledQuery.compiledFor(). A reloaded Menu starts a new Dictionary, so
+ * values no longer on the menu don't use up ids.
+ * <p>Collections set one bit per element, so a menu item's whole attribute set is one long per Filter and a
+ * match is a handful of AND/compare operations.
+ * <p>A long only has 64 bits. Values that can't be given a bit are reported as -1, and callers are expected
+ * to fall back to the Object-based comparisons in DreamMenuItem.
+ * <p>The top bit is never assigned, so -1L (all bits set) can safely flag a failed encoding.
+ */
+public final class AttributeMasks {
+    /**
+     * Number of distinct values a single Filter can encode.
+     */
+    public static final int MAX_VALUES_PER_FILTER = Long.SIZE - 1;
+
+    /**
+     * Number of masks needed to encode every Filter; one per Filter value.
+     */
+    public static final int MASK_COUNT = Filter.values().length;
+
+    //Bit of the 'false' value for Boolean Filters. False is treated as 'absent' by 'NONE' searches.
+    private static final long BOOLEAN_FALSE_BIT = 1L;
+
+    /**
+     * Ids for the free-text Filter values of one Menu's items, and one shared copy of each value.
+     * <p>Ids are assigned densely from 0 in the order values are first added, up to MAX_VALUES_PER_FILTER per
+     * Filter. Once a Filter is full, further values are reported once on System.err and given no id, so items
+     * holding them can't be indexed and are checked by value instead (see PostingIndex.isIndexed()).
+     * <p>Thread-safe: the chunks of a parallel parse add to one Dictionary, and the GUI reads it.
+     */
+    public static final class Dictionary {
+        // Each free-text Filter's ids by value. Concurrent so lookups never lock.
+        private final Map<Filter, Map<Object, Integer>> ids = new EnumMap<>(Filter.class);
+        // Reverse of ids: the value for each id. Written rarely (first sight of a value), read often.
+        private final Map<Filter, List<Object>> values = new EnumMap<>(Filter.class);
+        // Filters already reported full, so each is only reported once.
+        private final Set<Filter> reportedFull = EnumSet.noneOf(Filter.class);
+        // Ids assigned across all Filters; each Filter locks separately, so this is atomic.
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * Creates an empty Dictionary.
+         */
+        public Dictionary() {
+            for (Filter filter : Filter.values()) {
+                ids.put(filter, new ConcurrentHashMap<>());
+                values.put(filter, new CopyOnWriteArrayList<>());
+            }
+        }
+
+        /**
+         * Gets a free-text value's id.
+         * @param filter the Filter the value belongs to
+         * @param value the value
+         * @param add true to assign the value an id if it hasn't one
+         * @return the id in [0, 62], or -1 if the value has none (and add is false, or the Filter is full)
+         */
+        private int idOf(Filter filter, Object value, boolean add) {
+            Map<Object, Integer> filterIds = ids.get(filter);
+            Integer id = filterIds.get(value);
+            if (id != null || !add) return id == null ? -1 : id;
+            //Only lock on first sight of a value so ids stay dense and unique.
+            synchronized (filterIds) {
+                id = filterIds.get(value);
+                if (id != null) return id;
+                if (filterIds.size() >= MAX_VALUES_PER_FILTER) {
+                    if (reportedFull.add(filter)) {
+                        System.err.println("More than " + MAX_VALUES_PER_FILTER + " distinct " + filter
+                                + " values on the menu; items with '" + value + "' or any other new value are"
+                                + " searched without the index.");
+                    }
+                    return -1;
+                }
+                //Publish the reverse lookup first, so any thread that can see the id can also decode it.
+                values.get(filter).add(value);
+                filterIds.put(value, filterIds.size());
+                size.incrementAndGet();
+                return filterIds.size() - 1;
+            }
+        }
+
+        /**
+         * Gets the number of ids assigned across all Filters.
+         * <p>Only ever grows, so an unchanged size means no value has been given an id in between.
+         * @return int
+         */
+        public int size() {return size.get();}
+
+        /**
+         * Swaps a free-text Filter value for this Dictionary's single shared copy, adding it if new.
+         * <p>Used when loading the menu, so equal values are the same String object: the heap holds one copy
+         * of each, and lookups usually succeed on the reference check.
+         * @param filter the Filter the value belongs to
+         * @param value the String
+         * @return the Dictionary's copy, or the value itself if the Filter is full
+         */
+        public String intern(Filter filter, String value) {
+            if (filter.hasEnumRepresentingItsValues()) return value;
+            int id = idOf(filter, value, true);
+            return id < 0 ? value : (String) values.get(filter).get(id);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private AttributeMasks() {}
+
+    /**
+     * Finds the bit index for a single (non-Collection) value of a Filter.
+     * @param dictionary the Dictionary of the Menu the value is encoded for
+     * @param filter the Filter the value belongs to
+     * @param value a single value; must not be null
+     * @param add true to give a free-text value an id if it hasn't one (for a menu item's values)
+     * @return the bit index in [0, 62], or -1 if the value can't be encoded
+     * (e.g. SpecialChoice values, a free-text value without an id, or a full Filter).
+     */
+    private static int bitIndexOf(Dictionary dictionary, Filter filter, Object value, boolean add) {
+        if (filter.hasEnumRepresentingItsValues()) {
+            if (!filter.isConstantOfItsEnum(value)) return -1;
+            int ordinal = ((Enum<?>) value).ordinal();
+            return ordinal < MAX_VALUES_PER_FILTER ? ordinal : -1;
+        }
+        if (filter.valuesCanBeRepresentedByBooleanWrapper()) {
+            if (!(value instanceof Boolean booleanValue)) return -1;
+            return booleanValue ? 1 : 0;
+        }
+        if (!(value instanceof String)) return -1;
+        return dictionary.idOf(filter, value, add);
+    }
+
+    /**
+     * Decodes a bit index back to the single value it represents for a Filter; the reverse of maskOf() for
+     * single values.
+     * @param dictionary the Dictionary of the Menu the bit was encoded for
+     * @param filter the Filter the value belongs to
+     * @param bitIndex the bit index
+     * @return the value (an Enum constant, Boolean or String), <b>or null</b> if no value has that bit.
+     */
+    public static Object valueOf(Dictionary dictionary, Filter filter, int bitIndex) {
+        if (bitIndex < 0) return null;
+        if (filter.hasEnumRepresentingItsValues()) {
+            List<Object> enumValues = filter.getEnumValues();
+            return bitIndex < enumValues.size() ? enumValues.get(bitIndex) : null;
+        }
+        if (filter.valuesCanBeRepresentedByBooleanWrapper()) {
+            return bitIndex <= 1 ? bitIndex == 1 : null;
+        }
+        List<Object> values = dictionary.values.get(filter);
+        return bitIndex < values.size() ? values.get(bitIndex) : null;
+    }
+
+    /**
+     * Encodes a search criteria value (single or Collection) as a mask of its bits.
+     * <p>Free-text values are only looked up: a value none of the Menu's items hold has no id, and can't be
+     * encoded.
+     * @param dictionary the Dictionary of the Menu to be searched
+     * @param filter the Filter the value belongs to
+     * @param value a single value or a Collection of values; must not be null
+     * @return the mask, or -1L if any value could not be encoded. An empty Collection is 0.
+     */
+    public static long maskOf(Dictionary dictionary, Filter filter, Object value) {
+        return maskOf(dictionary, filter, value, false);
+    }
+
+    /**
+     * Encodes a search criteria value (single or Collection) as a mask of the bits of its values which have one.
+     * <p>Like maskOf(), except a free-text value none of the Menu's items hold adds no bits rather than failing:
+     * no indexed item can hold it, so leaving it out selects the same indexed items.
+     * @param dictionary the Dictionary of the Menu to be searched
+     * @param filter the Filter the value belongs to
+     * @param value a single value or a Collection of values; must not be null
+     * @return the mask, which is 0 if no value has an id; or -1L if any value is of a type that can't be encoded
+     * (e.g. a SpecialChoice).
+     */
+    public static long knownMaskOf(Dictionary dictionary, Filter filter, Object value) {
+        if (filter.hasEnumRepresentingItsValues() || filter.valuesCanBeRepresentedByBooleanWrapper()) {
+            return maskOf(dictionary, filter, value, false);
+        }
+        long mask = 0L;
+        for (Object element : value instanceof Collection<?> values ? values : List.of(value)) {
+            if (!(element instanceof String)) return -1L;
+            int bit = dictionary.idOf(filter, element, false);
+            if (bit >= 0) mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Encodes a Filter value (single or Collection) as a mask of its bits.
+     * @param dictionary the Dictionary of the Menu the value is encoded for
+     * @param filter the Filter the value belongs to
+     * @param value a single value or a Collection of values; must not be null
+     * @param add true to give free-text values ids if they haven't any
+     * @return the mask, or -1L if any value could not be encoded. An empty Collection is 0.
+     */
+    private static long maskOf(Dictionary dictionary, Filter filter, Object value, boolean add) {
+        if (value instanceof Collection<?> values) {
+            long mask = 0L;
+            for (Object element : values) {
+                int bit = bitIndexOf(dictionary, filter, element, add);
+                if (bit < 0) return -1L;
+                mask |= 1L << bit;
+            }
+            return mask;
+        }
+        int bit = bitIndexOf(dictionary, filter, value, add);
+        return bit < 0 ? -1L : 1L << bit;
+    }
+
+    /**
+     * Encodes a menu item's attribute Map into one mask per Filter, indexed by Filter ordinal.
+     * <p>Free-text values the Dictionary hasn't seen are given ids. Filters missing from the Map are encoded as
+     * 0 (no bits set).
+     * @param dictionary the Dictionary of the Menu the item is being added to
+     * @param filterMap Map of the menu item's attributes
+     * @return array of MASK_COUNT masks, or null if any value could not be encoded.
+     */
+    public static long[] encodeMenuItem(Dictionary dictionary, Map<Filter, FilterValue> filterMap) {
+        return encode(dictionary, filterMap, true);
+    }
+
+    /**
+     * Encodes a menu item's attribute Map into one mask per Filter without adding to the Dictionary, e.g. to
+     * match an item against a query compiled for a Menu it may not be on.
+     * @param dictionary the Dictionary of the Menu whose queries the item is matched against
+     * @param filterMap Map of the menu item's attributes
+     * @return array of MASK_COUNT masks, or null if any value could not be encoded.
+     */
+    public static long[] encodeAttributes(Dictionary dictionary, Map<Filter, FilterValue> filterMap) {
+        return encode(dictionary, filterMap, false);
+    }
+
+    /**
+     * Encodes a menu item's attribute Map into one mask per Filter; see encodeMenuItem().
+     * @param dictionary the Dictionary
+     * @param filterMap Map of the menu item's attributes
+     * @param add true to give free-text values ids if they haven't any
+     * @return array of MASK_COUNT masks, or null if any value could not be encoded.
+     */
+    private static long[] encode(Dictionary dictionary, Map<Filter, FilterValue> filterMap, boolean add) {
+        long[] masks = new long[MASK_COUNT];
+        for (Map.Entry<Filter, FilterValue> entry : filterMap.entrySet()) {
+            long mask = maskOf(dictionary, entry.getKey(), entry.getValue().toObject(), add);
+            if (mask == -1L) return null;
+            masks[entry.getKey().ordinal()] = mask;
+        }
+        return masks;
+    }
+
+    /**
+     * Gets the bits which a menu item must NOT have for a 'NONE' search on this Filter to match it.
+     * <p>A Boolean false is treated as absent, so it's the only bit ever allowed.
+     * @param filter the Filter searched as 'NONE'
+     * @return mask of forbidden bits
+     */
+    public static long absentForbiddenMask(Filter filter) {
+        return filter.valuesCanBeRepresentedByBooleanWrapper() ? ~BOOLEAN_FALSE_BIT : -1L;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The inner loops of MenuColumns.scan(): each evaluates one predicate on a run of up to 64 consecutive items of
+ * one column, setting one bit of a result word per item.
+ * <p>SCALAR runs them as plain primitive loops. VECTOR runs them on jdk.incubator.vector lanes, several items per
+ * instruction; it is compiled separately from src-vector (see the README), so it's only present, and only usable,
+ * when that was built and the JVM was started with --add-modules jdk.incubator.vector.
+ * <p>Implementations must agree bit for bit, and hold no state, so one can be shared by every MenuColumns.
+ */
+public interface ColumnKernel {
+    /**
+     * The plain primitive loops; always available.
+     */
+    ColumnKernel SCALAR = new ScalarColumnKernel();
+
+    /**
+     * The Vector API loops, <b>or null</b> if VectorColumnKernel wasn't compiled or the module isn't loaded.
+     */
+    ColumnKernel VECTOR = loadVectorKernel();
+
+    /**
+     * Tests each item's int column code against a mask of allowed codes: bit c of allowed passes code c.
+     * <p>Codes are in [0, 62], or MenuColumns.NO_VALUE (-1), which reads bit 63.
+     * @param codes an int code column
+     * @param allowed mask of passing codes
+     * @param from id of the first item
+     * @param to id past the last item; at most from + 64
+     * @return word with bit j set if item from + j passes
+     */
+    long codeWord(int[] codes, long allowed, int from, int to);
+
+    /**
+     * Tests each item's long mask column value for any bit shared with an operand.
+     * @param masks a long mask column
+     * @param operand the predicate's operand mask
+     * @param from id of the first item
+     * @param to id past the last item; at most from + 64
+     * @return word with bit j set if item from + j shares a bit with the operand
+     */
+    long maskWord(long[] masks, long operand, int from, int to);
+
+    /**
+     * Tests each item's price for being within a range, inclusive.
+     * @param prices the price column
+     * @param minPrice the lowest passing price
+     * @param maxPrice the highest passing price
+     * @param from id of the first item
+     * @param to id past the last item; at most from + 64
+     * @return word with bit j set if item from + j passes
+     */
+    long priceWord(double[] prices, double minPrice, double maxPrice, int from, int to);
+
+    /**
+     * Gets the fastest kernel this JVM can run.
+     * @return VECTOR if available, otherwise SCALAR
+     */
+    static ColumnKernel fastest() {return VECTOR != null ? VECTOR : SCALAR;}
+
+    /**
+     * Loads VectorColumnKernel by name, so this compiles and runs without it or its module.
+     * @return a new VectorColumnKernel, or null if it can't be loaded
+     */
+    private static ColumnKernel loadVectorKernel() {
+        try {
+            return (ColumnKernel) Class.forName("VectorColumnKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            //Not compiled, or compiled but jdk.incubator.vector isn't in the boot layer.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+import java.util.*;
+
+/**
+ * A user's search criteria compiled once into an ordered plan of type-specialised predicates.
+ * <p>Each attribute predicate tests one Filter's AttributeMasks mask on a menu item; the final
+ * predicate tests the item's price. The plan is held in parallel primitive arrays so the per-item loop
+ * is a single switch with no boxing, instanceof checks or allocation.
+ * <p>Immutable, so it can be reused across repeated searches. Its masks are only meaningful for Menus sharing
+ * the AttributeMasks.Dictionary it was compiled with; Menus recompile a query from another via compiledFor().
+ */
+public final class CompiledQuery {
+
+    /**
+     * The kinds of predicate a CompiledQuery can hold.
+     */
+    public enum PredicateKind {
+        /** Single-valued attribute must equal the single chosen value. */
+        VALUE_EQUALS,
+        /** Single chosen value must be in the item's set, or the item's single value in the chosen set. */
+        SET_CONTAINS,
+        /** Item's set must share at least one value with the chosen set. */
+        SET_INTERSECTS,
+        /** Item must not have the attribute at all ('NONE' choice). */
+        MUST_BE_ABSENT,
+        /** Item's price must be within the min and max price. */
+        PRICE_RANGE
+    }
+
+    // Weight of a price within range when scoring near matches; see Filter.nearMatchWeight().
+    private static final int PRICE_MATCH_WEIGHT = 3;
+
+    private final DreamMenuItem criteria;
+    // The Dictionary free-text values were encoded with, i.e. of the Menu the query was compiled for.
+    private final AttributeMasks.Dictionary dictionary;
+    // False if any criteria value couldn't be encoded; only PRICE_RANGE is then compiled.
+    private final boolean encoded;
+    // Bit per Filter ordinal whose free-text criteria values included ones the Dictionary had no id for.
+    private final long unknownValueFilters;
+    // dictionary.size() when compiled; once it grows, an unknown value may have been given an id.
+    private final int dictionarySize;
+
+    // THE PLAN, AS PARALLEL ARRAYS. Index i describes predicate i.
+    private final PredicateKind[] kinds;
+    private final Filter[] filters; //null for PRICE_RANGE
+    private final long[] operands; //chosen value bits, or forbidden bits for MUST_BE_ABSENT
+    private final double minPrice;
+    private final double maxPrice;
+
+    /**
+     * Private constructor; use compile().
+     */
+    private CompiledQuery(DreamMenuItem criteria, AttributeMasks.Dictionary dictionary, boolean encoded,
+                          long unknownValueFilters, int dictionarySize,
+                          PredicateKind[] kinds, Filter[] filters, long[] operands) {
+        this.criteria = criteria;
+        this.dictionary = dictionary;
+        this.encoded = encoded;
+        this.unknownValueFilters = unknownValueFilters;
+        this.dictionarySize = dictionarySize;
+        this.kinds = kinds;
+        this.filters = filters;
+        this.operands = operands;
+        this.minPrice = criteria.getMinPrice();
+        this.maxPrice = criteria.getMaxPrice();
+    }
+
+    /**
+     * Compiles search criteria into a plan.
+     * <p>Attribute predicates are ordered by Filter.searchOrder(); PRICE_RANGE goes last.
+     * SelectivityStats may reorder them later.
+     * <p>FilterValue.NONE compiles to MUST_BE_ABSENT, matching DreamMenuItem.matches().
+     * <p>A free-text value none of the Menu's items hold has no Dictionary id, so no indexed item can match it:
+     * it adds no bits, and a predicate left with none is SET_CONTAINS with operand 0, passing no indexed item.
+     * Unindexed items are checked by value as always, so the plan stays encoded and selects the same items.
+     * @param criteria DreamMenuItem representing the user's search criteria
+     * @param dictionary the AttributeMasks.Dictionary of the Menu to be searched
+     * @return a new CompiledQuery
+     */
+    public static CompiledQuery compile(DreamMenuItem criteria, AttributeMasks.Dictionary dictionary) {
+        Map<Filter, FilterValue> criteriaMap = criteria.getAllFilters();
+        List<Filter> sortedFilters = new ArrayList<>(criteriaMap.keySet());
+        sortedFilters.sort(Comparator.comparing(Filter::searchOrder));
+
+        int size = sortedFilters.size() + 1; //+1 for the price
+        PredicateKind[] kinds = new PredicateKind[size];
+        Filter[] filters = new Filter[size];
+        long[] operands = new long[size];
+        int dictionarySize = dictionary.size(); //read first, so a value given an id meanwhile makes the plan stale
+        long unknownValueFilters = 0L;
+
+        for (int i = 0; i < sortedFilters.size(); i++) {
+            Filter filter = sortedFilters.get(i);
+            FilterValue criteriaValue = criteriaMap.get(filter);
+            filters[i] = filter;
+
+            if (criteriaValue instanceof FilterValue.Absent) {
+                kinds[i] = PredicateKind.MUST_BE_ABSENT;
+                operands[i] = AttributeMasks.absentForbiddenMask(filter);
+                continue;
+            }
+
+            operands[i] = AttributeMasks.maskOf(dictionary, filter, criteriaValue.toObject());
+            if (operands[i] == -1L) {
+                operands[i] = AttributeMasks.knownMaskOf(dictionary, filter, criteriaValue.toObject());
+                unknownValueFilters |= 1L << filter.ordinal();
+            }
+            if (operands[i] == -1L) {
+                //Can't encode; keep only the price so callers fall back to DreamMenuItem.matches().
+                return new CompiledQuery(criteria, dictionary, false, 0L, dictionarySize,
+                        new PredicateKind[]{PredicateKind.PRICE_RANGE}, new Filter[1], new long[1]);
+            }
+
+            boolean criteriaIsCollection = criteriaValue.isSet();
+            if (criteriaIsCollection && filter.isCollectionOnMenuItems()) {
+                kinds[i] = PredicateKind.SET_INTERSECTS;
+            } else if (criteriaIsCollection || filter.isCollectionOnMenuItems() || operands[i] == 0) {
+                //Including a single value the Menu doesn't hold: VALUE_EQUALS 0 would pass items without the attribute.
+                kinds[i] = PredicateKind.SET_CONTAINS;
+            } else {
+                kinds[i] = PredicateKind.VALUE_EQUALS;
+            }
+        }
+        kinds[size - 1] = PredicateKind.PRICE_RANGE;
+
+        return new CompiledQuery(criteria, dictionary, true, unknownValueFilters, dictionarySize,
+                kinds, filters, operands);
+    }
+
+    /**
+     * Gets this query compiled with a Menu's AttributeMasks.Dictionary, e.g. when it was compiled for a Menu
+     * since reloaded.
+     * <p>Also recompiles if the plan left out free-text values the Dictionary had no id for and it has given out
+     * ids since, as an item added with one of those values would be indexed under a bit the plan lacks.
+     * @param dictionary the Dictionary of the Menu to be searched
+     * @return this CompiledQuery if it is current for that Dictionary; otherwise the same criteria compiled
+     * afresh, in Filter.searchOrder().
+     */
+    public CompiledQuery compiledFor(AttributeMasks.Dictionary dictionary) {
+        boolean current = dictionary == this.dictionary
+                && (unknownValueFilters == 0 || dictionary.size() == dictionarySize);
+        return current ? this : compile(criteria, dictionary);
+    }
+
+    /**
+     * Tests a menu item's attribute masks and price against every predicate, in plan order.
+     * <p>Requires isEncoded(); otherwise use the original criteria's Object-based matching.
+     * @param itemMasks the menu item's masks, indexed by Filter ordinal
+     * @param price the menu item's price
+     * @return true if every predicate passes
+     */
+    public boolean matches(long[] itemMasks, double price) {
+        return test(itemMasks, price, true);
+    }
+
+    /**
+     * Tests a menu item's attribute masks against every attribute predicate, ignoring price.
+     * @param itemMasks the menu item's masks, indexed by Filter ordinal
+     * @return true if every attribute predicate passes
+     */
+    public boolean matchesAttributes(long[] itemMasks) {
+        return test(itemMasks, 0, false);
+    }
+
+    /**
+     * Checks a price against the criteria's min and max price.
+     * @param price the menu item's price
+     * @return true if min <= price <= max
+     */
+    public boolean priceInRange(double price) {
+        return price >= minPrice && price <= maxPrice;
+    }
+
+    /**
+     * Evaluates a single predicate of the plan on a menu item.
+     * <p>Requires isEncoded().
+     * @param index position of the predicate in the plan
+     * @param itemMasks the menu item's masks, indexed by Filter ordinal
+     * @param price the menu item's price
+     * @return true if the predicate passes
+     */
+    public boolean predicatePasses(int index, long[] itemMasks, double price) {
+        long itemMask = kinds[index] == PredicateKind.PRICE_RANGE ? 0L : itemMasks[filters[index].ordinal()];
+        return predicatePasses(index, itemMask, price);
+    }
+
+    /**
+     * Evaluates a single predicate of the plan given only the tested Filter's mask, e.g. from a MenuColumns column.
+     * <p>Requires isEncoded().
+     * @param index position of the predicate in the plan
+     * @param itemMask the menu item's mask for filterAt(index); ignored for PRICE_RANGE
+     * @param price the menu item's price; ignored unless PRICE_RANGE
+     * @return true if the predicate passes
+     */
+    public boolean predicatePasses(int index, long itemMask, double price) {
+        return switch (kinds[index]) {
+            case VALUE_EQUALS -> itemMask == operands[index];
+            case SET_CONTAINS, SET_INTERSECTS -> (itemMask & operands[index]) != 0;
+            case MUST_BE_ABSENT -> (itemMask & operands[index]) == 0;
+            case PRICE_RANGE -> priceInRange(price);
+        };
+    }
+
+    /**
+     * Identifies whether every item this plan selects is also selected by another plan, on any menu--e.g. when
+     * a customer adds a constraint or tightens the price range.
+     * <p>Decided from the predicates alone. Conservative: false if it can't tell, including when either plan
+     * isn't encoded or they were compiled with different Dictionaries.
+     * @param other the plan to compare against
+     * @return true if this plan is at least as narrow as other; true for both if they select the same items.
+     */
+    public boolean selectsSubsetOf(CompiledQuery other) {
+        if (!encoded || !other.encoded || dictionary != other.dictionary) return false;
+        if (minPrice < other.minPrice || maxPrice > other.maxPrice) return false;
+        //Each of other's attribute predicates must be implied by this plan's predicate on the same Filter.
+        for (int j = 0; j < other.kinds.length; j++) {
+            if (other.kinds[j] == PredicateKind.PRICE_RANGE) continue;
+            int i = Arrays.asList(filters).indexOf(other.filters[j]);
+            if (i < 0 || !implies(i, other, j)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Identifies whether an item passing one of this plan's predicates must pass a predicate of another plan
+     * on the same Filter.
+     * <p>VALUE_EQUALS only occurs for single-valued Filters and a single chosen value, so it passes exactly when
+     * the item's mask shares a bit with the operand, like SET_CONTAINS and SET_INTERSECTS.
+     * <p>Free-text values left out of the operand (see compile()) are still matched on unindexed items, so a
+     * predicate missing some only implies the other's if both plans chose the same values.
+     * @param index position of the predicate in this plan
+     * @param other the other plan
+     * @param otherIndex position of the predicate in the other plan
+     * @return true if passing this predicate implies passing the other's
+     */
+    private boolean implies(int index, CompiledQuery other, int otherIndex) {
+        boolean isAbsent = kinds[index] == PredicateKind.MUST_BE_ABSENT;
+        boolean otherIsAbsent = other.kinds[otherIndex] == PredicateKind.MUST_BE_ABSENT;
+        if (isAbsent != otherIsAbsent) return false;
+        Filter filter = filters[index];
+        if ((unknownValueFilters & 1L << filter.ordinal()) != 0) {
+            return criteria.getAllFilters().get(filter).equals(other.criteria.getAllFilters().get(filter));
+        }
+        long operand = operands[index];
+        long otherOperand = other.operands[otherIndex];
+        //Forbidding more values is narrower; allowing fewer values is narrower.
+        return isAbsent ? (otherOperand & ~operand) == 0 : (operand & ~otherOperand) == 0;
+    }
+
+    /**
+     * Gets how much passing a predicate counts towards an item's near-match score.
+     * @param index position of the predicate in the plan
+     * @return the Filter's nearMatchWeight(), or a fixed weight for PRICE_RANGE
+     */
+    public int predicateWeight(int index) {
+        return kinds[index] == PredicateKind.PRICE_RANGE ? PRICE_MATCH_WEIGHT : filters[index].nearMatchWeight();
+    }
+
+    /**
+     * Creates a copy of this plan with its predicates in a different order, e.g. by SelectivityStats.
+     * @param order the new order, as positions in this plan; must be a permutation of 0..size()-1
+     * @return a new CompiledQuery, or this one if the order is unchanged
+     */
+    public CompiledQuery reorder(Integer[] order) {
+        boolean unchanged = true;
+        PredicateKind[] newKinds = new PredicateKind[kinds.length];
+        Filter[] newFilters = new Filter[kinds.length];
+        long[] newOperands = new long[kinds.length];
+        for (int i = 0; i < order.length; i++) {
+            unchanged &= order[i] == i;
+            newKinds[i] = kinds[order[i]];
+            newFilters[i] = filters[order[i]];
+            newOperands[i] = operands[order[i]];
+        }
+        if (unchanged) return this;
+        return new CompiledQuery(criteria, dictionary, encoded, unknownValueFilters, dictionarySize,
+                newKinds, newFilters, newOperands);
+    }
+
+    /**
+     * Creates a copy of this plan with PRICE_RANGE as its first predicate, keeping the others' order.
+     * <p>Used when the price range is answered first from a PriceIndex.
+     * @return a new CompiledQuery, or this one if PRICE_RANGE is already first
+     */
+    public CompiledQuery withPriceRangeFirst() {
+        Integer[] order = new Integer[kinds.length];
+        int position = 1;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == PredicateKind.PRICE_RANGE) order[0] = i;
+            else order[position++] = i;
+        }
+        return reorder(order);
+    }
+
+    /**
+     * The per-item predicate loop.
+     * @param itemMasks the menu item's masks, indexed by Filter ordinal
+     * @param price the menu item's price
+     * @param checkPrice false to skip PRICE_RANGE
+     * @return true if every evaluated predicate passes
+     */
+    private boolean test(long[] itemMasks, double price, boolean checkPrice) {
+        for (int i = 0; i < kinds.length; i++) {
+            if (!checkPrice && kinds[i] == PredicateKind.PRICE_RANGE) continue;
+            if (!predicatePasses(i, itemMasks, price)) return false;
+        }
+        return true;
+    }
+
+    //                              ***GETTERS***
+
+    /**
+     * Gets the criteria this was compiled from; used for Object-based fallback matching.
+     * @return the search DreamMenuItem
+     */
+    public DreamMenuItem getCriteria() {return criteria;}
+
+    /**
+     * Gets the AttributeMasks.Dictionary this was compiled with.
+     * @return the Dictionary
+     */
+    public AttributeMasks.Dictionary getDictionary() {return dictionary;}
+
+    /**
+     * Identifies whether every criteria value was compiled to masks.
+     * @return true if matches() can be used; false if callers must fall back to DreamMenuItem.matches().
+     */
+    public boolean isEncoded() {return encoded;}
+
+    /**
+     * Gets the number of predicates in the plan, including PRICE_RANGE.
+     * @return int
+     */
+    public int size() {return kinds.length;}
+
+    /**
+     * Gets the kind of the predicate at a plan position.
+     * @param index position in the plan
+     * @return PredicateKind
+     */
+    public PredicateKind kindAt(int index) {return kinds[index];}
+
+    /**
+     * Gets the Filter tested by the predicate at a plan position.
+     * @param index position in the plan
+     * @return Filter, <b>or null</b> for PRICE_RANGE
+     */
+    public Filter filterAt(int index) {return filters[index];}
+
+    /**
+     * Gets the operand mask of the predicate at a plan position.
+     * @param index position in the plan
+     * @return the chosen value bits, or the forbidden bits for MUST_BE_ABSENT
+     */
+    public long operandAt(int index) {return operands[index];}
+
+    /**
+     * Gets the min price searched for
+     * @return double
+     */
+    public double getMinPrice() {return minPrice;}
+
+    /**
+     * Gets the max price searched for
+     * @return double
+     */
+    public double getMaxPrice() {return maxPrice;}
+}
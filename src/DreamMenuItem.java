@@ -10,19 +10,41 @@ public final class DreamMenuItem {
      * Created by Dr Andreas Shepley for COSC120 on 25/04/2025
      * Adapted by Ariel Halperin.
      */
-    private final Map<Filter,Object> filterMap;
+    private final Map<Filter, FilterValue> filterMap;
     private final double minPrice;
     private final double maxPrice;
 
+    // Primitive encoding of filterMap (see AttributeMasks) for the Dictionary of the last query this item was
+    // matched against; encoded on first use for each Dictionary.
+    private EncodedAttributes encodedAttributes;
+    // This item's filterMap compiled as search criteria, for the last Dictionary asked for; compiled on first use.
+    private CompiledQuery compiledQuery;
+    // This item's filterMap in Filter.searchOrder(), for matching by value; ordered on first use as criteria.
+    private SearchOrder searchOrder;
+
+    /**
+     * Search criteria Filters and values as parallel arrays, in the order they're checked.
+     * @param filters the Filters, in Filter.searchOrder()
+     * @param values each Filter's value
+     */
+    private record SearchOrder(Filter[] filters, FilterValue[] values) {}
+
+    /**
+     * This item's attributes encoded as masks with one Menu's Dictionary.
+     * @param dictionary the AttributeMasks.Dictionary
+     * @param masks the masks indexed by Filter ordinal, or null if a value has no id in the Dictionary
+     */
+    private record EncodedAttributes(AttributeMasks.Dictionary dictionary, long[] masks) {}
+
     /**
      * Constructor for DreamMenuItems used as user search criteria. Accepts min and max price parameters.
-     * @param filterMap immutable Map of Filters and Objects representing this item's attributes
+     * @param filterMap immutable Map of Filters and FilterValues representing this item's attributes
      *                  <p><b>Note, cannot hold nulls</b></p>
      * @param minPrice double
      * @param maxPrice double
      */
-    public DreamMenuItem(Map<Filter, Object> filterMap, double minPrice, double maxPrice) {
-        this.filterMap=Map.copyOf(filterMap);
+    public DreamMenuItem(Map<Filter, FilterValue> filterMap, double minPrice, double maxPrice) {
+        this.filterMap=copyOf(filterMap);
         this.minPrice=minPrice;
         this.maxPrice=maxPrice;
     }
@@ -30,29 +52,40 @@ public final class DreamMenuItem {
     /**
      * Overloaded constructor for building DreamMenuItems read directly from menu data.
      * <p>These don't logically have a min or max price, so it is set to -1</p>
-     * @param filterMap immutable Map of Filters and Objects representing this item's attributes
+     * @param filterMap immutable Map of Filters and FilterValues representing this item's attributes
      *                  <p><b>Note, cannot hold nulls</b></p>
      */
-    public DreamMenuItem(Map<Filter, Object> filterMap) {
-        this.filterMap=Map.copyOf(filterMap);
+    public DreamMenuItem(Map<Filter, FilterValue> filterMap) {
+        this.filterMap=copyOf(filterMap);
         this.minPrice=-1;
         this.maxPrice=-1;
     }
 
     /**
-     * Gets a Map of all Filters and their values stored by this DreamMenuItem.
-     * @return Map of Filter(key) object(value)
+     * Copies a Map of FilterValues into an unmodifiable EnumMap, so lookups by Filter are an array index.
+     * @param filterMap Map of Filters and FilterValues; must not hold nulls
+     * @return unmodifiable copy
      */
-    public Map<Filter, Object> getAllFilters() {
-        return new HashMap<>(filterMap);
+    private static Map<Filter, FilterValue> copyOf(Map<Filter, FilterValue> filterMap) {
+        Map<Filter, FilterValue> copy = new EnumMap<>(Filter.class);
+        for (Map.Entry<Filter, FilterValue> entry : filterMap.entrySet()) {
+            copy.put(entry.getKey(), Objects.requireNonNull(entry.getValue(), "Null value for " + entry.getKey()));
+        }
+        return Collections.unmodifiableMap(copy);
     }
 
+    /**
+     * Gets a Map of all Filters and their values stored by this DreamMenuItem.
+     * @return immutable Map of Filter(key) FilterValue(value)
+     */
+    public Map<Filter, FilterValue> getAllFilters() {return filterMap;}
+
     /**
      * Gets the value associated with the parameter key for this DreamMenuItem
      * @param key a Filter value
-     * @return the value associated with the parameter key
+     * @return the FilterValue associated with the parameter key, <b>or null</b> if the key doesn't exist
      */
-    public Object getFilter(Filter key){return this.filterMap.get(key);}
+    public FilterValue getFilterValue(Filter key){return this.filterMap.get(key);}
 
     /**
      * Returns the value assigned to the TYPE key for this DreamMenuItem
@@ -60,7 +93,8 @@ public final class DreamMenuItem {
      * <b>or null</b> if the key doesn't exist
      */
     public Object getDreamItemType() {
-        return this.filterMap.getOrDefault(Filter.TYPE, null);
+        FilterValue type = this.filterMap.get(Filter.TYPE);
+        return type == null ? null : type.toObject();
     }
 
     /**
@@ -86,15 +120,18 @@ public final class DreamMenuItem {
         //simple ingredients that are only either true (present) or false (not)
         StringBuilder extras = new StringBuilder("\nExtras: ");
         for(Filter key: filterMap.keySet()) {
-            if(getFilter(key) instanceof Collection<?>){
+            FilterValue value = filterMap.get(key);
+            if(value instanceof FilterValue.BooleanValue booleanValue){
+                //append filter names if true
+                if(booleanValue.value()) extras.append(key).append(", ");
+            }
+            else if(value.isSet()){
                 //Create section headers for collections with an indented arrow for their sub-types
                 description.append("\n").append(key).append(":");
-                for(Object x:((Collection<?>) getFilter(key)).toArray()) description.append("\n").append(" --> ").append(x);
+                for(Object x:((Collection<?>) value.toObject()).toArray()) description.append("\n").append(" --> ").append(x);
             }
-            //append filter names if true
-            else if(getFilter(key).equals(true)) extras.append(key).append(", ");
-            //append any values that are not false; implicitly includes values tied to enum classes
-            else if(!getFilter(key).equals(false)) description.append("\n").append(key).append(": ").append(getFilter(key));
+            //append any other values; implicitly includes values tied to enum classes
+            else description.append("\n").append(key).append(": ").append(value.toObject());
         }
         //extras String goes at the end of the description String
         description.append(extras.substring(0,extras.length()-2));
@@ -109,91 +146,107 @@ public final class DreamMenuItem {
      * but it probably exists on the menu item.
      * <p>User choice of 'None' means the filter got added with a 'None' value to the user search item;
      * but the menu item will either have no key here (i.e. null) or a false boolean
+     * <p>Compares by value, as there's no Menu to encode against; see matchesAttributes() to compare bitmasks.
      * <p> Adapted from Ariel Halperin, COSC120 A2, DreamPlant match method. Based on COSC120 matching methods by Andreas Shipley.
      * @param dreamMenuItem an instance of DreamMenuItem against which the menu item's properties should be compared
      * @return boolean true if two DreamMenuItem instances have overlap at the values of all their shared keys.
      */
     public boolean matches(DreamMenuItem dreamMenuItem) {
+        return matchesByValue(dreamMenuItem);
+    }
 
-        // Store references here to contract following syntax.
-        Map<Filter, Object> criteriaMap = dreamMenuItem.getAllFilters();
-
-        // Presort entries by known Filter search optimisations.
-        List<Map.Entry<Filter, Object>> sortedEntries = new ArrayList<>(criteriaMap.entrySet());
-        // Ideas on Comparator and lambdas from https://www.informit.com/articles/article.aspx?p=3197227&seqNum=2
-        sortedEntries.sort(Comparator.comparing(entry->entry.getKey().searchOrder()));
-        // Most efficient Map lookup where keys and values are needed:
-        // https://stackoverflow.com/questions/46898/how-do-i-efficiently-iterate-over-each-entry-in-a-java-map
-        for (Map.Entry<Filter, Object> criteriaEntry : sortedEntries) {
-            Filter criteriaKey = criteriaEntry.getKey();
-            Object criteriaValue = criteriaEntry.getValue();
-
-            Object menuItemValue = this.getFilter(criteriaKey);
-
-            //***CHECK WHETHER THIS WAS A 'NONE' CHOICE--USER EXPLICITLY DOESN'T WANT ANY ITEMS WITH THIS FILTER***
-            if (criteriaValue.equals(SpecialChoice.NONE)) {
-                if (menuItemValue==null || menuItemValue.equals(false)) continue; // Item didn't have any of these->go to next item
-
-                //NB. This shouldn't occur based on current menu load logic, but it's a cheap check for robustness.
-                if (menuItemValue instanceof Collection<?> menuCollection
-                        && (menuCollection.isEmpty() || menuCollection.contains(false))) continue;
-
-                //Search was an explicit 'NONE' but the menu had a value here (other than boolean false).
-                return false;
-            }
-            //None choice within a Collection
-            if (criteriaValue instanceof Collection<?> criteriaCollection) {
-                if (criteriaCollection.contains(SpecialChoice.NONE)) {
-                    if (menuItemValue==null || menuItemValue.equals(false)) continue;
-                    //NB. This shouldn't occur based on current menu load logic, but it's a cheap check for robustness.
-                    if (menuItemValue instanceof Collection<?> menuCollection
-                            && (menuCollection.isEmpty() || menuCollection.contains(false))) continue;
-
-                    //Search Collection was an explicit 'NONE' but the menu had a value here (other than boolean false).
-                    return false;
-                }
-            }
-
-            //                      ***REGULAR FILTER CHECKS***
-
-            //User wants a value but the menu item doesn't have that attribute at all. Outside of a
-            //desired special choice of NONE, this will cause a NullPointerException if not handled.
-            if (menuItemValue ==null) return false;
+    /**
+     * Compares this menu item's attributes against compiled search criteria. Price is not compared.
+     * <p>Compares bitmasks with no allocation if both sides are encoded with the query's Dictionary; otherwise
+     * falls back to the Object-based comparison.
+     * @param query the compiled search criteria
+     * @return boolean true if this item matches on every criteria attribute.
+     */
+    public boolean matchesAttributes(CompiledQuery query) {
+        long[] masks = query.isEncoded() ? getAttributeMasks(query.getDictionary()) : null;
+        if (masks != null) return query.matchesAttributes(masks);
+        return matchesByValue(query.getCriteria());
+    }
 
-            // If both values are collections, discard if the menu item doesn't have >=1 of the criteria.
-            if (menuItemValue instanceof Collection<?> menuCollection
-                    && criteriaValue instanceof Collection<?> criteriaCollection) {
-                // Treat Set contents and Collection types as totally unknown.
-                Set<?> intersect = new HashSet<>(menuCollection);
-                intersect.retainAll(criteriaCollection);
-                if(intersect.size()==0) return false;
-            }
+    /**
+     * Compares this menu item's attributes and its price against compiled search criteria.
+     * @param query the compiled search criteria
+     * @param price the price of the MenuItem composing this DreamMenuItem
+     * @return boolean true if this item matches on every criteria attribute and on price.
+     */
+    public boolean matches(CompiledQuery query, double price) {
+        long[] masks = query.isEncoded() ? getAttributeMasks(query.getDictionary()) : null;
+        if (masks != null) return query.matches(masks, price);
+        return query.priceInRange(price) && matchesByValue(query.getCriteria());
+    }
 
-            // Menu item has a collection, user wants a single item; discard if the menu item
-            // doesn't contain that value
-            else if ((menuItemValue instanceof Collection<?> menuCollection)
-                    && (!menuCollection.contains(criteriaValue))) {
-                return false;
-            }
+    /**
+     * Gets this DreamMenuItem compiled as search criteria for a Menu; compiles it on first call for each Menu's
+     * Dictionary, and again if that compilation goes stale (see CompiledQuery.compiledFor()).
+     * <p>Racy single-check is fine: CompiledQuery is immutable, so at worst it's compiled twice.
+     * @param dictionary the AttributeMasks.Dictionary of the Menu to be searched
+     * @return CompiledQuery of this item's filters and min/max price
+     */
+    public CompiledQuery getCompiledQuery(AttributeMasks.Dictionary dictionary) {
+        CompiledQuery compiled = this.compiledQuery;
+        CompiledQuery current = compiled == null ? CompiledQuery.compile(this, dictionary)
+                : compiled.compiledFor(dictionary);
+        if (current != compiled) this.compiledQuery = current;
+        return current;
+    }
 
-            //User selected multiple options but the inventory plant's single value is not one of those; discard.
-            else if ((criteriaValue instanceof Collection<?> criteriaCollection)
-                    && (!criteriaCollection.contains(menuItemValue))) {
-                return false;
-            }
+    /**
+     * Gets this menu item's attributes encoded as one mask per Filter with a Menu's Dictionary; encodes them on
+     * first call for each Dictionary, without adding to it.
+     * <p>Racy single-check, like getCompiledQuery().
+     * @param dictionary the AttributeMasks.Dictionary
+     * @return the masks indexed by Filter ordinal, <b>or null</b> if a value has no id in the Dictionary.
+     */
+    private long[] getAttributeMasks(AttributeMasks.Dictionary dictionary) {
+        EncodedAttributes encoded = this.encodedAttributes;
+        if (encoded == null || encoded.dictionary() != dictionary) {
+            encoded = new EncodedAttributes(dictionary, AttributeMasks.encodeAttributes(dictionary, filterMap));
+            this.encodedAttributes = encoded;
+        }
+        return encoded.masks();
+    }
 
-            // Finally, if they're both singular, check for equality
-            // No stress about primitives and == for equality, as they've been auto-wrapped on cast to Object:
-            // https://stackoverflow.com/questions/709961/determining-if-an-object-is-of-primitive-type
-            else if (!(menuItemValue instanceof Collection<?>) && !(criteriaValue instanceof Collection<?>)) {
-                if (!menuItemValue.equals(criteriaValue)) {
-                    return false;
-                }
-            }
+    /**
+     * Value-based equivalent of matches(), used when either side could not be encoded as bitmasks.
+     * <p>Checks the criteria's values in Filter.searchOrder(), each by its own FilterValue.accepts(), stopping
+     * at the first that fails. Nothing is copied or boxed per item.
+     * <p>User choice of 'I don't mind' means the filter never got added to the criteria; 'None' means it was added
+     * as FilterValue.NONE, which accepts items without the attribute (or with false).
+     * @param dreamMenuItem an instance of DreamMenuItem against which the menu item's properties should be compared
+     * @return boolean true if two DreamMenuItem instances have overlap at the values of all their shared keys.
+     */
+    private boolean matchesByValue(DreamMenuItem dreamMenuItem) {
+        SearchOrder criteria = dreamMenuItem.getSearchOrder();
+        for (int i = 0; i < criteria.filters().length; i++) {
+            if (!criteria.values()[i].accepts(this.filterMap.get(criteria.filters()[i]))) return false;
         }
         // The user's criteria instance matched on all included attributes for >=1 value
         // choice. Note, any attributes selected as 'skip' by the user were not added, and so
         // implicitly matched.
         return true;
     }
+
+    /**
+     * Gets this DreamMenuItem's Filters and values in the order they're checked as criteria; orders them on first call.
+     * <p>Racy single-check, like getCompiledQuery().
+     * @return SearchOrder
+     */
+    private SearchOrder getSearchOrder() {
+        SearchOrder ordered = this.searchOrder;
+        if (ordered == null) {
+            // Ideas on Comparator and lambdas from https://www.informit.com/articles/article.aspx?p=3197227&seqNum=2
+            Filter[] filters = filterMap.keySet().toArray(new Filter[0]);
+            Arrays.sort(filters, Comparator.comparing(Filter::searchOrder));
+            FilterValue[] values = new FilterValue[filters.length];
+            for (int i = 0; i < filters.length; i++) values[i] = filterMap.get(filters[i]);
+            ordered = new SearchOrder(filters, values);
+            this.searchOrder = ordered;
+        }
+        return ordered;
+    }
 }
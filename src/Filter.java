@@ -110,6 +110,18 @@ public enum Filter {
         };
     }
 
+    /**
+     * Identifies Filters whose values are held on menu items as a Collection (e.g. several cheeses),
+     * rather than as a single value.
+     * @return true if menu items hold a Collection of values for this Filter.
+     */
+    public boolean isCollectionOnMenuItems() {
+        return switch (this) {
+            case CHEESE, LEAFY_GREENS, SAUCES -> true;
+            default -> false;
+        };
+    }
+
     /**
      * Identifies filter values that allow a selection of 'None'--i.e. I don't want anything at all from this category.
      * @return true if Filter value allows requesting 'none' selection for this category.
@@ -195,6 +207,21 @@ public enum Filter {
         };
     }
 
+    /**
+     * How much satisfying this Filter counts towards an item's score when ranking the closest
+     * alternatives to a search with no matches.
+     * <p>Item type and protein matter most to customers (e.g. dietary needs); garnishes least.
+     * @return positive int weight
+     */
+    public int nearMatchWeight() {
+        return switch (this) {
+            case TYPE -> 8;
+            case PROTEIN -> 4;
+            case BUN, CHEESE, DRESSING, LEAFY_GREENS, SAUCES -> 2;
+            case PICKLES, CUCUMBER, TOMATO -> 1;
+        };
+    }
+
     /**
      * Identifies Filters that have a dedicated Enum of their possible values
      * @return true if an Enum class exists representing its values, false if not
@@ -203,6 +230,16 @@ public enum Filter {
         return relevantEnumClass != null;
     }
 
+    /**
+     * Identifies whether a value is a constant of this Filter's dedicated Enum, without listing its values.
+     * @param value any value
+     * @return true if it's one of the Enum's constants, false if not or if there is no such Enum
+     */
+    public boolean isConstantOfItsEnum(Object value) {
+        return relevantEnumClass != null && value instanceof Enum<?> enumValue
+                && enumValue.getDeclaringClass() == relevantEnumClass;
+    }
+
     /**
      * Identifies Filters whose possible values can be identified by a boolean/Boolean.
      * <p>I.e. their only possible logical states are true, false or null
@@ -1,4 +1,6 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
@@ -13,6 +15,8 @@ import java.util.List;
  * <li>I DON'T MIND SELECTORS: BUN, PROTEIN, CHEESE, CUCUMBER, TOMATO, DRESSING, LEAFY GREENS, SAUCES
  * <li>ALLOWS EXPLICIT 'NONE' SELECTION: PROTEIN, CHEESE, LEAFY GREENS, SAUCES
  *
+ * <p>Every selection change is reported to the FilterEntryPanelListener. Facet counts passed back by
+ * showFacetCounts() are shown beside each option of the dropdowns and lists, e.g. 'Sesame (12)'.
  */
 public final class FilterEntryPanel {
     // FIELDS FOR STORING SELECTOR SELECTIONS BEFORE PROCESSING; Map would be possible, but less explicit = hard to maintain.
@@ -32,6 +36,13 @@ public final class FilterEntryPanel {
     // THE CORE COMPOSED JPANEL THAT WILL HOLD ALL THE SUB-COMPONENTS
     private final JPanel corePanel;
 
+    private FilterEntryPanelListener listener;
+    // Latest matching-item count for each option of each Filter; empty until the listener provides them.
+    private Map<Filter, Map<Object, Integer>> facetCounts = Map.of();
+    // True while clearSelections() or setFilterOptions() is resetting every selector, so the listener hears one
+    // change, not dozens.
+    private boolean updatingSelectors;
+
     private static final int MAIN_SPLIT_HORIZONTAL_PADDING = 20;
 
     /**
@@ -81,6 +92,9 @@ public final class FilterEntryPanel {
         //BUILD THE COMPONENTS AND OVERALL LAYOUT
         buildLayout(typeSpecificFilterCardsPanel);
 
+        setupSelectionChangeListeners();
+        setupFacetCountRenderers();
+
         clearSelections(); //All selectors will default to unselected, or 0.00 for price.
     }
 
@@ -524,22 +538,93 @@ public final class FilterEntryPanel {
         sauceList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 handleSpecialSelections(sauceList, Filter.SAUCES.getDontMindValue());
+                notifySelectionsChanged();
             }
         });
 
         proteinList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 handleSpecialSelections(proteinList, Filter.PROTEIN.getDontMindValue());
+                notifySelectionsChanged();
             }
         });
 
         leafyGreensList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 handleSpecialSelections(leafyGreensList, Filter.LEAFY_GREENS.getDontMindValue());
+                notifySelectionsChanged();
             }
         });
     }
 
+    /**
+     * Sets up listeners on every selector and price field to report selection changes to the listener.
+     * <p>JLists report from their existing ListSelectionListeners (see setupJListSelectionListeners()).
+     * Requires the radio buttons to already be registered with their ButtonGroups.
+     */
+    private void setupSelectionChangeListeners() {
+        itemTypeSelector.addActionListener(e -> notifySelectionsChanged());
+        bunSelector.addActionListener(e -> notifySelectionsChanged());
+        dressingSelector.addActionListener(e -> notifySelectionsChanged());
+        cheeseSelector.addActionListener(e -> notifySelectionsChanged());
+        pickleCheckBox.addActionListener(e -> notifySelectionsChanged());
+
+        for (ButtonGroup buttonGroup : List.of(tomatoGroup, cucumberGroup)) {
+            for (Enumeration<AbstractButton> buttons = buttonGroup.getElements(); buttons.hasMoreElements();) {
+                buttons.nextElement().addActionListener(e -> notifySelectionsChanged());
+            }
+        }
+
+        //Prices report on every keystroke; any text is accepted here, and validated only on search.
+        DocumentListener priceListener = new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) {notifySelectionsChanged();}
+            @Override public void removeUpdate(DocumentEvent e) {notifySelectionsChanged();}
+            @Override public void changedUpdate(DocumentEvent e) {notifySelectionsChanged();}
+        };
+        priceMinField.getDocument().addDocumentListener(priceListener);
+        priceMaxField.getDocument().addDocumentListener(priceListener);
+    }
+
+    /**
+     * Wraps each dropdown and list's cell renderer to append the option's facet count to its text.
+     * <p>Wrapping keeps the look and feel's own renderer, so only the text changes.
+     */
+    private void setupFacetCountRenderers() {
+        itemTypeSelector.setRenderer(withFacetCounts(itemTypeSelector.getRenderer(), Filter.TYPE));
+        bunSelector.setRenderer(withFacetCounts(bunSelector.getRenderer(), Filter.BUN));
+        dressingSelector.setRenderer(withFacetCounts(dressingSelector.getRenderer(), Filter.DRESSING));
+        cheeseSelector.setRenderer(withFacetCounts(cheeseSelector.getRenderer(), Filter.CHEESE));
+        sauceList.setCellRenderer(withFacetCounts(sauceList.getCellRenderer(), Filter.SAUCES));
+        proteinList.setCellRenderer(withFacetCounts(proteinList.getCellRenderer(), Filter.PROTEIN));
+        leafyGreensList.setCellRenderer(withFacetCounts(leafyGreensList.getCellRenderer(), Filter.LEAFY_GREENS));
+    }
+
+    /**
+     * Creates a cell renderer that shows an option as 'option (count)', using the latest facetCounts.
+     * <p>Options are shown as normal until counts for their Filter arrive. Options missing from the counts
+     * match nothing, so show 0.
+     * @param baseRenderer the selector's existing renderer, which does the actual rendering
+     * @param filter the Filter whose options the selector holds
+     * @return ListCellRenderer for the selector
+     */
+    private <T> ListCellRenderer<T> withFacetCounts(ListCellRenderer<? super T> baseRenderer, Filter filter) {
+        return (list, value, index, isSelected, cellHasFocus) -> {
+            Component rendered = baseRenderer.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            Map<Object, Integer> counts = facetCounts.get(filter);
+            if (counts != null && value != null && rendered instanceof JLabel label) {
+                label.setText(value + " (" + counts.getOrDefault(value, 0) + ")");
+            }
+            return rendered;
+        };
+    }
+
+    /**
+     * Tells the listener (if any) that a selection changed, unless every selector is being reset at once.
+     */
+    private void notifySelectionsChanged() {
+        if (listener != null && !updatingSelectors) listener.onSelectionsChanged();
+    }
+
     /**
      * Helper to handle selection of SpecialChoices in JLists.
      * <li>Clears the list and shows an error if I_DONT_MIND and NONE are simultaneously selected. Shows a warning message too.
@@ -677,10 +762,81 @@ public final class FilterEntryPanel {
 
     //                                  *** PUBLIC SETTERS ***
 
+    /**
+     * Register the listener that will handle this Panel's selection changes.
+     * <p>This panel uses a single listener because it's designed to send events directly back to its parent container
+     * @param listener FilterEntryPanelListener interface, though ultimately it's the OrderGui listening.
+     */
+    public void setFilterEntryPanelListener(FilterEntryPanelListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Shows the number of matching menu items beside each option of the dropdowns and lists.
+     * @param facetCounts immutable Map of Filter to a Map of each option to its matching-item count
+     */
+    public void showFacetCounts(Map<Filter, Map<Object, Integer>> facetCounts) {
+        this.facetCounts = facetCounts;
+        for (JComboBox<?> selector : List.of(itemTypeSelector, bunSelector, dressingSelector, cheeseSelector)) {
+            selector.repaint();
+        }
+        //A JList only re-measures its cells when its renderer changes; counts can make options wider.
+        for (JList<Object> selector : List.of(sauceList, proteinList, leafyGreensList)) {
+            ListCellRenderer<? super Object> renderer = selector.getCellRenderer();
+            selector.setCellRenderer(null);
+            selector.setCellRenderer(renderer);
+        }
+    }
+
+    /**
+     * Replaces the options offered by the dropdowns and lists, e.g. after the menu is reloaded, without rebuilding
+     * the panel.
+     * <p>Selections of options that are still offered are kept; the rest are cleared. The listener then hears of
+     * one selection change, so facet counts are fetched afresh.
+     * @param filterOptions a Map of Filter(key) List of Objects(value) to present for selectors
+     */
+    public void setFilterOptions(Map<Filter, List<Object>> filterOptions) {
+        updatingSelectors = true;
+        setComboBoxOptions(bunSelector, getOptionsOrFail(filterOptions, Filter.BUN));
+        setComboBoxOptions(dressingSelector, getOptionsOrFail(filterOptions, Filter.DRESSING));
+        setComboBoxOptions(cheeseSelector, getOptionsOrFail(filterOptions, Filter.CHEESE));
+        setListOptions(sauceList, getOptionsOrFail(filterOptions, Filter.SAUCES));
+        setListOptions(leafyGreensList, getOptionsOrFail(filterOptions, Filter.LEAFY_GREENS));
+        setListOptions(proteinList, getOptionsOrFail(filterOptions, Filter.PROTEIN));
+        updatingSelectors = false;
+        notifySelectionsChanged();
+    }
+
+    /**
+     * Helper to replace a dropdown's options, keeping its selection if it's still one of them.
+     * @param selector the JComboBox
+     * @param options the List of options to offer
+     */
+    private void setComboBoxOptions(JComboBox<Object> selector, List<Object> options) {
+        Object selected = selector.getSelectedItem();
+        selector.setModel(new DefaultComboBoxModel<>(options.toArray()));
+        //A new DefaultComboBoxModel selects its first option, so always set the selection explicitly.
+        if (selected != null && options.contains(selected)) selector.setSelectedItem(selected);
+        else selector.setSelectedIndex(-1);
+    }
+
+    /**
+     * Helper to replace a JList's options, keeping whichever of its selections are still among them.
+     * @param selector the JList
+     * @param options the List of options to offer
+     */
+    private void setListOptions(JList<Object> selector, List<Object> options) {
+        List<Object> selected = selector.getSelectedValuesList();
+        selector.setListData(options.toArray());
+        int[] stillOffered = selected.stream().mapToInt(options::indexOf).filter(index -> index >= 0).toArray();
+        selector.setSelectedIndices(stillOffered);
+    }
+
     /**
      * Clear all selections. Intended for use when navigating back here from a different view.
      */
     public void clearSelections() {
+        updatingSelectors = true;
         itemTypeSelector.setSelectedIndex(-1);
         bunSelector.setSelectedIndex(-1);
         sauceList.clearSelection();
@@ -693,5 +849,7 @@ public final class FilterEntryPanel {
         cheeseSelector.setSelectedIndex(-1);
         priceMinField.setText("0.00");
         priceMaxField.setText("0.00");
+        updatingSelectors = false;
+        notifySelectionsChanged();
     }
 }
@@ -0,0 +1,13 @@
+/**
+ * Contract for a listener that responds to user actions from the FilterEntryPanel (e.g. OrderGui).
+ * <p>Allows the FilterEntryPanel to tell its controller about selection changes as they happen.
+ */
+public interface FilterEntryPanelListener {
+
+    /**
+     * Call whenever any selector's selection, or a price field, changes.
+     * <p>Listener expected to fetch the current (possibly incomplete) selections with getFilterSelections()
+     * and act on them, e.g. by requesting updated facet counts.
+     */
+    void onSelectionsChanged();
+}
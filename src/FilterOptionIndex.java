@@ -0,0 +1,101 @@
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Index of the options a Menu offers for each Filter, kept up to date as items are added, so listing them
+ * doesn't scan the items.
+ * <p>Filters with their own Enum offer its constants. For the rest (free text, e.g. BUN), the index holds every
+ * value an item holds, so a value is offered from when the first item holding it is added.
+ * <p>Each Filter's sorted List of options is built on first request and cached until its options change; adding
+ * an item whose values are all offered already leaves it cached.
+ * <p>Thread-safe: a Menu built in the background can be asked for its options from the EDT.
+ */
+public final class FilterOptionIndex {
+    private static final Filter[] FILTERS = Filter.values();
+
+    // For each Filter without its own Enum, the values items hold.
+    private final EnumMap<Filter, Set<Object>> heldValues = new EnumMap<>(Filter.class);
+    // Each Filter's options as last listed by getOptions(), or absent if they've changed since.
+    private final EnumMap<Filter, List<Object>> cachedOptions = new EnumMap<>(Filter.class);
+
+    /**
+     * Creates an empty FilterOptionIndex.
+     */
+    public FilterOptionIndex() {
+        for (Filter filter : FILTERS) {
+            if (!filter.hasEnumRepresentingItsValues()) heldValues.put(filter, new HashSet<>());
+        }
+    }
+
+    /**
+     * Offers an item's values.
+     * @param dreamMenuItem the item's attributes
+     */
+    public synchronized void add(DreamMenuItem dreamMenuItem) {
+        forEachHeldValue(dreamMenuItem, (filter, value) -> {
+            if (heldValues.get(filter).add(value)) cachedOptions.remove(filter);
+        });
+    }
+
+    /**
+     * Gets the options offered for a Filter: its Enum's constants, or else every value an item holds, sorted
+     * alphabetically, then NONE and I_DONT_MIND choices at the end where the Filter allows them.
+     * @param filter the Filter
+     * @return immutable List of the options
+     */
+    public synchronized List<Object> getOptions(Filter filter) {
+        return cachedOptions.computeIfAbsent(filter, this::listOptions);
+    }
+
+    /**
+     * Lists a Filter's options afresh; see getOptions().
+     * @param filter the Filter
+     * @return immutable List of the options
+     */
+    private List<Object> listOptions(Filter filter) {
+        List<Object> options = filter.hasEnumRepresentingItsValues()
+                ? new ArrayList<>(filter.getEnumValues())
+                : new ArrayList<>(heldValues.get(filter));
+
+        //sort alphabetically even though they're Object;
+        //https://medium.com/@AlexanderObregon/javas-comparator-comparing-method-explained-342361288af6
+        options.sort(Comparator.comparing(Object::toString));
+
+        // Add NONE as the second last option to relevant Lists
+        if (filter.allowsNoneChoice()) options.add(SpecialChoice.NONE);
+        // Populate the 'I don't mind' values in last position
+        if (filter.allowsDontMindChoice()){
+            Object dontMindValue = filter.getDontMindValue();
+
+            // Sorting put this in its alphabetical position if it was already part of the Filter's
+            // specific class values; sent it to the end.
+            if (filter.hasDontMindValueDefinedInOwnEnum()) {
+                options.remove(dontMindValue);
+                options.add(dontMindValue);
+            } else {
+                //If it wasn't already added direct from its own enum, add it from the values known in Filter.
+                options.add(dontMindValue);
+            }
+        }
+
+        return List.copyOf(options);
+    }
+
+    /**
+     * Calls back with each value of an item's that's held by the index: every element of a set, and single values
+     * as they are, for each Filter without its own Enum.
+     * @param dreamMenuItem the item's attributes
+     * @param action called with each Filter and value
+     */
+    private void forEachHeldValue(DreamMenuItem dreamMenuItem, BiConsumer<Filter, Object> action) {
+        for (Filter filter : heldValues.keySet()) {
+            FilterValue value = dreamMenuItem.getFilterValue(filter);
+            if (value == null) continue;
+            if (value.isSet()) {
+                for (Object element : (Collection<?>) value.toObject()) action.accept(filter, element);
+            } else {
+                action.accept(filter, value.toObject());
+            }
+        }
+    }
+}
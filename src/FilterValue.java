@@ -0,0 +1,290 @@
+import java.util.*;
+
+/**
+ * A typed value of a Filter, on a menu item or in search criteria, in place of a raw Object.
+ * <p>Each kind of value is its own record, so matching needs no instanceof chains over unknown Objects,
+ * Collection copies or boxed Booleans:
+ * <li>EnumValue and EnumSetValue for Filters with their own Enum (e.g. TYPE, PROTEIN, SAUCES),
+ * <li>TextValue and TextSetValue for free-text Filters (i.e. BUN, CHEESE, LEAFY_GREENS), holding, on menu items,
+ * their Menu's AttributeMasks.Dictionary's shared copies,
+ * <li>BooleanValue for yes/no Filters (e.g. PICKLES),
+ * <li>Absent for a 'NONE' search choice.
+ * <p>'I don't mind' is not a value: such Filters are left out of the criteria entirely.
+ * <p>Immutable.
+ */
+public sealed interface FilterValue {
+
+    /**
+     * The 'NONE' search choice: the item must not have the attribute.
+     */
+    FilterValue NONE = new Absent();
+
+    /**
+     * Converts a plain value, as held by GUI selectors or written out in code, into a FilterValue.
+     * <p>SpecialChoice.NONE, alone or within a Collection, becomes NONE, which is how DreamMenuItem has always
+     * matched it. Free-text values are held as they are; see TextValue.of() to share a Menu's copies.
+     * @param filter the Filter the value belongs to
+     * @param value an Enum constant, Boolean, String, Collection of Enum constants or of Strings, or a FilterValue;
+     *              must not be null
+     * @return the FilterValue
+     * @throws IllegalArgumentException if the value is of any other type, or a Collection mixes types
+     */
+    static FilterValue of(Filter filter, Object value) {
+        if (value instanceof FilterValue filterValue) return filterValue;
+        if (value == SpecialChoice.NONE) return NONE;
+        if (value instanceof Boolean booleanValue) return BooleanValue.of(booleanValue);
+        if (value instanceof Enum<?> enumValue) return new EnumValue(enumValue);
+        if (value instanceof String text) return new TextValue(text);
+        if (value instanceof Collection<?> values) {
+            if (values.contains(SpecialChoice.NONE)) return NONE;
+            if (!values.isEmpty() && values.stream().allMatch(element -> element instanceof Enum<?>)) {
+                return EnumSetValue.of(values);
+            }
+            if (values.stream().allMatch(element -> element instanceof String)) {
+                Set<String> texts = new HashSet<>();
+                for (Object element : values) texts.add((String) element);
+                return new TextSetValue(Set.copyOf(texts));
+            }
+        }
+        throw new IllegalArgumentException("Unsupported value for " + filter + ": " + value);
+    }
+
+    /**
+     * Converts every value of a Map of plain values; see of().
+     * @param values Map of each Filter's plain value
+     * @return immutable Map of each Filter's FilterValue
+     */
+    static Map<Filter, FilterValue> ofAll(Map<Filter, ?> values) {
+        Map<Filter, FilterValue> filterValues = new EnumMap<>(Filter.class);
+        values.forEach((filter, value) -> filterValues.put(filter, of(filter, value)));
+        return Collections.unmodifiableMap(filterValues);
+    }
+
+    /**
+     * Identifies whether a menu item with a value passes this value as search criteria.
+     * @param itemValue the menu item's value for the same Filter, <b>or null</b> if it doesn't have the attribute
+     * @return true if the item matches on this Filter
+     */
+    boolean accepts(FilterValue itemValue);
+
+    /**
+     * Identifies whether this menu item value counts as not having the attribute, for a 'NONE' search.
+     * @return true for false Booleans and empty sets
+     */
+    boolean isAbsent();
+
+    /**
+     * Identifies whether this value holds a set of values rather than a single one.
+     * @return true for EnumSetValue and TextSetValue
+     */
+    default boolean isSet() {return false;}
+
+    /**
+     * Gets the plain value, for display and for encoding as AttributeMasks bits.
+     * @return the Enum constant, Boolean, String or immutable Set; SpecialChoice.NONE for NONE.
+     */
+    Object toObject();
+
+    /**
+     * The 'NONE' search choice; use FilterValue.NONE.
+     */
+    record Absent() implements FilterValue {
+        @Override
+        public boolean accepts(FilterValue itemValue) {return itemValue == null || itemValue.isAbsent();}
+
+        @Override
+        public boolean isAbsent() {return true;}
+
+        @Override
+        public Object toObject() {return SpecialChoice.NONE;}
+    }
+
+    /**
+     * A yes/no value, held unboxed.
+     * @param value boolean
+     */
+    record BooleanValue(boolean value) implements FilterValue {
+        private static final BooleanValue TRUE = new BooleanValue(true);
+        private static final BooleanValue FALSE = new BooleanValue(false);
+
+        /**
+         * Gets the shared BooleanValue for a boolean.
+         * @param value boolean
+         * @return BooleanValue
+         */
+        public static BooleanValue of(boolean value) {return value ? TRUE : FALSE;}
+
+        @Override
+        public boolean accepts(FilterValue itemValue) {
+            return itemValue instanceof BooleanValue item && item.value == value;
+        }
+
+        @Override
+        public boolean isAbsent() {return !value;}
+
+        @Override
+        public Object toObject() {return value;}
+    }
+
+    /**
+     * A single Enum constant.
+     * @param value the constant
+     */
+    record EnumValue(Enum<?> value) implements FilterValue {
+        @Override
+        public boolean accepts(FilterValue itemValue) {
+            if (itemValue instanceof EnumValue item) return item.value == value;
+            return itemValue instanceof EnumSetValue item && item.contains(value);
+        }
+
+        @Override
+        public boolean isAbsent() {return false;}
+
+        @Override
+        public Object toObject() {return value;}
+    }
+
+    /**
+     * A set of constants of one Enum, also held as a mask of their ordinals so sets compare in one AND.
+     * @param enumClass the constants' Enum class, <b>or null</b> if empty
+     * @param values read-only EnumSet of the constants
+     * @param ordinals mask with bit n set if the constant with ordinal n is held
+     */
+    record EnumSetValue(Class<?> enumClass, Set<Enum<?>> values, long ordinals) implements FilterValue {
+
+        /**
+         * Creates an EnumSetValue from a Collection of constants of one Enum of at most 64 constants.
+         * @param values the constants
+         * @return EnumSetValue
+         * @throws IllegalArgumentException if the constants aren't all of one Enum, or it's too large
+         */
+        public static EnumSetValue of(Collection<?> values) {
+            if (values.isEmpty()) return new EnumSetValue(null, Set.of(), 0L);
+            Enum<?> first = (Enum<?>) values.iterator().next();
+            Set<Enum<?>> constants = enumSetOf(first.getDeclaringClass(), values);
+            long ordinals = 0L;
+            for (Enum<?> constant : constants) {
+                if (constant.ordinal() >= Long.SIZE) {
+                    throw new IllegalArgumentException("Not a set of one small Enum's constants: " + values);
+                }
+                ordinals |= 1L << constant.ordinal();
+            }
+            return new EnumSetValue(first.getDeclaringClass(), constants, ordinals);
+        }
+
+        /**
+         * Copies constants into a read-only EnumSet.
+         * @param enumClass the constants' Enum class
+         * @param values the constants
+         * @return unmodifiable view of a new EnumSet
+         * @throws IllegalArgumentException if any value isn't a constant of enumClass
+         */
+        private static <E extends Enum<E>> Set<Enum<?>> enumSetOf(Class<E> enumClass, Collection<?> values) {
+            EnumSet<E> constants = EnumSet.noneOf(enumClass);
+            for (Object value : values) {
+                if (!enumClass.isInstance(value)) {
+                    throw new IllegalArgumentException("Not a set of one Enum's constants: " + values);
+                }
+                constants.add(enumClass.cast(value));
+            }
+            return Collections.unmodifiableSet(constants);
+        }
+
+        /**
+         * Identifies whether a constant is in this set.
+         * @param constant the constant
+         * @return true if held
+         */
+        public boolean contains(Enum<?> constant) {
+            return constant.getDeclaringClass() == enumClass && constant.ordinal() < Long.SIZE
+                    && (ordinals & (1L << constant.ordinal())) != 0;
+        }
+
+        @Override
+        public boolean accepts(FilterValue itemValue) {
+            if (itemValue instanceof EnumValue item) return contains(item.value());
+            return itemValue instanceof EnumSetValue item && item.enumClass == enumClass
+                    && (item.ordinals & ordinals) != 0;
+        }
+
+        @Override
+        public boolean isAbsent() {return ordinals == 0;}
+
+        @Override
+        public boolean isSet() {return true;}
+
+        @Override
+        public Object toObject() {return values;}
+    }
+
+    /**
+     * A single free-text value.
+     * @param value the String; on menu items, their Menu's AttributeMasks.Dictionary's shared copy, where it has
+     *              room for it
+     */
+    record TextValue(String value) implements FilterValue {
+
+        /**
+         * Creates a TextValue holding a Dictionary's shared copy of a String, e.g. for a menu item being loaded.
+         * @param dictionary the Dictionary of the Menu the value is for
+         * @param filter the Filter the value belongs to
+         * @param value the String
+         * @return TextValue
+         */
+        public static TextValue of(AttributeMasks.Dictionary dictionary, Filter filter, String value) {
+            return new TextValue(dictionary.intern(filter, value));
+        }
+
+        @Override
+        public boolean accepts(FilterValue itemValue) {
+            if (itemValue instanceof TextValue item) return item.value.equals(value);
+            return itemValue instanceof TextSetValue item && item.values().contains(value);
+        }
+
+        @Override
+        public boolean isAbsent() {return false;}
+
+        @Override
+        public Object toObject() {return value;}
+    }
+
+    /**
+     * A set of free-text values.
+     * @param values immutable Set of the Strings; on menu items, their Menu's AttributeMasks.Dictionary's shared
+     *               copies, where it has room for them
+     */
+    record TextSetValue(Set<String> values) implements FilterValue {
+
+        /**
+         * Creates a TextSetValue holding a Dictionary's shared copies of Strings, e.g. for a menu item being loaded.
+         * @param dictionary the Dictionary of the Menu the values are for
+         * @param filter the Filter the values belong to
+         * @param values the Strings
+         * @return TextSetValue
+         */
+        public static TextSetValue of(AttributeMasks.Dictionary dictionary, Filter filter, Set<String> values) {
+            Set<String> interned = new HashSet<>();
+            for (String value : values) interned.add(dictionary.intern(filter, value));
+            return new TextSetValue(Set.copyOf(interned));
+        }
+
+        @Override
+        public boolean accepts(FilterValue itemValue) {
+            if (itemValue instanceof TextValue item) return values.contains(item.value());
+            if (!(itemValue instanceof TextSetValue item)) return false;
+            for (String value : item.values) {
+                if (values.contains(value)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isAbsent() {return values.isEmpty();}
+
+        @Override
+        public boolean isSet() {return true;}
+
+        @Override
+        public Object toObject() {return values;}
+    }
+}
@@ -15,6 +15,23 @@ public interface GuiListener {
      */
     void performSearch(DreamMenuItem dreamMenuItem);
 
+    /**
+     * Called when the user wants more results from the latest search, e.g. by scrolling to the end of those shown.
+     * <p>Listener is expected to find the next page of matches and send it back through
+     * OrderingSystemListener.onMoreSearchResults(). Does nothing if there are no more.
+     */
+    void requestMoreResults();
+
+    /**
+     * Called whenever the user changes a filter selection, before they search.
+     * <p>Listener is expected to count, for every option of every filter, how many menu items would match if
+     * that option were chosen along with the current selections.
+     * <p>The counts should be sent back to the view through OrderingSystemListener.onFacetCounts().
+     * @param partialSelections DreamMenuItem of the selections made so far; unchosen filters are left out.
+     *                          Will not be null when passed in.
+     */
+    void requestFacetCounts(DreamMenuItem partialSelections);
+
     /**
      * Called when the user confirms and submits their final order.
      * <p>The listener is responsible for processing the completed order. For example, by writing to a file.
@@ -0,0 +1,84 @@
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Spliterator over the item ids set in a BitSet, e.g. a Menu's search candidates, for parallel streams.
+ * <p>Splits the id range in half at 64-id boundaries, so each half covers whole words of the BitSet.
+ * Ids are reported in ascending order, so an ordered parallel stream keeps the Menu's item order.
+ * <p>The BitSet must not be modified while it is being traversed.
+ */
+public final class ItemIdSpliterator implements Spliterator.OfInt {
+    // Ranges smaller than this aren't worth handing to another thread.
+    private static final int MIN_SPLIT_SIZE = 1024;
+
+    private final BitSet ids;
+    private int origin; //next id to check, inclusive
+    private final int fence; //end of the range, exclusive
+
+    /**
+     * Creates a Spliterator over the set ids in [origin, fence).
+     * @param ids the item ids
+     * @param origin first id of the range, inclusive
+     * @param fence end of the range, exclusive
+     */
+    public ItemIdSpliterator(BitSet ids, int origin, int fence) {
+        this.ids = ids;
+        this.origin = origin;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        int next = ids.nextSetBit(origin);
+        if (next < 0 || next >= fence) {
+            origin = fence;
+            return false;
+        }
+        origin = next + 1;
+        action.accept(next);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        for (int next = ids.nextSetBit(origin); next >= 0 && next < fence; next = ids.nextSetBit(next + 1)) {
+            action.accept(next);
+        }
+        origin = fence;
+    }
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+        if (fence - origin < MIN_SPLIT_SIZE) return null;
+        int mid = ((origin + fence) >>> 1) & -Long.SIZE; //round down to a word boundary
+        if (mid <= origin) return null;
+        ItemIdSpliterator prefix = new ItemIdSpliterator(ids, origin, mid);
+        origin = mid;
+        return prefix;
+    }
+
+    /**
+     * Estimates the number of ids left; this is the size of the range, so an upper bound.
+     * @return long
+     */
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Ids are in their natural (ascending) order.
+     * @return null, as required for natural order by the SORTED characteristic
+     */
+    @Override
+    public Comparator<? super Integer> getComparator() {
+        return null;
+    }
+}
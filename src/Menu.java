@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.stream.StreamSupport;
 
 /**
  * Holds the entire collection of MenuItems available in the restaurant.
@@ -8,101 +9,663 @@ import java.util.*;
  */
 public final class Menu {
 
-    private final Set<MenuItem> menu;
+    // Items in the order they were added; an item's position is its id in the postingIndex.
+    private final List<MenuItem> menu;
+    // Ids of the free-text values this menu's items hold, which its masks, columns and indexes are coded with.
+    private final AttributeMasks.Dictionary dictionary;
+    // Each item's attributes and price as primitive columns, by item id; scanned instead of the MenuItems.
+    private final MenuColumns columns;
+    // Lookup of the items' attribute values to item ids, used by findMatch().
+    private final PostingIndex postingIndex;
+    // Items' prices sorted for min/max range lookups, used by findMatch().
+    private final PriceIndex priceIndex;
+    // How selective each search predicate has been on this menu, used to order search plans.
+    private final SelectivityStats selectivityStats;
+    // The options each Filter offers on this menu, used by getAllIngredientTypes().
+    private final FilterOptionIndex optionIndex;
+    // Incremented whenever the menu's contents change, so caches of search results can tell they're stale.
+    private long version;
+
+    // findMatch() stops intersecting posting lists and checks candidates one by one once there are this
+    // few of them, or fewer than 1/64 of the menu (the number of ids one word of a posting list holds).
+    private static final int MIN_CANDIDATES_TO_NARROW = 16;
+    // Item checks are split across threads from this many items; below it, fork/join overhead outweighs the gain.
+    private static final int PARALLEL_THRESHOLD = 20_000;
 
     /**
      * Creates an empty Menu.
      * Menu items should be added using the addItem(MenuItem) method.
      */
     public Menu() {
-        this.menu = new HashSet<>();
+        this(new AttributeMasks.Dictionary());
+    }
+
+    /**
+     * Creates an empty Menu coding its items' free-text values with a Dictionary its items' values were already
+     * interned by, e.g. while they were parsed.
+     * Menu items should be added using the addItem(MenuItem) method.
+     * @param dictionary a Dictionary used by no other Menu
+     */
+    public Menu(AttributeMasks.Dictionary dictionary) {
+        this.menu = new ArrayList<>();
+        this.dictionary = dictionary;
+        this.columns = new MenuColumns();
+        this.postingIndex = new PostingIndex(dictionary);
+        this.priceIndex = new PriceIndex();
+        this.selectivityStats = new SelectivityStats();
+        this.optionIndex = new FilterOptionIndex();
     }
 
     /**
-     * Adds a new menu item to this menu.
+     * Adds a new menu item to this menu, and indexes its attributes and price for search, and its attributes as
+     * filter options.
+     * <p>Encodes its attributes with this menu's dictionary, giving ids to free-text values it hasn't seen. An item
+     * with a value that can't be encoded (e.g. past MAX_VALUES_PER_FILTER) is still searchable, by value.
+     * <p>Discards selectivity statistics, since they described the menu without this item.
      * @param menuItem the MenuItem to add. Must not be null.
      */
     public void addItem(MenuItem menuItem){
+        long[] masks = AttributeMasks.encodeMenuItem(dictionary, menuItem.getDreamMenuItem().getAllFilters());
+        this.postingIndex.add(this.menu.size(), masks);
+        this.priceIndex.add(this.menu.size(), menuItem.getPrice());
+        this.columns.add(masks, menuItem.getPrice());
+        this.optionIndex.add(menuItem.getDreamMenuItem());
         this.menu.add(menuItem);
+        this.selectivityStats.reset();
+        this.version++;
     }
 
     /**
      * Gets all known possible ingredient types for this Filter.
-     * <p>Pulls directly from a public enum's values if possible, otherwise populates from Menu.
+     * <p>Pulls directly from a public enum's values if possible, otherwise from the values on this Menu's items.
      * <p>Sorts alphabetically, and adds NONE and I_DONT_MIND choices at the end.
+     * <p>Answered from the optionIndex, which keeps each Filter's options up to date as items are added and caches
+     * the sorted List, so this doesn't scan the items.
      * @param filter Filter value representing this menu item
      * @return immutable List of Objects with the relevant values.
      */
     public List<Object> getAllIngredientTypes(Filter filter){
-        List<Object> options = new ArrayList<>();
+        return optionIndex.getOptions(filter);
+    }
 
-        if (filter.hasEnumRepresentingItsValues()) {
-            //Intellij's null warning is wrong; this is already guarded by guarantee of hasEnumRepresentingItsValues()
-            options.addAll(filter.getEnumValues());
-        } else {
-            //Add options for filters who need their values read from menu because they can't be
-            //identified by their own Enums
-            Set<Object> deduplicatedOptions = new HashSet<>();
-            for(MenuItem menuItem: menu){
-                if(menuItem.getDreamMenuItem().getAllFilters().containsKey(filter)){
-                    var ingredientTypes = menuItem.getDreamMenuItem().getFilter(filter);
-
-                    if(ingredientTypes instanceof Collection<?>) {
-                        deduplicatedOptions.addAll((Collection<?>) ingredientTypes);
-                    } else {
-                        deduplicatedOptions.add(menuItem.getDreamMenuItem().getFilter(filter));
-                    }
-                }
+    /**
+     * Finds all menu items that match the user's search criteria.
+     * <p>Compiles the criteria (once per DreamMenuItem) and calls findMatch(CompiledQuery).
+     * @param dreamMenuItem DreamMenuItem representing the user's search criteria
+     * @return an immutable List of MenuItems of all matching items. The list will be empty if no matches are found.
+     */
+    public List<MenuItem> findMatch(DreamMenuItem dreamMenuItem){
+        return findMatch(dreamMenuItem.getCompiledQuery(dictionary));
+    }
+
+    /**
+     * Finds all menu items that match the compiled search criteria.
+     * <p>Criteria compiled for another Menu are compiled afresh for this one (see CompiledQuery.compiledFor()).
+     * <p>First orders the plan's predicates by how much they've rejected on this menu (see SelectivityStats).
+     * The starting candidates are the items in the price range, found by binary search on the priceIndex.
+     * Then, in the plan's order, narrows the candidates by intersecting the postingIndex's lists for each
+     * attribute predicate, until few candidates are left (see narrowCandidates()). Each remaining candidate is
+     * checked one by one against the rest of the plan, including its price, stopping at the first predicate it fails.
+     * <p>Every SelectivityStats.SAMPLE_INTERVAL-th item id checked one by one is evaluated against every
+     * remaining predicate to sample their rejection rates.
+     * <p>With PARALLEL_THRESHOLD or more candidates left, they are checked in parallel on the common
+     * fork/join pool.
+     * <p>Matching items are returned in the order they were added to the Menu.
+     * <p>Falls back to checking every item if the criteria can't be answered by the index.
+     * @param query CompiledQuery of the user's search criteria
+     * @return an unmodifiable List of MenuItems of all matching items. The list will be empty if no matches are found.
+     */
+    public List<MenuItem> findMatch(CompiledQuery query){
+        CompiledQuery compiled = query.compiledFor(dictionary);
+        if (!compiled.isEncoded()) return findMatchByScan(compiled);
+        Candidates narrowed = narrowCandidates(compiled);
+        CompiledQuery plan = narrowed.plan();
+        BitSet candidates = narrowed.ids();
+        int firstUnapplied = narrowed.firstUnapplied();
+
+        //CHECK THE REMAINING CANDIDATES ONE BY ONE; split across the common fork/join pool if there are many.
+        List<MenuItem> matching;
+        SelectivityStats.Tally tally;
+        if (narrowed.count() < PARALLEL_THRESHOLD) {
+            tally = new SelectivityStats.Tally(plan);
+            //Clear the non-matching candidates, so the matches can be listed in an array of exactly their number.
+            for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                if (!isResidualMatch(id, compiled, plan, firstUnapplied, tally)) candidates.clear(id);
             }
-            options.addAll(deduplicatedOptions);
-        }
-
-        //sort alphabetically even though they're Object;
-        //https://medium.com/@AlexanderObregon/javas-comparator-comparing-method-explained-342361288af6
-        options.sort(Comparator.comparing(Object::toString));
-
-        // Add NONE as the second last option to relevant Lists
-        if (filter.allowsNoneChoice()) options.add(SpecialChoice.NONE);
-        // Populate the 'I don't mind' values in last position
-        if (filter.allowsDontMindChoice()){
-            Object dontMindValue = filter.getDontMindValue();
-
-            // Sorting put this in its alphabetical position if it was already part of the Filter's
-            // specific class values; sent it to the end.
-            if (filter.hasDontMindValueDefinedInOwnEnum()) {
-                options.remove(dontMindValue);
-                options.add(dontMindValue);
-            } else {
-                //If it wasn't already added direct from its own enum, add it from the values known in Filter.
-                options.add(dontMindValue);
+            matching = itemsWithIds(candidates);
+        } else {
+            //Matches are set in a shared array of bitmap words rather than collected into per-thread lists:
+            //the spliterator splits at word boundaries, so each word is only ever written by one thread.
+            //Each task counts into its own Tally, merged as the tasks join, so no thread waits on another.
+            long[] matchWords = new long[(menu.size() + Long.SIZE - 1) / Long.SIZE];
+            tally = StreamSupport.intStream(new ItemIdSpliterator(candidates, 0, menu.size()), true)
+                    .collect(() -> new SelectivityStats.Tally(plan),
+                            (taskTally, id) -> {
+                                if (isResidualMatch(id, compiled, plan, firstUnapplied, taskTally)) {
+                                    matchWords[id >>> 6] |= 1L << id;
+                                }
+                            },
+                            SelectivityStats.Tally::merge);
+            matching = itemsWithIds(BitSet.valueOf(matchWords));
+        }
+        selectivityStats.record(tally);
+        return matching;
+    }
+
+    /**
+     * Lists the menu items with some ids.
+     * <p>A read-only view of an array sized to fit, so the only allocation is that array.
+     * @param ids the items' ids
+     * @return an unmodifiable List of the MenuItems, in id (menu) order
+     */
+    private List<MenuItem> itemsWithIds(BitSet ids) {
+        MenuItem[] items = new MenuItem[ids.cardinality()];
+        int i = 0;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) items[i++] = menu.get(id);
+        return Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    /**
+     * Finds the menu items that match the compiled search criteria a page at a time, as they're asked for.
+     * <p>Narrows the candidates by the indexes just as findMatch() does, but leaves checking them one by one
+     * to the returned cursor, so the first page is ready without checking every candidate. The cursor records
+     * the checks' selectivity statistics after each page.
+     * <p>Falls back to checking every item, still page by page, if the criteria can't be answered by the index.
+     * @param query CompiledQuery of the user's search criteria
+     * @return SearchResultCursor over the matching items, in the order they were added to the Menu
+     */
+    public SearchResultCursor findMatchPaged(CompiledQuery query){
+        CompiledQuery compiled = query.compiledFor(dictionary);
+        if (!compiled.isEncoded()) {
+            return new SearchResultCursor(postingIndex.allItemIds(), id -> isDreamMenuItemMatch(id, compiled),
+                    menu::get);
+        }
+        Candidates narrowed = narrowCandidates(compiled);
+        SelectivityStats.Tally tally = new SelectivityStats.Tally(narrowed.plan());
+        return new SearchResultCursor(narrowed.ids(),
+                id -> isResidualMatch(id, compiled, narrowed.plan(), narrowed.firstUnapplied(), tally),
+                menu::get, () -> selectivityStats.record(tally));
+    }
+
+    /**
+     * Finds the menu items that match the compiled search criteria a page at a time, checking only items
+     * already known to include every match--e.g. a previous search's results, when the criteria have narrowed.
+     * <p>Skips the indexes: each candidate is checked one by one against the whole plan, so the cost follows
+     * the number of candidates rather than the size of the menu.
+     * @param query CompiledQuery of the user's search criteria
+     * @param possibleMatches ids of the only items that can match; not modified
+     * @return SearchResultCursor over the matching items, in the order they were added to the Menu
+     */
+    public SearchResultCursor findMatchPagedAmong(CompiledQuery query, BitSet possibleMatches){
+        CompiledQuery compiled = query.compiledFor(dictionary);
+        if (!compiled.isEncoded()) {
+            return new SearchResultCursor(possibleMatches, id -> isDreamMenuItemMatch(id, compiled), menu::get);
+        }
+        CompiledQuery plan = selectivityStats.order(compiled);
+        SelectivityStats.Tally tally = new SelectivityStats.Tally(plan);
+        return new SearchResultCursor(possibleMatches, id -> isResidualMatch(id, compiled, plan, 0, tally), menu::get,
+                () -> selectivityStats.record(tally));
+    }
+
+    /**
+     * Finds the menu items that match the compiled search criteria a page at a time, given items already known
+     * to match--e.g. a previous search's results, when the criteria have widened.
+     * <p>Narrows the candidates by the indexes just as findMatchPaged() does; known matches are returned without
+     * checking, so only items the previous search excluded are checked one by one.
+     * @param query CompiledQuery of the user's search criteria
+     * @param knownMatches ids of items known to match; not modified
+     * @return SearchResultCursor over the matching items, in the order they were added to the Menu
+     */
+    public SearchResultCursor findMatchPagedIncluding(CompiledQuery query, BitSet knownMatches){
+        CompiledQuery compiled = query.compiledFor(dictionary);
+        if (!compiled.isEncoded()) {
+            return new SearchResultCursor(postingIndex.allItemIds(),
+                    id -> knownMatches.get(id) || isDreamMenuItemMatch(id, compiled), menu::get);
+        }
+        Candidates narrowed = narrowCandidates(compiled);
+        BitSet candidates = narrowed.ids();
+        candidates.or(knownMatches);
+        SelectivityStats.Tally tally = new SelectivityStats.Tally(narrowed.plan());
+        return new SearchResultCursor(candidates,
+                id -> knownMatches.get(id)
+                        || isResidualMatch(id, compiled, narrowed.plan(), narrowed.firstUnapplied(), tally),
+                menu::get, () -> selectivityStats.record(tally));
+    }
+
+    /**
+     * Checks one item against search criteria by its DreamMenuItem, for criteria or items that couldn't be encoded.
+     * @param id the item's id
+     * @param query the compiled search criteria
+     * @return true if the item matches, including its price
+     */
+    private boolean isDreamMenuItemMatch(int id, CompiledQuery query) {
+        MenuItem menuItem = menu.get(id);
+        return menuItem.getDreamMenuItem().matches(query, menuItem.getPrice());
+    }
+
+    /**
+     * Candidate item ids left after the indexes have narrowed a search, and what's left to check on them.
+     * @param ids the candidates' ids
+     * @param count the number of candidates
+     * @param plan the ordered plan being run, with PRICE_RANGE first
+     * @param firstUnapplied position in the plan of the first predicate not answered by the indexes
+     */
+    private record Candidates(BitSet ids, int count, CompiledQuery plan, int firstUnapplied) {}
+
+    /**
+     * Orders a plan and narrows its candidates using the indexes: first by price, by binary search on the
+     * priceIndex, then by intersecting the postingIndex's lists for each attribute predicate in the plan's order,
+     * until few candidates are left. Records each step's selectivity.
+     * @param query the compiled search criteria; must be encoded
+     * @return the narrowed Candidates
+     */
+    private Candidates narrowCandidates(CompiledQuery query) {
+        CompiledQuery plan = selectivityStats.order(query).withPriceRangeFirst();
+
+        //NARROW BY PRICE FIRST: the cheapest step, by binary search. Skip listing ids if every item is in range.
+        int candidateCount = priceIndex.countInRange(plan.getMinPrice(), plan.getMaxPrice());
+        BitSet candidates = candidateCount == menu.size()
+                ? postingIndex.allItemIds()
+                : priceIndex.idsInRange(plan.getMinPrice(), plan.getMaxPrice());
+        selectivityStats.recordIndexed(plan, 0, menu.size(), candidateCount);
+
+        //NARROW BY POSTING LISTS WHILE THERE ARE STILL MANY CANDIDATES
+        int narrowingCutoff = Math.max(MIN_CANDIDATES_TO_NARROW, menu.size() / Long.SIZE);
+        int next = 1; //position in the plan of the first predicate not yet applied
+        while (next < plan.size() && candidateCount > narrowingCutoff && postingIndex.canNarrow(plan, next)) {
+            postingIndex.narrow(candidates, plan, next);
+            int remaining = candidates.cardinality();
+            selectivityStats.recordIndexed(plan, next, candidateCount, remaining);
+            candidateCount = remaining;
+            next++;
+        }
+        return new Candidates(candidates, candidateCount, plan, next);
+    }
+
+    /**
+     * Checks one candidate item against the predicates of a plan not already applied by the indexes.
+     * <p>Stops at the first failing predicate, except for every SelectivityStats.SAMPLE_INTERVAL-th item id,
+     * which evaluates them all. Each predicate reads just its own column. Items that couldn't be encoded are
+     * checked by DreamMenuItem.matches() instead.
+     * <p>Counts into a Tally rather than the selectivityStats, so it's safe to call from several threads at once,
+     * each with its own Tally.
+     * @param id the candidate's item id
+     * @param query the compiled search criteria as given, for items that couldn't be encoded
+     * @param plan the ordered plan being run
+     * @param from position in the plan of the first predicate to check
+     * @param tally the Tally for plan to count predicates evaluated and samples in
+     * @return true if the item passes every remaining predicate
+     */
+    private boolean isResidualMatch(int id, CompiledQuery query, CompiledQuery plan, int from,
+                                    SelectivityStats.Tally tally) {
+        if (!postingIndex.isIndexed(id)) return isDreamMenuItemMatch(id, query);
+
+        if (id % SelectivityStats.SAMPLE_INTERVAL == 0) {
+            boolean passes = true;
+            for (int i = from; i < plan.size(); i++) {
+                boolean predicatePasses = columns.predicatePasses(plan, i, id);
+                tally.recordSample(i, !predicatePasses);
+                passes &= predicatePasses;
             }
+            return passes;
         }
 
-        return List.copyOf(options);
+        int evaluated = 0;
+        boolean passes = true;
+        for (int i = from; i < plan.size() && passes; i++) {
+            evaluated++;
+            passes = columns.predicatePasses(plan, i, id);
+        }
+        tally.recordEvaluation(evaluated);
+        return passes;
     }
 
     /**
-     * Finds all menu items that match the user's search criteria.
-     * <p>Iterates through every item on the menu and makes two checks:
-     * <li>Compares attributes using the DreamMenuItem.matches() method.
-     * <li>Compares the menu item's price against the user's ideal min and max prices.
-     * <p>An item that passes both checks will be included in the results
-     * @param dreamMenuItem DreamMenuItem representing the user's search criteria
-     * @return an immutable List of MenuItems of all matching items. The list will be empty if no matches are found.
+     * Finds all menu items that match the compiled search criteria by checking every item on the menu.
+     * <p>Compares attributes and price using the DreamMenuItem.matches() method.
+     * <p>Checks in parallel on very large menus, keeping menu order.
+     * @param query CompiledQuery of the user's search criteria
+     * @return an unmodifiable List of MenuItems of all matching items. The list will be empty if no matches are found.
      */
-    public List<MenuItem> findMatch(DreamMenuItem dreamMenuItem){
+    private List<MenuItem> findMatchByScan(CompiledQuery query){
+        if (menu.size() >= PARALLEL_THRESHOLD) {
+            return StreamSupport.intStream(new ItemIdSpliterator(postingIndex.allItemIds(), 0, menu.size()), true)
+                    .mapToObj(menu::get)
+                    .filter(menuItem -> menuItem.getDreamMenuItem().matches(query, menuItem.getPrice()))
+                    .toList();
+        }
         List<MenuItem> matching = new ArrayList<>();
         for(MenuItem menuItem: menu){
-            if(!menuItem.getDreamMenuItem().matches(dreamMenuItem)) continue;
-            if(menuItem.getPrice()<dreamMenuItem.getMinPrice()|| menuItem.getPrice()>dreamMenuItem.getMaxPrice()) continue;
-            matching.add(menuItem);
+            if(menuItem.getDreamMenuItem().matches(query, menuItem.getPrice())) matching.add(menuItem);
+        }
+        return Collections.unmodifiableList(matching);
+    }
+
+    /**
+     * Finds all menu items that match the compiled search criteria by scanning the columnar store,
+     * without the indexes.
+     * <p>An alternative engine to findMatch(): cost grows with menu size rather than with the number of
+     * matches, but each item costs only a few primitive operations per predicate, 64 items per result word
+     * (see MenuColumns.scan()). Items that couldn't be encoded are checked by DreamMenuItem.matches().
+     * <p>Falls back to findMatchByScan() if the criteria can't be encoded.
+     * @param query CompiledQuery of the user's search criteria
+     * @return an unmodifiable List of MenuItems of all matching items, in menu order. Empty if no matches are found.
+     */
+    public List<MenuItem> findMatchByColumnScan(CompiledQuery query){
+        query = query.compiledFor(dictionary);
+        if (!query.isEncoded()) return findMatchByScan(query);
+        return itemsWithIds(findMatchingIdsByColumnScan(query));
+    }
+
+    /**
+     * Sets the loops findMatchByColumnScan() and the batch search run, e.g. to compare them; see ColumnKernel.
+     * @param kernel ColumnKernel.SCALAR, or ColumnKernel.VECTOR if not null
+     */
+    public void useColumnKernel(ColumnKernel kernel) {columns.useKernel(kernel);}
+
+    /**
+     * Finds the ids of all menu items that match the compiled search criteria by scanning the columnar store,
+     * as a result bitmap; see findMatchByColumnScan().
+     * <p>Criteria that can't be encoded (e.g. a SpecialChoice value) are checked against every item by
+     * DreamMenuItem.matches() instead.
+     * @param query CompiledQuery of the user's search criteria
+     * @return a new BitSet of the matching items' ids (their positions in the menu)
+     */
+    public BitSet findMatchingIdsByColumnScan(CompiledQuery query){
+        query = query.compiledFor(dictionary);
+        if (!query.isEncoded()) {
+            BitSet matchingIds = new BitSet(menu.size());
+            for (int id = 0; id < menu.size(); id++) {
+                MenuItem menuItem = menu.get(id);
+                if (menuItem.getDreamMenuItem().matches(query, menuItem.getPrice())) matchingIds.set(id);
+            }
+            return matchingIds;
+        }
+        BitSet matchingIds = columns.scan(query);
+
+        BitSet unindexed = postingIndex.unindexedItemIds();
+        matchingIds.andNot(unindexed);
+        for (int id = unindexed.nextSetBit(0); id >= 0; id = unindexed.nextSetBit(id + 1)) {
+            MenuItem menuItem = menu.get(id);
+            if (menuItem.getDreamMenuItem().matches(query, menuItem.getPrice())) matchingIds.set(id);
+        }
+        return matchingIds;
+    }
+
+    /**
+     * Finds the menu items matching each of many search criteria in a single pass over the menu, e.g. to replay
+     * recorded searches against a new menu.
+     * <p>Much higher total throughput than a findMatch() per criteria: see findMatchingIdsBatch().
+     * @param criteria List of DreamMenuItems representing each search's criteria
+     * @return immutable List with an unmodifiable List of matching MenuItems per criteria, in the same order,
+     * each in menu order.
+     */
+    public List<List<MenuItem>> findMatchBatch(List<DreamMenuItem> criteria){
+        List<CompiledQuery> queries = new ArrayList<>(criteria.size());
+        for (DreamMenuItem dreamMenuItem : criteria) queries.add(dreamMenuItem.getCompiledQuery(dictionary));
+
+        List<List<MenuItem>> results = new ArrayList<>(queries.size());
+        for (BitSet matchingIds : findMatchingIdsBatch(queries)) results.add(itemsWithIds(matchingIds));
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Finds the ids of the menu items matching each of many compiled search criteria in a single pass over the
+     * menu, as result bitmaps.
+     * <p>Encoded criteria are evaluated together by MenuColumns.scanBatch(), which runs every query on each
+     * block of items while it's in cache and evaluates predicates the queries share once. Items that couldn't
+     * be encoded, and criteria that couldn't be encoded, are checked by DreamMenuItem.matches(), once per item
+     * for all such criteria.
+     * @param queries List of CompiledQuery of each search's criteria
+     * @return immutable List of a new BitSet of matching items' ids (their positions in the menu) per query,
+     * in the same order
+     */
+    public List<BitSet> findMatchingIdsBatch(List<CompiledQuery> queries){
+        List<CompiledQuery> compiled = new ArrayList<>(queries.size());
+        for (CompiledQuery query : queries) compiled.add(query.compiledFor(dictionary));
+        queries = compiled;
+        List<CompiledQuery> encodedQueries = new ArrayList<>();
+        for (CompiledQuery query : queries) {
+            if (query.isEncoded()) encodedQueries.add(query);
+        }
+
+        BitSet[] matchingIds = new BitSet[queries.size()];
+        BitSet[] scanned = columns.scanBatch(encodedQueries);
+        for (int q = 0, e = 0; q < queries.size(); q++) {
+            matchingIds[q] = queries.get(q).isEncoded() ? scanned[e++] : new BitSet(menu.size());
+        }
+
+        //Items the columns can't answer for are checked against every query; other items only need checking
+        //against queries the columns can't answer.
+        BitSet unindexed = postingIndex.unindexedItemIds();
+        BitSet itemsToCheck = (BitSet) unindexed.clone();
+        if (encodedQueries.size() < queries.size()) itemsToCheck.set(0, menu.size());
+        for (int id = itemsToCheck.nextSetBit(0); id >= 0; id = itemsToCheck.nextSetBit(id + 1)) {
+            MenuItem menuItem = menu.get(id);
+            boolean isUnindexed = unindexed.get(id);
+            for (int q = 0; q < queries.size(); q++) {
+                if (!isUnindexed && queries.get(q).isEncoded()) continue;
+                matchingIds[q].set(id, menuItem.getDreamMenuItem().matches(queries.get(q), menuItem.getPrice()));
+            }
+        }
+        return List.of(matchingIds);
+    }
+
+    /**
+     * Finds the k menu items that come closest to matching the compiled search criteria.
+     * <p>Scores every item in one pass by the weights of the predicates it passes (see
+     * CompiledQuery.predicateWeight()), keeping only the best k so far in a bounded min-heap.
+     * Intended for when findMatch() finds nothing, so customers get a few useful alternatives.
+     * <p>If the criteria couldn't be encoded, they can't be scored; the first k items are returned.
+     * @param query CompiledQuery of the user's search criteria
+     * @param k the max number of items to return
+     * @return an immutable List of up to k MenuItems, best score first; ties keep menu order.
+     */
+    public List<MenuItem> findNearestMatches(CompiledQuery query, int k){
+        if (k <= 0) return List.of();
+        query = query.compiledFor(dictionary);
+        if (!query.isEncoded()) return List.copyOf(menu.subList(0, Math.min(k, menu.size())));
+
+        //Weakest of the best so far on top, ready to be replaced. Among equal scores, later items are weaker.
+        PriorityQueue<ScoredItem> best = new PriorityQueue<>(k + 1,
+                Comparator.comparingInt(ScoredItem::score).thenComparing(ScoredItem::id, Comparator.reverseOrder()));
+        for (int id = 0; id < menu.size(); id++) {
+            boolean indexed = postingIndex.isIndexed(id);
+            int score = 0;
+            for (int i = 0; i < query.size(); i++) {
+                //Items that couldn't be encoded can only be scored on price.
+                boolean scorable = indexed || query.kindAt(i) == CompiledQuery.PredicateKind.PRICE_RANGE;
+                if (scorable && columns.predicatePasses(query, i, id)) score += query.predicateWeight(i);
+            }
+            if (best.size() < k) {
+                best.add(new ScoredItem(id, score));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new ScoredItem(id, score));
+            }
         }
-        return List.copyOf(matching);
+
+        List<MenuItem> nearest = new ArrayList<>(best.size());
+        while (!best.isEmpty()) nearest.add(menu.get(best.poll().id()));
+        Collections.reverse(nearest); //The heap gives weakest first.
+        return List.copyOf(nearest);
+    }
+
+    /**
+     * An item id and its near-match score, for findNearestMatches().
+     * @param id the item's id
+     * @param score sum of the weights of the predicates it passed
+     */
+    private record ScoredItem(int id, int score) {}
+
+    /**
+     * Counts, for every option of every Filter, how many menu items would match if that option were chosen
+     * along with the other current selections.
+     * <p>Compiles the selections (once per DreamMenuItem) and calls getFacetCounts(CompiledQuery).
+     * @param partialSelections DreamMenuItem of the selections made so far; unchosen Filters are left out
+     * @return immutable Map of Filter to immutable Map of option to matching-item count
+     */
+    public Map<Filter, Map<Object, Integer>> getFacetCounts(DreamMenuItem partialSelections){
+        return getFacetCounts(partialSelections.getCompiledQuery(dictionary));
     }
 
+    /**
+     * Counts, for every option of every Filter, how many menu items would match if that option were chosen
+     * along with the other current selections.
+     * <p>A Filter's own selection is ignored when counting its options, so customers see what each
+     * alternative would give them rather than 0 for everything but their current choice.
+     * <p>Computed from the postingIndex without looking at any indexed item: each constrained Filter's matching ids
+     * (and the price range's) are found once, then combined into 'all but this Filter' sets with running
+     * prefix and suffix intersections, so k constraints cost about 3k intersections rather than k squared.
+     * Each option's count is one more intersection with its posting. See PostingIndex.countValues() for the
+     * options counted.
+     * <p>Items whose attributes couldn't be encoded aren't in the postingIndex, so they're then checked by value
+     * (see countByValue()). If the selections themselves can't be encoded, nothing is counted.
+     * @param partialSelections CompiledQuery of the selections made so far
+     * @return immutable Map of Filter to immutable Map of option to matching-item count
+     */
+    public Map<Filter, Map<Object, Integer>> getFacetCounts(CompiledQuery partialSelections){
+        partialSelections = partialSelections.compiledFor(dictionary);
+        if (!partialSelections.isEncoded()) return Map.of();
+
+        //Items passing each constraint, in plan order; the price range's come from the priceIndex.
+        int constraintCount = partialSelections.size();
+        BitSet[] passing = new BitSet[constraintCount];
+        for (int i = 0; i < constraintCount; i++) {
+            passing[i] = postingIndex.canNarrow(partialSelections, i)
+                    ? postingIndex.idsPassing(partialSelections, i)
+                    : priceIndex.idsInRange(partialSelections.getMinPrice(), partialSelections.getMaxPrice());
+        }
+
+        //prefix[i] = indexed items passing constraints 0..i-1; suffix[i] = items passing constraints i..end.
+        BitSet[] prefix = new BitSet[constraintCount + 1];
+        prefix[0] = postingIndex.indexedItemIds();
+        for (int i = 0; i < constraintCount; i++) {
+            prefix[i + 1] = (BitSet) prefix[i].clone();
+            prefix[i + 1].and(passing[i]);
+        }
+        BitSet[] suffix = new BitSet[constraintCount + 1];
+        suffix[constraintCount] = postingIndex.indexedItemIds();
+        for (int i = constraintCount - 1; i >= 0; i--) {
+            suffix[i] = (BitSet) suffix[i + 1].clone();
+            suffix[i].and(passing[i]);
+        }
+
+        Map<Filter, Map<Object, Integer>> facetCounts = new EnumMap<>(Filter.class);
+        BitSet scratch = new BitSet(menu.size());
+        for (int i = 0; i < constraintCount; i++) {
+            Filter filter = partialSelections.filterAt(i);
+            if (filter == null) continue; //the price range has no options to count
+            BitSet allButThisFilter = (BitSet) prefix[i].clone();
+            allButThisFilter.and(suffix[i + 1]);
+            facetCounts.put(filter, postingIndex.countValues(filter, allButThisFilter, scratch));
+        }
+        //Unconstrained Filters' options are counted within the items passing every constraint.
+        for (Filter filter : Filter.values()) {
+            if (!facetCounts.containsKey(filter)) {
+                facetCounts.put(filter, postingIndex.countValues(filter, prefix[constraintCount], scratch));
+            }
+        }
+
+        BitSet unindexed = postingIndex.unindexedItemIds();
+        for (int id = unindexed.nextSetBit(0); id >= 0; id = unindexed.nextSetBit(id + 1)) {
+            countByValue(menu.get(id), partialSelections, facetCounts);
+        }
+        facetCounts.replaceAll((filter, counts) -> Map.copyOf(counts));
+        return Collections.unmodifiableMap(facetCounts);
+    }
+
+    /**
+     * Adds a menu item the postingIndex doesn't hold to facet counts, checking it against the selections by value.
+     * <p>As for indexed items, it counts towards a Filter's options if it passes every constraint but that
+     * Filter's own: towards every Filter's if it passes them all, or only the one Filter's it fails.
+     * @param menuItem the unindexed item
+     * @param selections the selections being counted for
+     * @param facetCounts each Filter's mutable Map of option to matching-item count, added to
+     */
+    private static void countByValue(MenuItem menuItem, CompiledQuery selections,
+                                     Map<Filter, Map<Object, Integer>> facetCounts) {
+        Map<Filter, FilterValue> itemValues = menuItem.getDreamMenuItem().getAllFilters();
+        int failures = selections.priceInRange(menuItem.getPrice()) ? 0 : 1;
+        Filter failedFilter = null;
+        for (Map.Entry<Filter, FilterValue> criterion : selections.getCriteria().getAllFilters().entrySet()) {
+            if (!criterion.getValue().accepts(itemValues.get(criterion.getKey()))) {
+                failures++;
+                failedFilter = criterion.getKey();
+            }
+        }
+        if (failures > 1 || (failures == 1 && failedFilter == null)) return; //fails two, or the price range
+
+        for (Filter filter : Filter.values()) {
+            if (failedFilter != null && filter != failedFilter) continue;
+            Map<Object, Integer> counts = facetCounts.get(filter);
+            FilterValue itemValue = itemValues.get(filter);
+            //The options it carries, as PostingIndex.countValues() counts them.
+            if (itemValue != null && itemValue.toObject() instanceof Collection<?> values) {
+                for (Object value : values) counts.merge(value, 1, Integer::sum);
+            } else if (itemValue != null) {
+                counts.merge(itemValue.toObject(), 1, Integer::sum);
+            }
+            if (filter.allowsNoneChoice() && (itemValue == null || itemValue.isAbsent())) {
+                counts.merge(SpecialChoice.NONE, 1, Integer::sum);
+            }
+            if (filter.allowsDontMindChoice()) counts.merge(filter.getDontMindValue(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Counts the menu items priced within a range, without listing them.
+     * <p>Answered by binary search on the price index.
+     * @param minPrice lowest price, inclusive
+     * @param maxPrice highest price, inclusive
+     * @return number of items with minPrice <= price <= maxPrice
+     */
+    public int countInPriceRange(double minPrice, double maxPrice) {
+        return priceIndex.countInRange(minPrice, maxPrice);
+    }
+
+    /**
+     * Gets the bytes each item's attributes and price take in this menu's columnar store.
+     * <p>For comparison with the DreamMenuItem object graph each MenuItem also holds; see MenuBenchmark.
+     * @return bytes per item, see MenuColumns.bytesPerItem()
+     */
+    public int getColumnarBytesPerItem() {return columns.bytesPerItem();}
+
+    /**
+     * Builds now whatever this menu otherwise builds on the first search after items are added (i.e. sorts the
+     * price index), e.g. so a menu loaded in the background doesn't hold up the first search on it.
+     */
+    public void prepareForSearch() {priceIndex.ensureSorted();}
+
+    /**
+     * Gets this menu's version, which changes whenever its contents change (e.g. an item is added).
+     * @return long
+     */
+    public long getVersion() {return version;}
+
+    /**
+     * Gets the dictionary this menu codes its items' free-text values with, e.g. to compile criteria for it
+     * ahead of searching.
+     * @return this Menu's AttributeMasks.Dictionary
+     */
+    public AttributeMasks.Dictionary getDictionary() {return dictionary;}
+
+    /**
+     * Gets the selectivity statistics gathered by searches on this menu, e.g. to report
+     * the average number of predicates evaluated per item.
+     * @return this Menu's SelectivityStats
+     */
+    public SelectivityStats getSelectivityStats() {return selectivityStats;}
+
     /**
      * Returns a copy of the complete set of all menu items
      * @return an immutable Set of MenuItems containing all items in this Menu.
      */
     public Set<MenuItem> getMenuItems(){return Set.copyOf(menu);}
+
+    /**
+     * Gets every menu item in the order they were added, e.g. to save the Menu and load it back the same.
+     * @return an unmodifiable view of the MenuItems, in menu order
+     */
+    public List<MenuItem> getMenuItemsInOrder(){return Collections.unmodifiableList(menu);}
 }
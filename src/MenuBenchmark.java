@@ -0,0 +1,562 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Command-line benchmarks of the Menu's storage and search, on menu.txt repeated up to a large menu.
+ * <p>Not part of the ordering system; run from the project root with:
+ * <li>java MenuBenchmark footprint [itemCount]--bytes per item of the columnar store vs the DreamMenuItem
+ * object graph each item also holds.
+ * <li>java MenuBenchmark scan [itemCount]--search throughput, in items per second, of the DreamMenuItem.matches()
+ * loop, Menu.findMatchByColumnScan() with each ColumnKernel available, and the indexed Menu.findMatch(). Start the
+ * JVM with --add-modules jdk.incubator.vector, with src-vector compiled, to include the Vector API kernel.
+ * <li>java MenuBenchmark batch [itemCount] [queryCount]--searches per second replaying many recorded searches,
+ * one at a time vs all at once through Menu.findMatchBatch().
+ * <li>java MenuBenchmark alloc [itemCount]--bytes allocated per search: building the criteria, the indexed
+ * Menu.findMatch(), and the value-based DreamMenuItem.matches() used for items and criteria that can't be encoded.
+ * <li>java MenuBenchmark parse [itemCount]--rows and megabytes per second, and heap bytes allocated per row,
+ * loading a menu file of that many rows through MenuParser, read and memory-mapped, including building the Menu.
+ * <li>java MenuBenchmark startup [itemCount]--milliseconds to load a menu of that many rows at startup by parsing
+ * the text vs reading a MenuSnapshot.
+ * <li>java MenuBenchmark heap [itemCount]--heap bytes per item retained by a menu of that many rows once loaded,
+ * next to the bytes per item of description text held off the heap in its TextStore.
+ * <p>Figures are for this JVM and machine; compare runs, not absolute numbers.
+ */
+public final class MenuBenchmark {
+    private static final String MENU_TXT_PATH = "./menu.txt";
+    private static final int DEFAULT_ITEM_COUNT = 100_000;
+    // Untimed runs of each engine first, so the JIT has compiled them before timing.
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 50;
+    private static final int DEFAULT_BATCH_QUERY_COUNT = 1_000;
+    // Each batch round runs every query, so fewer rounds are needed.
+    private static final int BATCH_WARMUP_ROUNDS = 3;
+    private static final int BATCH_TIMED_ROUNDS = 5;
+    // Each parse round reads the whole file, so fewer rounds are needed.
+    private static final int PARSE_WARMUP_ROUNDS = 3;
+    private static final int PARSE_TIMED_ROUNDS = 5;
+
+    /**
+     * Private constructor; static entry point only.
+     */
+    private MenuBenchmark() {}
+
+    /**
+     * Runs the benchmark named by the first argument.
+     * @param args benchmark name, then optionally the number of menu items to use.
+     */
+    public static void main(String[] args) {
+        String benchmark = args.length > 0 ? args[0] : "footprint";
+        int itemCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITEM_COUNT;
+
+        switch (benchmark) {
+            case "footprint" -> reportFootprint(itemCount);
+            case "scan" -> reportScanThroughput(itemCount);
+            case "batch" -> reportBatchThroughput(itemCount,
+                    args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_QUERY_COUNT);
+            case "alloc" -> reportAllocation(itemCount);
+            case "parse" -> reportParseThroughput(itemCount);
+            case "startup" -> reportStartup(itemCount);
+            case "heap" -> reportRetainedHeap(itemCount);
+            default -> {
+                System.out.println("Unknown benchmark '" + benchmark
+                        + "'. Expected: footprint, scan, batch, alloc, parse, startup, heap");
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Prints bytes per item of the columnar store (exact, from its column widths) next to the DreamMenuItem
+     * object graph (measured, as the heap retained by that many DreamMenuItems).
+     * @param itemCount number of items to measure over
+     */
+    private static void reportFootprint(int itemCount) {
+        long heapBefore = usedHeapAfterGc();
+        //Load the file repeatedly so every item has its own object graph, as on a menu that size.
+        List<DreamMenuItem> objectGraphs = new ArrayList<>(itemCount);
+        Menu menu = null;
+        while (objectGraphs.size() < itemCount) {
+            menu = MenuSearcher.loadMenu(MENU_TXT_PATH);
+            for (MenuItem menuItem : menu.getMenuItems()) {
+                if (objectGraphs.size() == itemCount) break;
+                objectGraphs.add(menuItem.getDreamMenuItem());
+            }
+        }
+        menu = Objects.requireNonNull(menu); //only the last, small, load is still held
+        long heapAfter = usedHeapAfterGc();
+        Reference.reachabilityFence(objectGraphs);
+
+        double objectBytesPerItem = (double) (heapAfter - heapBefore) / itemCount;
+        int columnarBytesPerItem = menu.getColumnarBytesPerItem();
+        System.out.printf("Items measured:            %,d%n", itemCount);
+        System.out.printf("DreamMenuItem object graph: %,.1f bytes/item (measured; incl. 4-8 byte list reference)%n",
+                objectBytesPerItem);
+        System.out.printf("Columnar store:            %,d bytes/item (exact; attributes and price)%n",
+                columnarBytesPerItem);
+        System.out.printf("Ratio:                     %.1fx smaller%n", objectBytesPerItem / columnarBytesPerItem);
+    }
+
+    /**
+     * Prints the search throughput of each engine over the same criteria, after checking they agree.
+     * @param itemCount number of items on the benchmark menu
+     */
+    private static void reportScanThroughput(int itemCount) {
+        Menu menu = new Menu();
+        List<MenuItem> items = buildItems(itemCount);
+        for (MenuItem menuItem : items) menu.addItem(menuItem);
+        List<CompiledQuery> queries = benchmarkQueries(menu.getDictionary());
+
+        Map<String, Function<CompiledQuery, List<MenuItem>>> engines = new LinkedHashMap<>();
+        engines.put("DreamMenuItem.matches loop", query -> {
+            List<MenuItem> matching = new ArrayList<>();
+            for (MenuItem menuItem : items) {
+                if (menuItem.getDreamMenuItem().matches(query, menuItem.getPrice())) matching.add(menuItem);
+            }
+            return matching;
+        });
+        Map<String, ColumnKernel> kernels = new LinkedHashMap<>();
+        kernels.put("scalar", ColumnKernel.SCALAR);
+        if (ColumnKernel.VECTOR != null) kernels.put("vector", ColumnKernel.VECTOR);
+        kernels.forEach((name, kernel) -> engines.put("Column scan, " + name, query -> {
+            menu.useColumnKernel(kernel);
+            return menu.findMatchByColumnScan(query);
+        }));
+        engines.put("Indexed findMatch", menu::findMatch);
+
+        for (CompiledQuery query : queries) {
+            List<MenuItem> expected = engines.get("DreamMenuItem.matches loop").apply(query);
+            for (Map.Entry<String, Function<CompiledQuery, List<MenuItem>>> engine : engines.entrySet()) {
+                if (!engine.getValue().apply(query).equals(expected)) {
+                    System.out.println(engine.getKey() + " disagrees with the DreamMenuItem.matches loop; aborting.");
+                    System.exit(1);
+                }
+            }
+        }
+
+        System.out.printf("Items: %,d; queries: %d%n", itemCount, queries.size());
+        if (ColumnKernel.VECTOR == null) {
+            System.out.println("(Vector API kernel not loaded: compile src-vector and add jdk.incubator.vector)");
+        }
+        for (Map.Entry<String, Function<CompiledQuery, List<MenuItem>>> engine : engines.entrySet()) {
+            reportThroughput(engine.getKey(), itemCount, queries, query -> engine.getValue().apply(query).size());
+        }
+        //Without building the List of MenuItems, which costs the same for every engine.
+        kernels.forEach((name, kernel) -> reportThroughput("Column scan, " + name + " (bitmap)", itemCount, queries,
+                query -> {
+                    menu.useColumnKernel(kernel);
+                    return menu.findMatchingIdsByColumnScan(query).cardinality();
+                }));
+    }
+
+    /**
+     * Prints how many recorded searches per second can be replayed one at a time by each engine, and all at
+     * once by Menu.findMatchBatch(), after checking they agree.
+     * @param itemCount number of items on the benchmark menu
+     * @param queryCount number of recorded searches to replay
+     */
+    private static void reportBatchThroughput(int itemCount, int queryCount) {
+        Menu menu = new Menu();
+        for (MenuItem menuItem : buildItems(itemCount)) menu.addItem(menuItem);
+        List<CompiledQuery> queries = recordedQueries(queryCount, menu.getDictionary());
+
+        List<DreamMenuItem> criteria = new ArrayList<>(queries.size());
+        for (CompiledQuery query : queries) criteria.add(query.getCriteria());
+
+        Map<String, Function<List<CompiledQuery>, List<List<MenuItem>>>> engines = new LinkedHashMap<>();
+        engines.put("Indexed findMatch, each", batch -> batch.stream().map(menu::findMatch).toList());
+        engines.put("Column scan, each", batch -> batch.stream().map(menu::findMatchByColumnScan).toList());
+        engines.put("Batch, one pass", batch -> menu.findMatchBatch(criteria));
+
+        List<List<MenuItem>> expected = engines.get("Column scan, each").apply(queries);
+        for (Map.Entry<String, Function<List<CompiledQuery>, List<List<MenuItem>>>> engine : engines.entrySet()) {
+            if (!engine.getValue().apply(queries).equals(expected)) {
+                System.out.println(engine.getKey() + " disagrees with the column scan; aborting.");
+                System.exit(1);
+            }
+        }
+
+        System.out.printf("Items: %,d; recorded searches: %,d%n", itemCount, queryCount);
+        for (Map.Entry<String, Function<List<CompiledQuery>, List<List<MenuItem>>>> engine : engines.entrySet()) {
+            reportBatchThroughput(engine.getKey(), queryCount,
+                    () -> engine.getValue().apply(queries).stream().mapToLong(List::size).sum());
+        }
+        //Without building the Lists of MenuItems, which costs the same for every engine.
+        reportBatchThroughput("Column scan, each (bitmaps)", queryCount,
+                () -> queries.stream().mapToLong(query -> menu.findMatchingIdsByColumnScan(query).cardinality()).sum());
+        reportBatchThroughput("Batch, one pass (bitmaps)", queryCount,
+                () -> menu.findMatchingIdsBatch(queries).stream().mapToLong(BitSet::cardinality).sum());
+    }
+
+    /**
+     * Times repeated replays of every recorded search and prints how many searches per second were run.
+     * @param name the engine's name
+     * @param queryCount number of searches in each replay
+     * @param replay runs every search once and returns their total number of matches
+     */
+    private static void reportBatchThroughput(String name, int queryCount, LongSupplier replay) {
+        long matchCount = 0; //consumed, so the JIT can't drop the searches
+        for (int round = 0; round < BATCH_WARMUP_ROUNDS; round++) matchCount += replay.getAsLong();
+        long start = System.nanoTime();
+        for (int round = 0; round < BATCH_TIMED_ROUNDS; round++) matchCount += replay.getAsLong();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-28s %,12.0f searches/s  (%d matches)%n", name,
+                (double) queryCount * BATCH_TIMED_ROUNDS / seconds, matchCount);
+    }
+
+    /**
+     * Prints the bytes allocated per search, on every thread (so parallel searches are counted), for each stage
+     * of a search as the GUI runs it.
+     * @param itemCount number of items on the benchmark menu
+     */
+    private static void reportAllocation(int itemCount) {
+        Menu menu = new Menu();
+        List<MenuItem> items = buildItems(itemCount);
+        for (MenuItem menuItem : items) menu.addItem(menuItem);
+        List<Map<Filter, FilterValue>> criteriaMaps = new ArrayList<>();
+        for (CompiledQuery query : benchmarkQueries(menu.getDictionary())) {
+            criteriaMaps.add(query.getCriteria().getAllFilters());
+        }
+        //Can't be encoded (I_DONT_MIND is no BUN), so matching falls back to comparing FilterValues.
+        Map<Filter, FilterValue> unencodable = new EnumMap<>(criteriaMaps.get(1));
+        unencodable.put(Filter.BUN, new FilterValue.EnumValue(SpecialChoice.I_DONT_MIND));
+        DreamMenuItem unencodableCriteria = new DreamMenuItem(unencodable, 0, Double.MAX_VALUE);
+        List<DreamMenuItem> searched = new ArrayList<>();
+        for (Map<Filter, FilterValue> criteria : criteriaMaps) searched.add(new DreamMenuItem(criteria, 10, 20));
+
+        System.out.printf("Items: %,d; queries: %d%n", itemCount, criteriaMaps.size());
+        reportAllocation("Build and compile criteria", "search", criteriaMaps.size(), () -> {
+            long compiled = 0;
+            for (Map<Filter, FilterValue> criteria : criteriaMaps) {
+                compiled += new DreamMenuItem(criteria, 10, 20).getCompiledQuery(menu.getDictionary()).size();
+            }
+            return compiled;
+        });
+        reportAllocation("Indexed findMatch", "search", searched.size(), () -> {
+            long matchCount = 0;
+            for (DreamMenuItem criteria : searched) matchCount += menu.findMatch(criteria).size();
+            return matchCount;
+        });
+        reportAllocation("Value-based matches", "item", items.size(), () -> {
+            long matchCount = 0;
+            for (MenuItem menuItem : items) {
+                if (menuItem.getDreamMenuItem().matches(unencodableCriteria)) matchCount++;
+            }
+            return matchCount;
+        });
+    }
+
+    /**
+     * Measures and prints the bytes allocated by repeated runs of some work, after untimed warmup runs.
+     * @param name the work's name
+     * @param unit what the work does unitsPerRun of, e.g. "search"
+     * @param unitsPerRun how many units each run does
+     * @param work runs once and returns a result to consume
+     */
+    private static void reportAllocation(String name, String unit, int unitsPerRun, LongSupplier work) {
+        long consumed = 0; //consumed, so the JIT can't drop the work
+        for (int round = 0; round < WARMUP_ROUNDS; round++) consumed += work.getAsLong();
+        long before = allocatedBytesAllThreads();
+        for (int round = 0; round < TIMED_ROUNDS; round++) consumed += work.getAsLong();
+        long allocated = allocatedBytesAllThreads() - before;
+        System.out.printf("%-28s %,12.1f bytes/%s  (%d)%n", name,
+                (double) allocated / ((long) unitsPerRun * TIMED_ROUNDS), unit, consumed);
+    }
+
+    /**
+     * Gets the bytes allocated so far by every live thread, as counted by the JVM.
+     * @return bytes
+     */
+    private static long allocatedBytesAllThreads() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) allocated += bytes; //-1 for threads that ended meanwhile
+        }
+        return allocated;
+    }
+
+    /**
+     * Prints how many rows and megabytes per second MenuParser loads, reading through a BufferedReader and from a
+     * memory-mapped file, and how many bytes each allocates on the heap per row. The file is a temporary one of
+     * menu.txt's rows repeated (with unique ids) up to itemCount rows. It's read once first, so it's in the OS
+     * cache and the figures are for parsing rather than the disk.
+     * @param itemCount number of rows in the file
+     */
+    private static void reportParseThroughput(int itemCount) {
+        Path file = null;
+        try {
+            file = writeMenuFile(itemCount);
+            MenuParser.Result result = MenuParser.parse(file);
+            if (result.hasErrors()) {
+                System.out.println(result.getReport(1));
+                System.exit(1);
+            }
+
+            System.out.printf("Rows: %,d; file: %.1f MB%n", itemCount, Files.size(file) / 1e6);
+            reportParseThroughput("MenuParser, reader", file, itemCount, MenuParser::parse);
+            reportParseThroughput("MenuParser, mapped", file, itemCount, MenuParser::parseMapped);
+        } catch (IOException io) {
+            System.out.println("Benchmark file could not be written or read: " + io.getMessage());
+            System.exit(1);
+        } finally {
+            if (file != null) file.toFile().delete();
+        }
+    }
+
+    /**
+     * Prints how long it takes to load a menu at startup by parsing the menu data text, and by reading a
+     * MenuSnapshot compiled from it: once from cold, as a kiosk boots, then on average once the JIT has compiled
+     * both paths. The text is a temporary file of menu.txt's rows repeated (with unique ids) up to itemCount rows.
+     * @param itemCount number of rows in the file
+     */
+    private static void reportStartup(int itemCount) {
+        Path file = null;
+        Path snapshot = null;
+        try {
+            file = writeMenuFile(itemCount);
+            snapshot = Files.createTempFile("menu-benchmark", ".snapshot");
+            System.out.printf("Rows: %,d; text: %.1f MB", itemCount, Files.size(file) / 1e6);
+            Path text = file;
+            Path binary = snapshot;
+            Map<String, MenuLoader> loaders = new LinkedHashMap<>();
+            loaders.put("Parse text", unused -> MenuParser.parseMapped(text));
+            loaders.put("Read snapshot", unused -> new MenuParser.Result(MenuSnapshot.read(binary), itemCount, List.of()));
+
+            //From cold: the first load through each path, compiling the snapshot in between.
+            MenuSnapshot.SourceStamp stamp = MenuSnapshot.SourceStamp.of(file);
+            long start = System.nanoTime();
+            MenuParser.Result parsed = loaders.get("Parse text").load(file);
+            double textColdMillis = (System.nanoTime() - start) / 1e6;
+            MenuSnapshot.write(parsed.menu(), stamp, snapshot);
+            System.out.printf("; snapshot: %.1f MB%n", Files.size(snapshot) / 1e6);
+            start = System.nanoTime();
+            loaders.get("Read snapshot").load(snapshot);
+            double snapshotColdMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-28s %,10.1f ms first load%n", "Parse text", textColdMillis);
+            System.out.printf("%-28s %,10.1f ms first load%n", "Read snapshot", snapshotColdMillis);
+
+            for (Map.Entry<String, MenuLoader> loader : loaders.entrySet()) {
+                long itemsLoaded = 0; //consumed, so the JIT can't drop the loading
+                for (int round = 0; round < PARSE_WARMUP_ROUNDS; round++) {
+                    itemsLoaded += loader.getValue().load(file).menu().getMenuItemsInOrder().size();
+                }
+                start = System.nanoTime();
+                for (int round = 0; round < PARSE_TIMED_ROUNDS; round++) {
+                    itemsLoaded += loader.getValue().load(file).menu().getMenuItemsInOrder().size();
+                }
+                double millis = (System.nanoTime() - start) / 1e6 / PARSE_TIMED_ROUNDS;
+                System.out.printf("%-28s %,10.1f ms per load after warmup  (%d)%n", loader.getKey(), millis,
+                        itemsLoaded);
+            }
+        } catch (IOException io) {
+            System.out.println("Benchmark file could not be written or read: " + io.getMessage());
+            System.exit(1);
+        } finally {
+            if (file != null) file.toFile().delete();
+            if (snapshot != null) snapshot.toFile().delete();
+        }
+    }
+
+    /**
+     * Prints the heap retained by a loaded Menu per item, measured as the heap in use before and after loading a
+     * temporary file of menu.txt's rows repeated (with unique ids) up to itemCount rows, and the description text
+     * per item that its TextStore holds off the heap instead.
+     * @param itemCount number of rows in the file
+     */
+    private static void reportRetainedHeap(int itemCount) {
+        Path file = null;
+        try {
+            file = writeMenuFile(itemCount);
+            long heapBefore = usedHeapAfterGc();
+            Menu menu = MenuParser.parseMapped(file).menu();
+            long heapAfter = usedHeapAfterGc();
+
+            long descriptionBytes = 0;
+            for (MenuItem menuItem : menu.getMenuItemsInOrder()) {
+                descriptionBytes += menuItem.getDescription().getBytes(StandardCharsets.UTF_8).length;
+            }
+            System.out.printf("Items loaded:              %,d%n", itemCount);
+            System.out.printf("Heap retained:             %,.1f bytes/item (measured)%n",
+                    (double) (heapAfter - heapBefore) / itemCount);
+            System.out.printf("Descriptions off the heap: %,.1f bytes/item (UTF-8)%n",
+                    (double) descriptionBytes / itemCount);
+        } catch (IOException io) {
+            System.out.println("Benchmark file could not be written or read: " + io.getMessage());
+            System.exit(1);
+        } finally {
+            if (file != null) file.toFile().delete();
+        }
+    }
+
+    /**
+     * Writes a temporary menu data file of menu.txt's rows repeated up to a number of rows, each prefixed to keep
+     * its id unique.
+     * @param itemCount number of rows
+     * @return path of the new file; the caller deletes it
+     * @throws IOException if menu.txt can't be read or the file can't be written
+     */
+    private static Path writeMenuFile(int itemCount) throws IOException {
+        List<String> menuTxtLines = Files.readAllLines(Path.of(MENU_TXT_PATH));
+        List<String> rows = menuTxtLines.subList(1, menuTxtLines.size());
+        Path file = Files.createTempFile("menu-benchmark", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(menuTxtLines.get(0));
+            writer.newLine();
+            for (int i = 0; i < itemCount; i++) {
+                writer.write(i / rows.size() + "-"); //prefixes the id, keeping it unique
+                writer.write(rows.get(i % rows.size()));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * A way of loading a menu file.
+     */
+    @FunctionalInterface
+    private interface MenuLoader {
+        MenuParser.Result load(Path file) throws IOException;
+    }
+
+    /**
+     * Times repeated loads of a menu file, and prints their throughput and heap allocation.
+     * @param name the loader's name
+     * @param file the menu file
+     * @param rowCount number of rows in the file
+     * @param loader loads the file
+     * @throws IOException if the file can't be read
+     */
+    private static void reportParseThroughput(String name, Path file, int rowCount, MenuLoader loader)
+            throws IOException {
+        double megabytes = Files.size(file) / 1e6;
+        long itemsLoaded = 0; //consumed, so the JIT can't drop the parsing
+        for (int round = 0; round < PARSE_WARMUP_ROUNDS; round++) {
+            itemsLoaded += loader.load(file).rowCount();
+        }
+        long allocatedBefore = allocatedBytesAllThreads();
+        long start = System.nanoTime();
+        for (int round = 0; round < PARSE_TIMED_ROUNDS; round++) {
+            itemsLoaded += loader.load(file).rowCount();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = allocatedBytesAllThreads() - allocatedBefore;
+        System.out.printf("%-28s %,12.0f rows/s  %,8.1f MB/s  %,8.0f bytes/row allocated  (%d)%n", name,
+                (double) rowCount * PARSE_TIMED_ROUNDS / seconds, megabytes * PARSE_TIMED_ROUNDS / seconds,
+                (double) allocated / ((long) rowCount * PARSE_TIMED_ROUNDS), itemsLoaded);
+    }
+
+    /**
+     * Times repeated searches and prints their throughput.
+     * @param name the engine's name
+     * @param itemCount number of items on the benchmark menu
+     * @param queries the criteria searched for each round
+     * @param search runs one search and returns its number of matches
+     */
+    private static void reportThroughput(String name, int itemCount, List<CompiledQuery> queries,
+                                         ToIntFunction<CompiledQuery> search) {
+        long matchCount = 0; //consumed, so the JIT can't drop the searches
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (CompiledQuery query : queries) matchCount += search.applyAsInt(query);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < TIMED_ROUNDS; round++) {
+            for (CompiledQuery query : queries) matchCount += search.applyAsInt(query);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double itemsPerSecond = (double) itemCount * queries.size() * TIMED_ROUNDS / seconds;
+        System.out.printf("%-28s %,16.0f items/s  (%d matches)%n", name, itemsPerSecond, matchCount);
+    }
+
+    /**
+     * Builds a benchmark menu's items by repeating menu.txt's items.
+     * @param itemCount number of items
+     * @return List of itemCount MenuItems
+     */
+    private static List<MenuItem> buildItems(int itemCount) {
+        List<MenuItem> menuTxtItems = new ArrayList<>(MenuSearcher.loadMenu(MENU_TXT_PATH).getMenuItems());
+        menuTxtItems.sort(Comparator.comparing(MenuItem::getMenuItemIdentifier)); //same order every run
+        List<MenuItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) items.add(menuTxtItems.get(i % menuTxtItems.size()));
+        return items;
+    }
+
+    /**
+     * Search criteria for the benchmarks, from broad to narrow, like the GUI would send.
+     * @param dictionary the AttributeMasks.Dictionary of the Menu to be searched
+     * @return List of CompiledQuery
+     */
+    private static List<CompiledQuery> benchmarkQueries(AttributeMasks.Dictionary dictionary) {
+        List<Map<Filter, Object>> criteria = List.of(
+                Map.of(Filter.TYPE, Type.BURGER),
+                Map.of(Filter.TYPE, Type.BURGER, Filter.PROTEIN, Set.of(Protein.BEEF, Protein.CHICKEN),
+                        Filter.PICKLES, true),
+                Map.of(Filter.TYPE, Type.SALAD, Filter.CUCUMBER, true, Filter.LEAFY_GREENS, SpecialChoice.NONE),
+                Map.of(Filter.TYPE, Type.BURGER, Filter.SAUCES, Set.of(Sauce.values()[0]), Filter.TOMATO, false)
+        );
+        List<CompiledQuery> queries = new ArrayList<>();
+        for (Map<Filter, Object> filters : criteria) {
+            queries.add(CompiledQuery.compile(new DreamMenuItem(FilterValue.ofAll(filters), 10, 20), dictionary));
+        }
+        return queries;
+    }
+
+    /**
+     * Generates search criteria like those recorded from kiosks: a type, often a protein or two, sometimes a
+     * salad or burger extra, and a price band. Seeded, so every run replays the same searches.
+     * @param queryCount number of searches
+     * @param dictionary the AttributeMasks.Dictionary of the Menu to be searched
+     * @return List of CompiledQuery
+     */
+    private static List<CompiledQuery> recordedQueries(int queryCount, AttributeMasks.Dictionary dictionary) {
+        Random random = new Random(120);
+        List<CompiledQuery> queries = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            Map<Filter, Object> filters = new EnumMap<>(Filter.class);
+            filters.put(Filter.TYPE, Type.values()[random.nextInt(Type.values().length)]);
+            if (random.nextBoolean()) {
+                //One or two of the real proteins (not NA).
+                filters.put(Filter.PROTEIN, Set.copyOf(List.of(Protein.values()[random.nextInt(Protein.NA.ordinal())],
+                        Protein.values()[random.nextInt(Protein.NA.ordinal())])));
+            }
+            if (random.nextInt(3) == 0) {
+                Filter extra = List.of(Filter.PICKLES, Filter.CUCUMBER, Filter.TOMATO).get(random.nextInt(3));
+                filters.put(extra, random.nextBoolean());
+            }
+            if (random.nextInt(4) == 0) {
+                filters.put(Filter.SAUCES, Set.of(Sauce.values()[random.nextInt(Sauce.values().length)]));
+            }
+            int minPrice = 5 + random.nextInt(10);
+            queries.add(CompiledQuery.compile(
+                    new DreamMenuItem(FilterValue.ofAll(filters), minPrice, minPrice + 5 + random.nextInt(10)),
+                    dictionary));
+        }
+        return queries;
+    }
+
+    /**
+     * Estimates live heap usage by requesting garbage collection until it stops shrinking.
+     * @return bytes of heap in use
+     */
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long nowUsed = runtime.totalMemory() - runtime.freeMemory();
+            if (nowUsed >= used) break;
+            used = nowUsed;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,289 @@
+import java.util.*;
+
+/**
+ * Columnar (struct-of-arrays) store of a Menu's item attributes and prices, indexed by item id.
+ * <p>Instead of each item's attributes living in its own DreamMenuItem Map of boxed values and Sets, each
+ * Filter has one primitive column holding that attribute for every item, so a scan walks contiguous arrays:
+ * <li>Filters with a single value per item (e.g. TYPE, BUN, PROTEIN, PICKLES) are int columns of
+ * dictionary codes--the value's AttributeMasks bit index--or NO_VALUE if the item doesn't have it.
+ * <li>Filters holding a Collection on items (CHEESE, LEAFY_GREENS, SAUCES) are long columns of
+ * AttributeMasks masks.
+ * <li>Prices are a double column.
+ * <p>Items that couldn't be encoded are stored with no values; callers must check them by their DreamMenuItem.
+ * <p>Columns grow by doubling as items are appended; not thread-safe while items are being added.
+ */
+public final class MenuColumns {
+    /**
+     * Code in an int column for an item that doesn't have that Filter's attribute.
+     */
+    public static final int NO_VALUE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // codeColumns[filter ordinal][item id]; null for Filters held as masks.
+    private final int[][] codeColumns = new int[AttributeMasks.MASK_COUNT][];
+    // maskColumns[filter ordinal][item id]; null for Filters held as codes.
+    private final long[][] maskColumns = new long[AttributeMasks.MASK_COUNT][];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private int size;
+    // The loops predicateWord() runs; see ColumnKernel.
+    private volatile ColumnKernel kernel = ColumnKernel.fastest();
+
+    /**
+     * Creates an empty MenuColumns.
+     */
+    public MenuColumns() {
+        for (Filter filter : Filter.values()) {
+            if (filter.isCollectionOnMenuItems()) {
+                maskColumns[filter.ordinal()] = new long[INITIAL_CAPACITY];
+            } else {
+                codeColumns[filter.ordinal()] = new int[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * Appends an item's attributes and price as the next item id.
+     * @param attributeMasks the item's masks from AttributeMasks.encodeMenuItem(), or null if it couldn't be encoded.
+     * @param price the item's price
+     * @return the item's id
+     */
+    public int add(long[] attributeMasks, double price) {
+        if (size == prices.length) grow();
+        for (int f = 0; f < AttributeMasks.MASK_COUNT; f++) {
+            long mask = attributeMasks == null ? 0L : attributeMasks[f];
+            if (codeColumns[f] != null) {
+                //Single-valued, so at most one bit is set.
+                codeColumns[f][size] = mask == 0 ? NO_VALUE : Long.numberOfTrailingZeros(mask);
+            } else {
+                maskColumns[f][size] = mask;
+            }
+        }
+        prices[size] = price;
+        return size++;
+    }
+
+    /**
+     * Gets an item's attribute for one Filter as an AttributeMasks mask, whichever kind of column holds it.
+     * @param filterOrdinal the Filter's ordinal
+     * @param itemId the item's id
+     * @return the item's mask for the Filter; 0 if it doesn't have the attribute
+     */
+    public long maskAt(int filterOrdinal, int itemId) {
+        int[] codes = codeColumns[filterOrdinal];
+        if (codes == null) return maskColumns[filterOrdinal][itemId];
+        int code = codes[itemId];
+        return code == NO_VALUE ? 0L : 1L << code;
+    }
+
+    /**
+     * Gets an item's price.
+     * @param itemId the item's id
+     * @return double
+     */
+    public double priceAt(int itemId) {return prices[itemId];}
+
+    /**
+     * Evaluates a single predicate of a plan on an item, reading only the column it tests.
+     * @param plan the compiled search criteria; must be encoded
+     * @param index position of the predicate in the plan
+     * @param itemId the item's id
+     * @return true if the predicate passes
+     */
+    public boolean predicatePasses(CompiledQuery plan, int index, int itemId) {
+        Filter filter = plan.filterAt(index);
+        long itemMask = filter == null ? 0L : maskAt(filter.ordinal(), itemId);
+        return plan.predicatePasses(index, itemMask, prices[itemId]);
+    }
+
+    /**
+     * Finds the items passing every predicate of a plan by scanning the columns, 64 items per result word.
+     * <p>Column-at-a-time: each predicate runs over its one column in a tight ColumnKernel loop with no branches
+     * per item, setting one bit of a result word per item, and the words are ANDed into the result. Words
+     * already 0 are skipped, and the scan stops once every word is 0.
+     * <p>Items that couldn't be encoded are scanned as having no attributes; callers must check them themselves.
+     * @param plan the compiled search criteria; must be encoded
+     * @return a new BitSet result bitmap of the ids of passing items
+     */
+    public BitSet scan(CompiledQuery plan) {
+        int wordCount = (size + Long.SIZE - 1) / Long.SIZE;
+        long[] result = new long[wordCount];
+        Arrays.fill(result, -1L);
+        if (size % Long.SIZE != 0) result[wordCount - 1] = (1L << (size % Long.SIZE)) - 1; //no ids past size
+
+        for (int i = 0; i < plan.size(); i++) {
+            boolean anyLeft = false;
+            for (int w = 0; w < wordCount; w++) {
+                if (result[w] == 0) continue;
+                result[w] &= predicateWord(plan, i, w * Long.SIZE);
+                anyLeft |= result[w] != 0;
+            }
+            if (!anyLeft) break;
+        }
+        return BitSet.valueOf(result);
+    }
+
+    /**
+     * Finds the items passing every predicate of each of many plans, in a single pass over the columns.
+     * <p>Walks the items 64 at a time, running every plan on each block of 64 while its column values are
+     * still in cache, rather than streaming the whole store from memory once per plan. Predicates shared by
+     * several plans (e.g. the same TYPE or price range) are evaluated once per block and their words reused.
+     * <p>Items that couldn't be encoded are scanned as having no attributes; callers must check them themselves.
+     * @param plans the compiled search criteria; each must be encoded
+     * @return a new BitSet result bitmap per plan, in the same order
+     */
+    public BitSet[] scanBatch(List<CompiledQuery> plans) {
+        //Number every distinct predicate, remembering a plan and position holding it so it can be evaluated.
+        Map<SharedPredicate, Integer> predicateIds = new HashMap<>();
+        List<CompiledQuery> predicatePlans = new ArrayList<>();
+        List<Integer> predicateIndexes = new ArrayList<>();
+        int[][] planPredicateIds = new int[plans.size()][];
+        for (int q = 0; q < plans.size(); q++) {
+            CompiledQuery plan = plans.get(q);
+            planPredicateIds[q] = new int[plan.size()];
+            for (int i = 0; i < plan.size(); i++) {
+                planPredicateIds[q][i] = predicateIds.computeIfAbsent(SharedPredicate.of(plan, i), key -> {
+                    predicatePlans.add(plan);
+                    predicateIndexes.add(key.index());
+                    return predicatePlans.size() - 1;
+                });
+            }
+        }
+
+        int wordCount = (size + Long.SIZE - 1) / Long.SIZE;
+        long[][] results = new long[plans.size()][wordCount];
+        long[] predicateWords = new long[predicatePlans.size()];
+        int[] evaluatedForWord = new int[predicatePlans.size()]; //w + 1 once evaluated for word w
+        for (int w = 0; w < wordCount; w++) {
+            int from = w * Long.SIZE;
+            long allItems = size - from >= Long.SIZE ? -1L : (1L << (size - from)) - 1; //no ids past size
+            for (int q = 0; q < plans.size(); q++) {
+                long word = allItems;
+                for (int p : planPredicateIds[q]) {
+                    if (evaluatedForWord[p] != w + 1) {
+                        predicateWords[p] = predicateWord(predicatePlans.get(p), predicateIndexes.get(p), from);
+                        evaluatedForWord[p] = w + 1;
+                    }
+                    word &= predicateWords[p];
+                    if (word == 0) break;
+                }
+                results[q][w] = word;
+            }
+        }
+
+        BitSet[] matching = new BitSet[plans.size()];
+        for (int q = 0; q < plans.size(); q++) matching[q] = BitSet.valueOf(results[q]);
+        return matching;
+    }
+
+    /**
+     * A predicate as shared between plans: equal if it selects the same items, wherever it sits in its plan.
+     * @param index position of the predicate in the plan it was taken from; not part of equality
+     */
+    private record SharedPredicate(CompiledQuery.PredicateKind kind, Filter filter, long operand,
+                                   double minPrice, double maxPrice, int index) {
+        /**
+         * Takes a predicate from a plan.
+         * @param plan the compiled search criteria
+         * @param index position of the predicate in the plan
+         * @return a new SharedPredicate; prices are only kept for PRICE_RANGE
+         */
+        static SharedPredicate of(CompiledQuery plan, int index) {
+            boolean isPrice = plan.kindAt(index) == CompiledQuery.PredicateKind.PRICE_RANGE;
+            return new SharedPredicate(plan.kindAt(index), plan.filterAt(index), plan.operandAt(index),
+                    isPrice ? plan.getMinPrice() : 0, isPrice ? plan.getMaxPrice() : 0, index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SharedPredicate other && kind == other.kind && filter == other.filter
+                    && operand == other.operand && Double.compare(minPrice, other.minPrice) == 0
+                    && Double.compare(maxPrice, other.maxPrice) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, filter, operand, minPrice, maxPrice);
+        }
+    }
+
+    /**
+     * Evaluates one predicate on up to 64 consecutive items, with the kernel's loop for its kind of column:
+     * <li>int code columns test the code's bit in a mask of allowed codes (see allowedCodes()).
+     * <li>long mask columns test for any shared bit with the operand, inverted for MUST_BE_ABSENT.
+     * @param plan the compiled search criteria; must be encoded
+     * @param index position of the predicate in the plan
+     * @param from id of the first item; a multiple of 64
+     * @return word with bit j set if item from + j passes; bits past the last item are meaningless.
+     */
+    private long predicateWord(CompiledQuery plan, int index, int from) {
+        int to = Math.min(from + Long.SIZE, size);
+        ColumnKernel kernel = this.kernel;
+
+        CompiledQuery.PredicateKind kind = plan.kindAt(index);
+        if (kind == CompiledQuery.PredicateKind.PRICE_RANGE) {
+            return kernel.priceWord(prices, plan.getMinPrice(), plan.getMaxPrice(), from, to);
+        }
+
+        int f = plan.filterAt(index).ordinal();
+        long operand = plan.operandAt(index);
+        if (codeColumns[f] != null) return kernel.codeWord(codeColumns[f], allowedCodes(kind, operand), from, to);
+
+        long word = kernel.maskWord(maskColumns[f], operand, from, to);
+        return kind == CompiledQuery.PredicateKind.MUST_BE_ABSENT ? ~word : word;
+    }
+
+    /**
+     * Builds the mask of int column codes that pass a predicate: bit c is set if an item with code c passes.
+     * <p>Bit 63 stands for NO_VALUE; no value has that bit index since AttributeMasks caps them at 63 per Filter.
+     * @param kind the predicate's kind; not PRICE_RANGE
+     * @param operand the predicate's operand mask
+     * @return mask of passing codes
+     */
+    private static long allowedCodes(CompiledQuery.PredicateKind kind, long operand) {
+        return switch (kind) {
+            //An item's single value either is (one of) the chosen values or not; NO_VALUE never matches.
+            case VALUE_EQUALS, SET_CONTAINS, SET_INTERSECTS -> operand & ~(1L << 63);
+            //Anything not forbidden passes, including having no value.
+            case MUST_BE_ABSENT -> ~operand | (1L << 63);
+            case PRICE_RANGE -> throw new IllegalArgumentException("Prices are not held in code columns");
+        };
+    }
+
+    /**
+     * Sets the loops scans run, e.g. to compare them; ColumnKernel.fastest() until set.
+     * @param kernel ColumnKernel.SCALAR, or ColumnKernel.VECTOR if not null
+     */
+    public void useKernel(ColumnKernel kernel) {this.kernel = Objects.requireNonNull(kernel);}
+
+    /**
+     * Gets the number of items held.
+     * @return int
+     */
+    public int size() {return size;}
+
+    /**
+     * Gets the bytes each item takes across all columns: 4 per code column, 8 per mask column and 8 for the price.
+     * <p>Excludes spare capacity and the arrays' fixed headers, which don't grow with the menu.
+     * @return bytes per item
+     */
+    public int bytesPerItem() {
+        int bytes = Double.BYTES;
+        for (int f = 0; f < AttributeMasks.MASK_COUNT; f++) {
+            bytes += codeColumns[f] != null ? Integer.BYTES : Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = prices.length * 2;
+        for (int f = 0; f < AttributeMasks.MASK_COUNT; f++) {
+            if (codeColumns[f] != null) codeColumns[f] = Arrays.copyOf(codeColumns[f], capacity);
+            else maskColumns[f] = Arrays.copyOf(maskColumns[f], capacity);
+        }
+        prices = Arrays.copyOf(prices, capacity);
+    }
+}
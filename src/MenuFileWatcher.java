@@ -0,0 +1,114 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the menu data file, and calls back whenever it has changed so the menu can be reloaded.
+ * <p>Registers the file's directory with a WatchService (files can't be watched alone) and waits for its events
+ * on a daemon thread, so it never holds up the EDT or stops the program exiting. Events for other files in the
+ * directory are ignored.
+ * <p>Editors and copy tools often save a file in several writes, or write a copy and move it over the original,
+ * so events are debounced: the callback runs once the file has had no events for QUIET_MILLIS.
+ * <p>The callback runs on the watcher's thread, one call at a time. Anything it throws is reported, and watching
+ * carries on.
+ */
+public final class MenuFileWatcher implements Closeable {
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    // How long the file must go without events before it's taken to be completely saved.
+    private static final long QUIET_MILLIS = 500;
+
+    /**
+     * Creates a MenuFileWatcher; use start().
+     * @param file the absolute path of the file to watch
+     * @param onChange called after the file changes
+     * @param watchService the WatchService its directory is registered with
+     */
+    private MenuFileWatcher(Path file, Runnable onChange, WatchService watchService) {
+        this.file = file;
+        this.onChange = onChange;
+        this.watchService = watchService;
+        this.thread = new Thread(this::watch, "menu-file-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching a file.
+     * @param file path of the file to watch; it needn't exist yet, but its directory must
+     * @param onChange called on the watcher's thread each time the file has been created or changed
+     * @return the running MenuFileWatcher, which can be closed to stop watching
+     * @throws IOException if the file's directory can't be watched
+     */
+    public static MenuFileWatcher start(Path file, Runnable onChange) throws IOException {
+        Path absoluteFile = file.toAbsolutePath().normalize();
+        WatchService watchService = absoluteFile.getFileSystem().newWatchService();
+        try {
+            absoluteFile.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException io) {
+            watchService.close();
+            throw io;
+        }
+        MenuFileWatcher watcher = new MenuFileWatcher(absoluteFile, onChange, watchService);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Stops watching. The callback won't be called again, unless it's already running.
+     * @throws IOException if the WatchService can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * The watcher thread's loop: waits for an event on the file, then for it to go quiet, then calls back.
+     * <p>Ends once the WatchService is closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                if (!concernsFile(watchService.take())) continue;
+                //Keep draining events until the file has been quiet for QUIET_MILLIS. Events for other files in the
+                //directory are drained without restarting the quiet period, so they can't hold off the reload.
+                long quietNanos = TimeUnit.MILLISECONDS.toNanos(QUIET_MILLIS);
+                long quietUntil = System.nanoTime() + quietNanos;
+                for (long wait = quietNanos; wait > 0; wait = quietUntil - System.nanoTime()) {
+                    WatchKey key = watchService.poll(wait, TimeUnit.NANOSECONDS);
+                    if (key == null) break;
+                    if (concernsFile(key)) quietUntil = System.nanoTime() + quietNanos;
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error reloading after " + file + " changed: " + e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            //Closed: stop watching.
+        }
+    }
+
+    /**
+     * Takes a WatchKey's events and re-arms it to report more.
+     * @param key the signalled WatchKey
+     * @return true if any event may concern the watched file (including OVERFLOW, where events were lost)
+     */
+    private boolean concernsFile(WatchKey key) {
+        boolean concernsFile = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                concernsFile = true;
+            }
+        }
+        key.reset();
+        return concernsFile;
+    }
+}
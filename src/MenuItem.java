@@ -9,7 +9,9 @@ public final class MenuItem {
     //fields
     private final String menuItemIdentifier;
     private final String menuItemName;
-    private final String description;
+    //The description is the largest field, but only read for display, so it's held off the heap (see TextStore).
+    private final TextStore textStore;
+    private final long descriptionHandle;
     private final double price;
     private final DreamMenuItem dreamMenuItem;
 
@@ -17,15 +19,61 @@ public final class MenuItem {
     private static final DecimalFormat DF = new DecimalFormat("0.00");
 
     //constructor/s
+    /**
+     * Creates a MenuItem with a description of its own, held in a TextStore of its own; for items made one at a
+     * time rather than loaded with a Menu.
+     * @param menuItemIdentifier the item's id
+     * @param menuItemName the item's name
+     * @param price the item's price
+     * @param description the item's description
+     * @param dreamMenuItem the item's attributes
+     */
     public MenuItem(String menuItemIdentifier,
                     String menuItemName,
                     double price,
                     String description,
                     DreamMenuItem dreamMenuItem) {
+        this(menuItemIdentifier, menuItemName, price, new TextStore(), description, dreamMenuItem);
+    }
+
+    /**
+     * Adds the description to a TextStore, so the public constructors can share the one that takes a handle.
+     * @param menuItemIdentifier the item's id
+     * @param menuItemName the item's name
+     * @param price the item's price
+     * @param textStore the TextStore to hold the description
+     * @param description the item's description
+     * @param dreamMenuItem the item's attributes
+     */
+    private MenuItem(String menuItemIdentifier,
+                     String menuItemName,
+                     double price,
+                     TextStore textStore,
+                     String description,
+                     DreamMenuItem dreamMenuItem) {
+        this(menuItemIdentifier, menuItemName, price, textStore, textStore.add(description), dreamMenuItem);
+    }
+
+    /**
+     * Creates a MenuItem whose description is held in a TextStore, usually shared by every item on its Menu.
+     * @param menuItemIdentifier the item's id
+     * @param menuItemName the item's name
+     * @param price the item's price
+     * @param textStore the TextStore holding the description
+     * @param descriptionHandle the description's handle in textStore
+     * @param dreamMenuItem the item's attributes
+     */
+    public MenuItem(String menuItemIdentifier,
+                    String menuItemName,
+                    double price,
+                    TextStore textStore,
+                    long descriptionHandle,
+                    DreamMenuItem dreamMenuItem) {
         this.menuItemIdentifier = menuItemIdentifier;
         this.menuItemName = menuItemName;
         this.price = price;
-        this.description = description;
+        this.textStore = textStore;
+        this.descriptionHandle = descriptionHandle;
         this.dreamMenuItem=dreamMenuItem;
     }
 
@@ -34,7 +82,11 @@ public final class MenuItem {
 
     public String getMenuItemName() {return menuItemName;}
 
-    public String getDescription() {return description;}
+    /**
+     * Gets the item's description, decoded afresh from its TextStore on each call; intended for display.
+     * @return the description String
+     */
+    public String getDescription() {return textStore.get(descriptionHandle);}
 
     public double getPrice() {return price;}
 
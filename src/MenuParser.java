@@ -0,0 +1,795 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parses menu data, one row per line, into a Menu.
+ * <p>Streams the rows from a BufferedReader, or from the bytes of a memory-mapped file (see parseMapped()), so
+ * memory use doesn't grow with the size of the file beyond the Menu itself. Each row is tokenized by hand: one
+ * pass finds the boundaries of its comma-separated fields and bracketed lists, held in arrays reused for every
+ * row, and Strings are only created for the values kept.
+ * <p>A row with bad data is skipped, and every problem with it recorded with its line number, rather than ending
+ * the program; the rest of the file is still loaded. See Result.getReport().
+ * <p>Row format (after a header line):
+ * <br>id,type,name,price,bun,meat,pickles,cucumber,tomato,dressing,[cheeses],[leafy greens],[sauces],[description]
+ * <p>Not thread-safe; each parse, or each chunk of a parallel parse, uses its own MenuParser.
+ */
+public final class MenuParser {
+    // Number of comma-separated fields before the bracketed lists.
+    private static final int FIELD_COUNT = 10;
+    private static final int ID = 0, TYPE = 1, NAME = 2, PRICE = 3, BUN = 4, PROTEIN = 5,
+            PICKLES = 6, CUCUMBER = 7, TOMATO = 8, DRESSING = 9;
+    // Number of bracketed lists: cheeses, leafy greens, sauces and the description.
+    private static final int LIST_COUNT = 4;
+    private static final int CHEESES = 0, LEAFY_GREENS = 1, SAUCES = 2, DESCRIPTION = 3;
+
+    // Largest part of a file mapped at once by parseMapped(); a mapping can't exceed 2 GB.
+    private static final int MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    // Starting size of a MappedLine's working space for decoding; enough for most values.
+    private static final int INITIAL_SCRATCH_BYTES = 256;
+
+    // parseMapped() splits each segment into up to this many chunks per thread, of at least MIN_CHUNK_BYTES each.
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    // values() copies its array on every call, so each Enum's constants are looked up once.
+    private static final Type[] TYPE_CONSTANTS = Type.values();
+    private static final Protein[] PROTEIN_CONSTANTS = Protein.values();
+    private static final Dressing[] DRESSING_CONSTANTS = Dressing.values();
+    private static final Sauce[] SAUCE_CONSTANTS = Sauce.values();
+
+    // Start (inclusive) and end (exclusive) of each field and list in the current row; reused for every row.
+    private final int[] fieldStarts = new int[FIELD_COUNT];
+    private final int[] fieldEnds = new int[FIELD_COUNT];
+    private final int[] listStarts = new int[LIST_COUNT];
+    private final int[] listEnds = new int[LIST_COUNT];
+    // True if this parser's first line is the file's header.
+    private final boolean startsWithHeader;
+    // Holds the items' descriptions off the heap; shared by every parser of a file, and then by its items.
+    private final TextStore textStore;
+    // Shares one copy of each free-text value; shared by every parser of a file, and then by its Menu.
+    private final AttributeMasks.Dictionary dictionary;
+    // Problems found so far, in line order.
+    private final List<ParseError> errors = new ArrayList<>();
+    // Items of the rows parsed so far, in line order.
+    private final List<MenuItem> items = new ArrayList<>();
+    // Number of lines parsed so far, including any header; the current line's number, counted from this
+    // parser's first line.
+    private int lineNumber;
+    // Number of rows parsed so far, excluding the header and blank lines.
+    private int rowCount;
+
+    /**
+     * A problem with one row of menu data.
+     * @param lineNumber the row's line number in the file, counting from 1 (the header)
+     * @param message what was wrong with it
+     */
+    public record ParseError(int lineNumber, String message) {
+        @Override
+        public String toString() {return "Line " + lineNumber + ": " + message;}
+    }
+
+    /**
+     * The outcome of parsing menu data.
+     * @param menu a new Menu of every row that parsed
+     * @param rowCount number of rows read, excluding the header and blank lines
+     * @param errors immutable List of every problem found, in line order; empty if every row parsed
+     */
+    public record Result(Menu menu, int rowCount, List<ParseError> errors) {
+
+        /**
+         * Identifies whether any rows were skipped.
+         * @return true if there were errors
+         */
+        public boolean hasErrors() {return !errors.isEmpty();}
+
+        /**
+         * Describes the problems found, one per line, for display or logging.
+         * @param maxErrorsShown max number of errors to list; the rest are counted
+         * @return the report; empty if every row parsed
+         */
+        public String getReport(int maxErrorsShown) {
+            if (errors.isEmpty()) return "";
+            StringBuilder report = new StringBuilder()
+                    .append(errors.size()).append(" error(s) in menu data; ")
+                    .append(rowCount - menu.getMenuItems().size()).append(" of ").append(rowCount)
+                    .append(" rows skipped.");
+            for (int i = 0; i < errors.size() && i < maxErrorsShown; i++) {
+                report.append(System.lineSeparator()).append(errors.get(i));
+            }
+            if (errors.size() > maxErrorsShown) {
+                report.append(System.lineSeparator()).append("...and ").append(errors.size() - maxErrorsShown)
+                        .append(" more.");
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * Creates a parser for one run of lines; use parse() or parseMapped().
+     * @param startsWithHeader true if the first line is the header, to be skipped
+     * @param textStore the TextStore to add the items' descriptions to
+     * @param dictionary the Dictionary to intern the items' free-text values with
+     */
+    private MenuParser(boolean startsWithHeader, TextStore textStore, AttributeMasks.Dictionary dictionary) {
+        this.startsWithHeader = startsWithHeader;
+        this.textStore = textStore;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Parses a UTF-8 menu data file, reading it through a BufferedReader.
+     * @param path path of the file
+     * @return the Result: the Menu of every row that parsed, and the problems with the rest
+     * @throws IOException if the file can't be read
+     */
+    public static Result parse(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses menu data line by line, skipping the header line and blank lines.
+     * @param reader the menu data, starting at the header; read to the end but not closed
+     * @return the Result: the Menu of every row that parsed, and the problems with the rest
+     * @throws IOException if the data can't be read
+     */
+    public static Result parse(BufferedReader reader) throws IOException {
+        AttributeMasks.Dictionary dictionary = new AttributeMasks.Dictionary();
+        MenuParser parser = new MenuParser(true, new TextStore(), dictionary);
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) parser.acceptLine(line);
+        return merge(List.of(parser), dictionary);
+    }
+
+    /**
+     * Parses a UTF-8 menu data file by memory-mapping it and reading its bytes in place, in parallel.
+     * <p>The file isn't read onto the heap or decoded to UTF-16 first: rows are tokenized straight from the
+     * mapped bytes (see MappedLine), and only the values kept are decoded into Strings. So the heap used beyond
+     * the resulting Menu doesn't grow with the size of the file.
+     * <p>The file is mapped MAX_SEGMENT_BYTES at a time, each segment ending at a line break, so files larger
+     * than one mapping can hold (2 GB) can be parsed. Each segment is split into chunks of whole lines, parsed
+     * on the common fork/join pool (see parseChunks()); the items are then added to the Menu in file order.
+     * @param path path of the file
+     * @return the Result: the Menu of every row that parsed, and the problems with the rest
+     * @throws IOException if the file can't be read, or has a line longer than MAX_SEGMENT_BYTES
+     */
+    public static Result parseMapped(Path path) throws IOException {
+        List<MenuParser> parsers = new ArrayList<>();
+        TextStore textStore = new TextStore();
+        AttributeMasks.Dictionary dictionary = new AttributeMasks.Dictionary();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long segmentStart = 0;
+            while (segmentStart < fileSize) {
+                long segmentSize = Math.min(MAX_SEGMENT_BYTES, fileSize - segmentStart);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentSize);
+                //Only the last segment may end mid-line: the end of the file ends its last line.
+                int segmentEnd = segmentStart + segmentSize == fileSize
+                        ? (int) segmentSize
+                        : lastLineStart(segment);
+                if (segmentEnd == 0) {
+                    int linesBefore = 0;
+                    for (MenuParser parser : parsers) linesBefore += parser.lineNumber;
+                    throw new IOException("Line " + (linesBefore + 1) + " is longer than "
+                            + MAX_SEGMENT_BYTES + " bytes");
+                }
+                parsers.addAll(parseChunks(segment, segmentEnd, segmentStart == 0, textStore, dictionary));
+                segmentStart += segmentEnd;
+            }
+        }
+        return merge(parsers, dictionary);
+    }
+
+    /**
+     * Parses a buffer of whole lines of UTF-8 bytes as chunks of roughly equal size on the common fork/join pool,
+     * each by its own MenuParser.
+     * <p>Rows are independent, so chunks can be parsed in any order; each chunk is cut at a line break, and its
+     * parser counts its lines from 1, so merge() can give every error its line number in the file.
+     * <p>Makes up to CHUNKS_PER_THREAD chunks per thread of the pool, so a slow chunk doesn't hold up the rest,
+     * but no chunk is smaller than MIN_CHUNK_BYTES, so small files are parsed in one.
+     * @param bytes the buffer, read by absolute index only, so it can be shared between threads
+     * @param end index after the last byte to parse
+     * @param startsWithHeader true if the first line is the header, to be skipped
+     * @param textStore the TextStore to add the items' descriptions to
+     * @param dictionary the Dictionary to intern the items' free-text values with
+     * @return a parser for each chunk, in buffer order
+     */
+    private static List<MenuParser> parseChunks(ByteBuffer bytes, int end, boolean startsWithHeader,
+                                                TextStore textStore, AttributeMasks.Dictionary dictionary) {
+        int maxChunks = ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+        int chunkCount = Math.max(1, Math.min(maxChunks, end / MIN_CHUNK_BYTES));
+        //Cut at the first line start after each even share of the buffer.
+        List<Integer> chunkStarts = new ArrayList<>();
+        chunkStarts.add(0);
+        for (int i = 1; i < chunkCount; i++) {
+            int previous = chunkStarts.get(chunkStarts.size() - 1);
+            int chunkStart = lineStartAfter(bytes, (int) ((long) end * i / chunkCount), previous);
+            if (chunkStart > previous && chunkStart < end) chunkStarts.add(chunkStart);
+        }
+        chunkStarts.add(end);
+
+        //Ordered stream, so the parsers come back in chunk order however the work is split.
+        return IntStream.range(0, chunkStarts.size() - 1).parallel()
+                .mapToObj(chunk -> {
+                    MenuParser parser = new MenuParser(startsWithHeader && chunk == 0, textStore, dictionary);
+                    parser.acceptLines(bytes, chunkStarts.get(chunk), chunkStarts.get(chunk + 1));
+                    return parser;
+                })
+                .toList();
+    }
+
+    /**
+     * Finds where the line after a point in a buffer begins: after the next line break at or after it.
+     * @param bytes the buffer
+     * @param from index to search from
+     * @param ifNone value to return if there is no line break at or after from
+     * @return index after the line break, or ifNone
+     */
+    private static int lineStartAfter(ByteBuffer bytes, int from, int ifNone) {
+        int limit = bytes.limit();
+        for (int i = from; i < limit; i++) {
+            if (bytes.get(i) == '\n') return i + 1;
+        }
+        return ifNone;
+    }
+
+    /**
+     * Finds where the last line in a buffer begins: after its last line break.
+     * @param bytes the buffer
+     * @return index after the last line break, or 0 if there is none
+     */
+    private static int lastLineStart(ByteBuffer bytes) {
+        for (int i = bytes.limit() - 1; i >= 0; i--) {
+            if (bytes.get(i) == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Parses the lines in part of a buffer of UTF-8 bytes, each through one reused MappedLine.
+     * @param bytes the buffer, read by absolute index
+     * @param start index of the first line's first byte
+     * @param end index after the last line; the last line's break, if it has one, is included
+     */
+    private void acceptLines(ByteBuffer bytes, int start, int end) {
+        MappedLine line = new MappedLine(bytes);
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) != '\n') continue;
+            //A '\r' before the '\n' is part of the line break, as for BufferedReader.readLine().
+            int lineEnd = i > lineStart && bytes.get(i - 1) == '\r' ? i - 1 : i;
+            acceptLine(line.over(lineStart, lineEnd));
+            lineStart = i + 1;
+        }
+        if (lineStart < end) {
+            int lineEnd = bytes.get(end - 1) == '\r' ? end - 1 : end;
+            acceptLine(line.over(lineStart, lineEnd));
+        }
+    }
+
+    /**
+     * Parses the next line of menu data: skips the header line and blank lines, and keeps the item of each row
+     * that parses.
+     * @param line the line, without its line terminator
+     */
+    private void acceptLine(CharSequence line) {
+        lineNumber++;
+        if ((startsWithHeader && lineNumber == 1) || isBlank(line, 0, line.length())) return;
+        rowCount++;
+        MenuItem menuItem = parseRow(line, lineNumber);
+        if (menuItem != null) items.add(menuItem);
+    }
+
+    /**
+     * Combines the work of parsers of consecutive runs of lines into one Result.
+     * <p>Adds their items to a new Menu in order, and renumbers their errors from each parser's own line numbers
+     * to line numbers in the whole file.
+     * @param parsers the parsers, in line order
+     * @param dictionary the Dictionary the parsers interned free-text values with, for the Menu to code them with
+     * @return the Result
+     */
+    private static Result merge(List<MenuParser> parsers, AttributeMasks.Dictionary dictionary) {
+        Menu menu = new Menu(dictionary);
+        List<ParseError> errors = new ArrayList<>();
+        int rowCount = 0;
+        int linesBefore = 0;
+        for (MenuParser parser : parsers) {
+            for (MenuItem menuItem : parser.items) menu.addItem(menuItem);
+            for (ParseError error : parser.errors) {
+                errors.add(new ParseError(linesBefore + error.lineNumber(), error.message()));
+            }
+            rowCount += parser.rowCount;
+            linesBefore += parser.lineNumber;
+        }
+        return new Result(menu, rowCount, List.copyOf(errors));
+    }
+
+    /**
+     * Parses one row of menu data.
+     * @param line the row, without its line terminator
+     * @param lineNumber the row's line number, for errors
+     * @return the new MenuItem, or null if the row had errors, which are recorded
+     */
+    MenuItem parseRow(CharSequence line, int lineNumber) {
+        if (!tokenize(line, lineNumber)) return null;
+        int errorsBefore = errors.size();
+
+        Type type = constantNamed(TYPE_CONSTANTS, line, TYPE, lineNumber, "type");
+        double price = parsePrice(line, lineNumber);
+        Protein protein = constantNamed(PROTEIN_CONSTANTS, line, PROTEIN, lineNumber, "meat");
+        Dressing dressing = constantNamed(DRESSING_CONSTANTS, line, DRESSING, lineNumber, "dressing");
+        Set<Sauce> sauces = parseSauces(line, lineNumber);
+        if (errors.size() > errorsBefore) return null;
+
+        String menuItemIdentifier = line.subSequence(fieldStarts[ID], fieldEnds[ID]).toString();
+        String menuItemName = capitaliseFirstLettersOnly(trimmed(line, fieldStarts[NAME], fieldEnds[NAME]));
+        long description = storeWithoutClosingBrackets(line, listStarts[DESCRIPTION], listEnds[DESCRIPTION]);
+
+        Map<Filter,FilterValue> filterMap = new EnumMap<>(Filter.class);
+        filterMap.put(Filter.TYPE, new FilterValue.EnumValue(type));
+        filterMap.put(Filter.PROTEIN, new FilterValue.EnumValue(protein));
+        filterMap.put(Filter.PICKLES, FilterValue.BooleanValue.of(isYes(line, PICKLES)));
+        filterMap.put(Filter.TOMATO, FilterValue.BooleanValue.of(isYes(line, TOMATO)));
+        //Only add the cheeses set if it's not empty--otherwise it's meaningless
+        //Free-text values are interned so every item shares one copy of each (see AttributeMasks.Dictionary).
+        Set<String> cheeses = parseTextList(line, CHEESES);
+        if (!cheeses.isEmpty()) {
+            filterMap.put(Filter.CHEESE, FilterValue.TextSetValue.of(dictionary, Filter.CHEESE, cheeses));
+        }
+
+        if(type.equals(Type.BURGER)){
+            String bun = capitaliseFirstLettersOnly(trimmed(line, fieldStarts[BUN], fieldEnds[BUN]).toLowerCase());
+            filterMap.put(Filter.BUN, FilterValue.TextValue.of(dictionary, Filter.BUN, bun));
+            //only add the sauces set if it's not empty--otherwise it's meaningless;
+            //currently all burgers have sauce, but a burger without sauce is conceivable
+            if(!sauces.isEmpty()) filterMap.put(Filter.SAUCES, FilterValue.EnumSetValue.of(sauces));
+        }
+
+        if(type.equals(Type.SALAD)){
+            filterMap.put(Filter.DRESSING, new FilterValue.EnumValue(dressing));
+            filterMap.put(Filter.LEAFY_GREENS,
+                    FilterValue.TextSetValue.of(dictionary, Filter.LEAFY_GREENS, parseTextList(line, LEAFY_GREENS)));
+            filterMap.put(Filter.CUCUMBER, FilterValue.BooleanValue.of(isYes(line, CUCUMBER)));
+        }
+
+        return new MenuItem(menuItemIdentifier, menuItemName, price, textStore, description,
+                new DreamMenuItem(filterMap));
+    }
+
+    /**
+     * Finds the boundaries of a row's fields and lists in one pass, into fieldStarts/fieldEnds and
+     * listStarts/listEnds.
+     * <p>The fields are separated by commas up to the first '['; a trailing comma before it is allowed. Each list
+     * runs from a '[' to the next, so the description, as the last, runs to the end of the line.
+     * @param line the row
+     * @param lineNumber the row's line number, for errors
+     * @return true if the row has the expected number of fields and lists; otherwise the error is recorded
+     */
+    private boolean tokenize(CharSequence line, int lineNumber) {
+        int length = line.length();
+        int fields = 0;
+        int lists = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (lists == 0 && c == ',') {
+                if (fields < FIELD_COUNT) {
+                    fieldStarts[fields] = start;
+                    fieldEnds[fields] = i;
+                }
+                fields++;
+                start = i + 1;
+            } else if (c == '[' && lists < LIST_COUNT) {
+                if (lists == 0) {
+                    //Text after the last comma is one more field, which there shouldn't be.
+                    if (!isBlank(line, start, i)) fields++;
+                } else {
+                    listEnds[lists - 1] = i;
+                }
+                listStarts[lists++] = i + 1;
+            }
+        }
+        if (lists == 0 && !isBlank(line, start, length)) fields++;
+        if (lists > 0) listEnds[lists - 1] = length;
+
+        if (fields != FIELD_COUNT) {
+            errors.add(new ParseError(lineNumber,
+                    "Expected " + FIELD_COUNT + " comma-separated fields before the first '[' but found " + fields));
+            return false;
+        }
+        if (lists != LIST_COUNT) {
+            errors.add(new ParseError(lineNumber,
+                    "Expected " + LIST_COUNT + " bracketed lists (cheeses, leafy greens, sauces, description) but found "
+                            + lists));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the Enum constant named by a field, ignoring case and surrounding whitespace, with spaces standing
+     * for underscores (e.g. 'green goddess' for GREEN_GODDESS).
+     * @param constants the Enum's constants
+     * @param line the row
+     * @param field the field's position
+     * @param lineNumber the row's line number, for errors
+     * @param fieldName the field's name, for errors
+     * @return the constant, or null if there is none of that name; the error is then recorded
+     */
+    private <E extends Enum<E>> E constantNamed(E[] constants, CharSequence line, int field, int lineNumber,
+                                                String fieldName) {
+        E constant = constantNamed(constants, line, fieldStarts[field], fieldEnds[field]);
+        if (constant == null) {
+            errors.add(new ParseError(lineNumber, "Unknown " + fieldName + " '"
+                    + trimmed(line, fieldStarts[field], fieldEnds[field]) + "'"));
+        }
+        return constant;
+    }
+
+    /**
+     * Finds the Enum constant named by part of a row; see constantNamed() above.
+     * @param constants the Enum's constants
+     * @param line the row
+     * @param start start of the name, inclusive
+     * @param end end of the name, exclusive
+     * @return the constant, or null if there is none of that name
+     */
+    private static <E extends Enum<E>> E constantNamed(E[] constants, CharSequence line, int start, int end) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) end--;
+        for (E constant : constants) {
+            String name = constant.name();
+            if (name.length() != end - start) continue;
+            int i = 0;
+            while (i < name.length() && sameNameChar(name.charAt(i), line.charAt(start + i))) i++;
+            if (i == name.length()) return constant;
+        }
+        return null;
+    }
+
+    /**
+     * Compares a character of an Enum constant's name to one of a row.
+     * @param nameChar the name's character
+     * @param c the row's character
+     * @return true if they're the same, ignoring case, or nameChar is '_' and c is a space
+     */
+    private static boolean sameNameChar(char nameChar, char c) {
+        return nameChar == toUpperAscii(c) || (nameChar == '_' && c == ' ');
+    }
+
+    /**
+     * Upper-cases an ASCII letter; the names and words matched here are all ASCII.
+     * @param c the character
+     * @return c in upper case if it's an ASCII lower-case letter; otherwise c
+     */
+    private static char toUpperAscii(char c) {return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;}
+
+    /**
+     * Parses the price field.
+     * @param line the row
+     * @param lineNumber the row's line number, for errors
+     * @return the price, or 0 if it isn't a number; the error is then recorded
+     */
+    private double parsePrice(CharSequence line, int lineNumber) {
+        String price = trimmed(line, fieldStarts[PRICE], fieldEnds[PRICE]);
+        try {
+            return Double.parseDouble(price);
+        } catch (NumberFormatException n) {
+            errors.add(new ParseError(lineNumber, "Price '" + price + "' is not a number"));
+            return 0;
+        }
+    }
+
+    /**
+     * Identifies whether a yes/no field is 'yes', ignoring case and surrounding whitespace.
+     * @param line the row
+     * @param field the field's position
+     * @return true for 'yes'; false for anything else
+     */
+    private boolean isYes(CharSequence line, int field) {
+        return isWord(line, fieldStarts[field], fieldEnds[field], "YES");
+    }
+
+    /**
+     * Parses the sauces list. Blank and 'NA' entries are skipped.
+     * @param line the row
+     * @param lineNumber the row's line number, for errors
+     * @return a new Set of the sauces; any that aren't known are recorded as errors and left out
+     */
+    private Set<Sauce> parseSauces(CharSequence line, int lineNumber) {
+        Set<Sauce> sauces = EnumSet.noneOf(Sauce.class);
+        int end = listEnds[SAUCES];
+        for (int start = listStarts[SAUCES]; start <= end; ) {
+            int entryEnd = entryEnd(line, start, end);
+            if (!isBlankOrNa(line, start, entryEnd)) {
+                int nameEnd = entryEnd;
+                while (nameEnd > start && line.charAt(nameEnd - 1) == ']') nameEnd--;
+                Sauce sauce = constantNamed(SAUCE_CONSTANTS, line, start, nameEnd);
+                if (sauce == null) {
+                    errors.add(new ParseError(lineNumber, "Unknown sauce '" + entry(line, start, entryEnd) + "'"));
+                } else {
+                    sauces.add(sauce);
+                }
+            }
+            start = entryEnd + 1;
+        }
+        return sauces;
+    }
+
+    /**
+     * Parses a list of free-text values, e.g. cheeses. Blank and 'NA' entries are skipped.
+     * @param line the row
+     * @param list the list's position
+     * @return a new Set of the values, with their first letters capitalised
+     */
+    private Set<String> parseTextList(CharSequence line, int list) {
+        Set<String> values = new HashSet<>();
+        int end = listEnds[list];
+        for (int start = listStarts[list]; start <= end; ) {
+            int entryEnd = entryEnd(line, start, end);
+            if (!isBlankOrNa(line, start, entryEnd)) {
+                values.add(capitaliseFirstLettersOnly(entry(line, start, entryEnd)));
+            }
+            start = entryEnd + 1;
+        }
+        return values;
+    }
+
+    /**
+     * Finds the end of a list entry: the next comma, or the end of the list.
+     * @param line the row
+     * @param start start of the entry
+     * @param listEnd end of the list, exclusive
+     * @return the end of the entry, exclusive
+     */
+    private static int entryEnd(CharSequence line, int start, int listEnd) {
+        int i = start;
+        while (i < listEnd && line.charAt(i) != ',') i++;
+        return i;
+    }
+
+    /**
+     * Gets a list entry without surrounding whitespace or closing brackets.
+     * @param line the row
+     * @param start start of the entry, inclusive
+     * @param end end of the entry, exclusive
+     * @return the entry
+     */
+    private static String entry(CharSequence line, int start, int end) {
+        while (start < end && isWhitespaceOrBracket(line.charAt(start))) start++;
+        while (end > start && isWhitespaceOrBracket(line.charAt(end - 1))) end--;
+        return line.subSequence(start, end).toString();
+    }
+
+    /**
+     * Identifies whether a list entry is empty or 'NA', ignoring case, whitespace and closing brackets.
+     * @param line the row
+     * @param start start of the entry, inclusive
+     * @param end end of the entry, exclusive
+     * @return true if the entry should be skipped
+     */
+    private static boolean isBlankOrNa(CharSequence line, int start, int end) {
+        while (start < end && isWhitespaceOrBracket(line.charAt(start))) start++;
+        while (end > start && isWhitespaceOrBracket(line.charAt(end - 1))) end--;
+        return start == end || isWord(line, start, end, "NA");
+    }
+
+    /**
+     * Compares part of a row to an upper-case word, ignoring case and surrounding whitespace.
+     * @param line the row
+     * @param start start of the part, inclusive
+     * @param end end of the part, exclusive
+     * @param word the word, in upper case
+     * @return true if they're the same
+     */
+    private static boolean isWord(CharSequence line, int start, int end, String word) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) end--;
+        if (end - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (toUpperAscii(line.charAt(start + i)) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets part of a row without surrounding whitespace.
+     * @param line the row
+     * @param start start of the part, inclusive
+     * @param end end of the part, exclusive
+     * @return the part
+     */
+    private static String trimmed(CharSequence line, int start, int end) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) end--;
+        return line.subSequence(start, end).toString();
+    }
+
+    /**
+     * Gets part of a row with every ']' removed, as for the description.
+     * @param line the row
+     * @param start start of the part, inclusive
+     * @param end end of the part, exclusive
+     * @return the part
+     */
+    private static String withoutClosingBrackets(CharSequence line, int start, int end) {
+        //Usually the only ']' closes the list, so the part can be taken as it is.
+        int firstBracket = start;
+        while (firstBracket < end && line.charAt(firstBracket) != ']') firstBracket++;
+        if (firstBracket >= end - 1) return line.subSequence(start, firstBracket).toString();
+
+        //Otherwise join the text between them, each piece decoded by the line itself (see MappedLine).
+        StringBuilder text = new StringBuilder(end - start);
+        int pieceStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || line.charAt(i) == ']') {
+                if (i > pieceStart) text.append(line.subSequence(pieceStart, i).toString());
+                pieceStart = i + 1;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Adds part of a row, with every ']' removed, to the textStore, as for the description.
+     * <p>Usually the only ']' closes the list, so a memory-mapped row's bytes are copied as they are, without
+     * being decoded into a String and encoded back.
+     * @param line the row
+     * @param start start of the part, inclusive
+     * @param end end of the part, exclusive
+     * @return the part's handle in the textStore
+     */
+    private long storeWithoutClosingBrackets(CharSequence line, int start, int end) {
+        if (line instanceof MappedLine mappedLine) {
+            int firstBracket = start;
+            while (firstBracket < end && line.charAt(firstBracket) != ']') firstBracket++;
+            if (firstBracket >= end - 1) return mappedLine.storeIn(textStore, start, firstBracket);
+        }
+        return textStore.add(withoutClosingBrackets(line, start, end));
+    }
+
+    /**
+     * Identifies whether part of a row is empty or whitespace.
+     * @param line the row
+     * @param start start of the part, inclusive
+     * @param end end of the part, exclusive
+     * @return true if blank
+     */
+    private static boolean isBlank(CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(line.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Identifies a character to trim from list entries.
+     * @param c the character
+     * @return true for whitespace and ']'
+     */
+    private static boolean isWhitespaceOrBracket(char c) {return c == ']' || Character.isWhitespace(c);}
+
+    /**
+     * A line of a buffer of UTF-8 bytes, read as a CharSequence without decoding it.
+     * <p>charAt() gives each byte as a char, which is the character itself for ASCII. The bytes of a multi-byte
+     * character are all 0x80 or above, so they're never taken for the ASCII delimiters, whitespace, names or words
+     * the tokenizer looks for. toString() decodes the bytes properly, so only the values kept are decoded.
+     * <p>over() moves it to the next line, so one MappedLine serves every line of a buffer.
+     */
+    private static final class MappedLine implements CharSequence {
+        private final ByteBuffer bytes;
+        // Working space toString() copies bytes into before decoding them; shared with subSequence() views.
+        private final byte[][] scratch;
+        private int start;
+        private int end;
+
+        /**
+         * Creates a MappedLine over a buffer; call over() before use.
+         * @param bytes the buffer, read by absolute index
+         */
+        MappedLine(ByteBuffer bytes) {this(bytes, new byte[][] {new byte[INITIAL_SCRATCH_BYTES]});}
+
+        private MappedLine(ByteBuffer bytes, byte[][] scratch) {
+            this.bytes = bytes;
+            this.scratch = scratch;
+        }
+
+        /**
+         * Moves this to a line of the buffer.
+         * @param start index of the line's first byte
+         * @param end index after the line's last byte
+         * @return this
+         */
+        MappedLine over(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {return end - start;}
+
+        @Override
+        public char charAt(int index) {return (char) (bytes.get(start + index) & 0xFF);}
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new MappedLine(bytes, scratch).over(start + from, start + to);
+        }
+
+        /**
+         * Adds part of this line's bytes to a TextStore as they are, without decoding them.
+         * @param textStore the TextStore
+         * @param from start of the part, inclusive
+         * @param to end of the part, exclusive
+         * @return the part's handle in the textStore
+         */
+        long storeIn(TextStore textStore, int from, int to) {
+            return textStore.add(bytes, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            int length = end - start;
+            if (scratch[0].length < length) scratch[0] = new byte[Math.max(length, scratch[0].length * 2)];
+            bytes.get(start, scratch[0], 0, length);
+            return new String(scratch[0], 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Capitalise the first letter of each word in a string, and make following letters lowercase.
+     * <p> Sends to uppercase some common abbreviations.
+     * Adapted with minor modification from this tutorial:
+     * https://www.geeksforgeeks.org/java/java-program-to-capitalize-the-first-letter-of-each-word-in-a-string/
+     * Code copied verbatim from Ariel Halperin, UNE COSC120, Assignment 2,
+     * MenuSearcher, capitaliseFirstLettersOnly(String input)
+     * <p>Since moved from MenuSearcher, and walks the words itself rather than splitting on a regex, so it runs
+     * once per value without allocating an array of words.
+     *
+     * @param input the String to be modified.
+     * @return the String in the desired (capitalised[0]lowercase[1:]) format.
+     */
+    static String capitaliseFirstLettersOnly(String input) {
+        // Don't operate on null or blank strings.
+        if (input == null || input.isBlank()) return input;
+
+        // Rebuild words in string, splitting char0 and the rest of the word.
+        StringBuilder sb = new StringBuilder(input.length());
+        int length = input.length();
+        int start = 0;
+        while (start < length) {
+            // Words are separated by whitespace of any length
+            while (start < length && Character.isWhitespace(input.charAt(start))) start++;
+            if (start == length) break;
+            int end = start;
+            while (end < length && !Character.isWhitespace(input.charAt(end))) end++;
+            if (!sb.isEmpty()) sb.append(' ');
+
+            int wordLength = end - start;
+            if (isWord(input, start, end, "NA") || isWord(input, start, end, "N/A")) {
+                for (int i = start; i < end; i++) sb.append(Character.toUpperCase(input.charAt(i)));
+            } else if (wordLength >= 3 && isWord(input, start, start + 2, "GC")) {
+                //WORDS BEGINNING WITH GC? should maintain their origin capitalisation at the third letter
+                sb.append("Gc").append(input.charAt(start + 2));
+                for (int i = start + 3; i < end; i++) sb.append(Character.toLowerCase(input.charAt(i)));
+            } else {
+                sb.append(Character.toUpperCase(input.charAt(start)));
+                for (int i = start + 1; i < end; i++) sb.append(Character.toLowerCase(input.charAt(i)));
+            }
+            start = end;
+        }
+        return sb.toString();
+    }
+}
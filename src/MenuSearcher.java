@@ -18,11 +18,45 @@ public final class MenuSearcher implements GuiListener {
      * Adapted by Ariel Halperin
      */
     private static final String MENU_TXT_PATH = "./menu.txt";
+    // Binary copy of the parsed menu.txt, loaded instead of parsing it while menu.txt is unchanged.
+    private static final String MENU_SNAPSHOT_PATH = "./menu.snapshot";
+    // Number of distinct searches whose results are kept for repeat customers.
+    private static final int SEARCH_CACHE_CAPACITY = 64;
+    // Number of closest alternatives shown when a search finds no matches.
+    private static final int NEAREST_MATCHES_SHOWN = 5;
+    // Number of matches sent to the GUI at a time.
+    private static final int RESULTS_PAGE_SIZE = 10;
+    // Number of bad menu rows listed when loading; the rest are only counted.
+    private static final int MENU_ERRORS_SHOWN = 20;
+    // Menu files this large are memory-mapped rather than read; for small files, mapping costs more than it saves.
+    private static final long MAPPED_LOAD_MIN_BYTES = 1 << 20;
+    // Command-line argument to save orders to an OrderJournal rather than a text file each.
+    private static final String JOURNAL_ARGUMENT = "--journal";
 
     // Instance objects to interact with GUI
-    private final Menu menu;
+    // The current Menu. Replaced whole when the menu file is reloaded, never changed in place once published, so
+    // each handler reads it once and works on that snapshot throughout.
+    private volatile Menu menu;
+    // Where orders are saved in journal mode; null to write a text file per order.
+    private final OrderJournal orderJournal;
     // Store subscribers to the OrderingSystemListener. Currently only intended to be OrderGui--but List because could expand
     private final List<OrderingSystemListener> listeners = new ArrayList<>();
+    // Results of recent searches, so repeated searches don't rescan the menu.
+    private final SearchResultCache searchCache = new SearchResultCache(SEARCH_CACHE_CAPACITY);
+    // Cursor over the latest search's matches, paged out to the GUI as it asks for them. It keeps paging the Menu
+    // it was found on if the menu is reloaded meanwhile.
+    private SearchResultCursor resultCursor;
+    // The latest search run on the Menu (rather than answered from the cache), for the next to build on.
+    private MenuSearch lastMenuSearch;
+
+    /**
+     * A search run on the Menu, whose cursor still knows which items it found to match and which it ruled out.
+     * @param query the compiled search criteria
+     * @param cursor the search's cursor, however far it has been paged
+     * @param menu the Menu searched; its results are unusable on a reloaded Menu
+     * @param menuVersion the Menu's version when searched; its results are unusable once the Menu changes.
+     */
+    private record MenuSearch(CompiledQuery query, SearchResultCursor cursor, Menu menu, long menuVersion) {}
 
 
     /**
@@ -30,7 +64,17 @@ public final class MenuSearcher implements GuiListener {
      * @param menu the Menu of menu items to populate and reference
      */
     public MenuSearcher(Menu menu) {
+        this(menu, null);
+    }
+
+    /**
+     * MenuSearcher constructor to create a MenuSearcher instance with a Menu instance, saving orders to a journal
+     * @param menu the Menu of menu items to populate and reference
+     * @param orderJournal the open OrderJournal to append orders to, or null to write a text file per order
+     */
+    public MenuSearcher(Menu menu, OrderJournal orderJournal) {
         this.menu = menu;
+        this.orderJournal = orderJournal;
     }
 
     /**
@@ -38,14 +82,28 @@ public final class MenuSearcher implements GuiListener {
      * <p>Initialises the application by:
      * <li>loading the Menu,
      * <li>creating the main controller and GUI,
-     * <li>setting up listeners for commincation.
+     * <li>setting up listeners for commincation,
+     * <li>watching the menu file, to reload the Menu whenever it changes, and reloading it at once if it changed
+     * before watching began.
      * <p>Uses InvokeLater to ensure all Swing components are created on the EDT.
      *
-     * @param args command-line arguments not required.
+     * @param args command-line arguments not required; JOURNAL_ARGUMENT to save orders to the OrderJournal in
+     *             OrderJournal.DEFAULT_DIRECTORY rather than a text file each.
      */
     public static void main(String[] args) {
-        Menu menu = loadMenu(MENU_TXT_PATH);
-        MenuSearcher menuSearcher = new MenuSearcher(menu);
+        //Stamped before loading, so a save from then on is either in the loaded Menu or caught once watching starts.
+        MenuSnapshot.SourceStamp loadedStamp = stampOf(Path.of(MENU_TXT_PATH));
+        Menu menu = loadMenu(MENU_TXT_PATH, MENU_SNAPSHOT_PATH);
+        OrderJournal orderJournal = null;
+        if (List.of(args).contains(JOURNAL_ARGUMENT)) {
+            try {
+                orderJournal = OrderJournal.open(Path.of(OrderJournal.DEFAULT_DIRECTORY));
+            } catch (IOException io) {
+                System.out.println("Order journal could not be opened: " + io.getMessage());
+                System.exit(1);
+            }
+        }
+        MenuSearcher menuSearcher = new MenuSearcher(menu, orderJournal);
 
         // Get filter options for the GUI view
         Map<Filter, List<Object>> filterOptions = menuSearcher.getFilterOptions();
@@ -68,26 +126,48 @@ public final class MenuSearcher implements GuiListener {
             gui.addGuiListener(menuSearcher);
             menuSearcher.addOrderingSystemListener(gui);
         });
+
+        //Queued after the GUI is created above, so the GUI is always listening by the time a reload reports.
+        try {
+            MenuFileWatcher.start(Path.of(MENU_TXT_PATH),
+                    () -> menuSearcher.reloadMenu(MENU_TXT_PATH, MENU_SNAPSHOT_PATH));
+            //A save between loading and watching raised no event, so compare the file with the one loaded.
+            if (!Objects.equals(stampOf(Path.of(MENU_TXT_PATH)), loadedStamp)) {
+                menuSearcher.reloadMenu(MENU_TXT_PATH, MENU_SNAPSHOT_PATH);
+            }
+        } catch (IOException io) {
+            System.out.println("Menu file can't be watched, so the program must be restarted to load changes to it. "
+                    + io.getMessage());
+        }
     }
 
 
 
 
     /**
-     * Populates an immutable Map with immutable Lists for all filter options.
+     * Populates an immutable Map with immutable Lists for all filter options on the current Menu.
      * Calls Menu public helper to compile ingredient lists as needed.
      * Otherwise populates directly from Enums
      * <p>Public to call by Main when instantiating GUI with Menu data.</p>
      * @return Map of Lists of Object representing filters.
      */
     public Map<Filter, List<Object>> getFilterOptions(){
+        return getFilterOptions(this.menu);
+    }
+
+    /**
+     * Populates an immutable Map with immutable Lists for all filter options on a Menu; see getFilterOptions().
+     * @param menu the Menu
+     * @return Map of Lists of Object representing filters.
+     */
+    private static Map<Filter, List<Object>> getFilterOptions(Menu menu){
         Map<Filter, List<Object>> filterOptions = new HashMap<>();
 
         for (Filter thisFilter : Filter.values()) {
             //No point getting the Booleans, as they're expected to be represented by radio-buttons or checkboxes.
             if (!thisFilter.valuesCanBeRepresentedByBooleanWrapper()){
                 //Already returns an immutable List--just put it in the Map.
-                filterOptions.put(thisFilter, this.menu.getAllIngredientTypes(thisFilter));
+                filterOptions.put(thisFilter, menu.getAllIngredientTypes(thisFilter));
             }
         }
 
@@ -96,146 +176,149 @@ public final class MenuSearcher implements GuiListener {
 
     /**
      * Loads the menu from a text file and parses it into a Menu object.
-     * <p>Reads the file line-by-line, parsing each entry into a MenuItem with a composed DreamMenuItem.
+     * <p>Streams the file line-by-line through a MenuParser, parsing each entry into a MenuItem with a composed
+     * DreamMenuItem. Files of MAPPED_LOAD_MIN_BYTES or more are memory-mapped and parsed from their bytes in
+     * place. Rows with bad data are skipped, and reported together once the rest are loaded.
      * @param filePath String of the path to the menu data file
      * @return a new Menu object populated with the menu items from the file.
      */
     public static Menu loadMenu(String filePath) {
-        Menu menu = new Menu();
-        Path path = Path.of(filePath);
-        List<String> fileContents = null;
-        try {
-            fileContents = Files.readAllLines(path);
-        }catch (IOException io){
-            System.out.println("File could not be found");
-            System.exit(0);
-        }
-
-        for(int i=1;i<fileContents.size();i++){
-
-            String[] info = fileContents.get(i).split("\\[");
-            String[] singularInfo = info[0].split(",");
-
-            String cheesesRaw =  info[1].replace("]", "");
-            String leafyGreensRaw = info[2].replace("]","");
-            String saucesRaw = info[3].replace("]","");
-            String description = info[4].replace("]","");
-
-            String menuItemIdentifier = singularInfo[0];
-
-            Type type = null;
-            try{
-                type = Type.valueOf(singularInfo[1].toUpperCase().strip());
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Type data could not be parsed for item on line "+(i+1)
-                        +". Terminating. \nError message: "+e.getMessage());
-                System.exit(1);
-            }
-
-            String menuItemName = capitaliseFirstLettersOnly(singularInfo[2].strip());
-
-            double price = 0;
-            try{
-                price = Double.parseDouble(singularInfo[3]);
-            }catch (NumberFormatException n){
-                System.out.println("Error in file. Price could not be parsed for item on line "+(i+1)
-                        +". Terminating. \nError message: "+n.getMessage());
-                System.exit(1);
-            }
-
-            String bun = capitaliseFirstLettersOnly(singularInfo[4].toLowerCase().strip());
+        return parseMenuFile(Path.of(filePath)).menu();
+    }
 
-            Protein protein = null;
+    /**
+     * Loads the menu from a binary MenuSnapshot if there's one compiled from the text file as it is now;
+     * otherwise parses the text file as loadMenu() does, and compiles a new snapshot for next time.
+     * <p>A snapshot that can't be read (e.g. corrupt, or from another version of the program) is reported and the
+     * text file parsed instead. A new snapshot isn't compiled if the text file has bad rows, so they keep being
+     * reported until fixed; nor does failing to write one stop the program.
+     * @param filePath String of the path to the menu data file
+     * @param snapshotPath String of the path to the snapshot file
+     * @return a new Menu object populated with the menu items from the snapshot or the file.
+     */
+    public static Menu loadMenu(String filePath, String snapshotPath) {
+        Path path = Path.of(filePath);
+        Path snapshot = Path.of(snapshotPath);
+        if (MenuSnapshot.isCurrentFor(snapshot, path)) {
             try {
-                protein = Protein.valueOf(singularInfo[5].toUpperCase());
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Protein data could not be parsed for item on line "+(i+1)
-                        +". Terminating. \nError message: "+e.getMessage());
-                System.exit(1);
-            }
-
-            boolean pickles = false;
-            String picklesRaw = singularInfo[6].strip().toUpperCase();
-            if(picklesRaw.equals("YES")) pickles = true;
-
-            boolean cucumber = false;
-            String cucumberRaw = singularInfo[7].strip().toUpperCase();
-            if(cucumberRaw.equals("YES")) cucumber = true;
-
-            boolean tomato = false;
-            String tomatoRaw = singularInfo[8].strip().toUpperCase();
-            if(tomatoRaw.equals("YES")) tomato = true;
-
-            Dressing dressing = null;
-            try {
-                dressing = Dressing.valueOf(singularInfo[9].toUpperCase().replace(" ","_"));
-            }catch (IllegalArgumentException e){
-                System.out.println("Error in file. Dressing data could not be parsed for item on line "+(i+1)
-                        +". Terminating. \nError message: "+e.getMessage());
-                System.exit(1);
+                return MenuSnapshot.read(snapshot);
+            } catch (IOException io) {
+                System.out.println("Menu snapshot could not be read, so loading " + filePath + " instead. "
+                        + io.getMessage());
             }
+        }
 
-            //CHEESES - only add to the Cheeses set if there's a non-blank entry in the closure that's not NA
-            Set<String> cheeses = new HashSet<>();
-            for (String c : cheesesRaw.split(",")){
-                String cheeseStrip = c.strip();
-                if (!cheeseStrip.isBlank() && !cheeseStrip.equalsIgnoreCase("NA")){
-                    cheeses.add(capitaliseFirstLettersOnly(cheeseStrip));
-                }
-            }
+        //Stamped before parsing, so an edit saved while parsing leaves the snapshot stale.
+        MenuSnapshot.SourceStamp stamp = stampOf(path);
+        MenuParser.Result parsed = parseMenuFile(path);
+        if (!parsed.hasErrors() && stamp != null) writeSnapshot(parsed.menu(), stamp, snapshot);
+        return parsed.menu();
+    }
 
-            //LEAFY GREENS - only add to the Leafy Greens set if there's a non-blank entry in the closure that's not NA
-            Set<String> leafyGreens = new HashSet<>();
-            for(String l: leafyGreensRaw.split(",")){
-                String leafyGreensStrip = l.strip();
-                if (!leafyGreensStrip.isBlank() && !leafyGreensStrip.equalsIgnoreCase("NA")){
-                    leafyGreens.add(capitaliseFirstLettersOnly(leafyGreensStrip));
-                }
+    /**
+     * Reloads the menu from its data file after it has changed, and swaps the new Menu in for later searches.
+     * <p>Intended to run off the EDT (e.g. on a MenuFileWatcher's thread). The new Menu is parsed, indexed and
+     * its filter options listed before it's published, so the EDT never waits on a reload:
+     * <li>a search already running, or being paged, carries on with the Menu it started on,
+     * <li>every search from then on runs on the new Menu,
+     * <li>listeners are then told the new filter options, on the EDT.
+     * <p>A file that can't be read, has bad rows or has no items is reported and the current Menu kept, since it's
+     * most likely still being saved; the finished save triggers another reload. Otherwise a new snapshot is written.
+     * <p>Synchronized, so reloads asked for on different threads (e.g. by main() and the watcher) run one at a time
+     * and the last to finish has read the file last.
+     * @param filePath String of the path to the menu data file
+     * @param snapshotPath String of the path to the snapshot file
+     * @return true if the new Menu was swapped in
+     */
+    public synchronized boolean reloadMenu(String filePath, String snapshotPath) {
+        Path path = Path.of(filePath);
+        MenuSnapshot.SourceStamp stamp;
+        MenuParser.Result parsed;
+        try {
+            stamp = MenuSnapshot.SourceStamp.of(path); //before parsing, as in loadMenu()
+            parsed = parseMenu(path);
+        } catch (IOException io) {
+            System.out.println("Menu file could not be reloaded, so keeping the current menu. " + io.getMessage());
+            return false;
+        }
+        if (parsed.hasErrors()) {
+            System.out.println("Menu file has bad rows, so keeping the current menu.\n"
+                    + parsed.getReport(MENU_ERRORS_SHOWN));
+            return false;
+        }
+        if (parsed.rowCount() == 0) {
+            System.out.println("Menu file has no items, so keeping the current menu.");
+            return false;
+        }
 
-            }
+        Menu newMenu = parsed.menu();
+        newMenu.prepareForSearch();
+        Map<Filter, List<Object>> filterOptions = getFilterOptions(newMenu);
+        this.menu = newMenu;
+        System.out.println("Menu reloaded from " + filePath + ": " + parsed.rowCount() + " items.");
 
-            //SAUCES - only add sauces if it's a non-blank and non-NA entry.
-            Set<Sauce> sauces = new HashSet<>();
-            for(String s: saucesRaw.split(",")){
-                String cleanSauce = s.strip().toUpperCase();
-                if (!cleanSauce.isEmpty() && !cleanSauce.equalsIgnoreCase("NA")){
-                    try{
-                        sauces.add(Sauce.valueOf(cleanSauce));
-                    } catch (IllegalArgumentException e){
-                        System.out.println("Error in file. Sauce/s data could not be parsed for item on line "+(i+1)
-                                +". Terminating. \nError message: "+e.getMessage());
-                        System.exit(1);
-                    }
-                }
+        SwingUtilities.invokeLater(() -> {
+            for (OrderingSystemListener listener : listeners) {
+                listener.onMenuReloaded(filterOptions);
             }
+        });
+        writeSnapshot(newMenu, stamp, Path.of(snapshotPath));
+        return true;
+    }
 
-            Map<Filter,Object> filterMap = new LinkedHashMap<>();
-
-            filterMap.put(Filter.TYPE,type);
-            filterMap.put(Filter.PROTEIN, protein);
-            filterMap.put(Filter.PICKLES, pickles);
-            filterMap.put(Filter.TOMATO, tomato);
-            //Only add the cheeses set if it's not empty--otherwise it's meaningless
-            if (!cheeses.isEmpty()) filterMap.put(Filter.CHEESE, Set.copyOf(cheeses));
-
-            if(type.equals(Type.BURGER)){
-                filterMap.put(Filter.BUN, bun);
-                //only add the sauces set if it's not empty--otherwise it's meaningless;
-                //currently all burgers have sauce, but a burger without sauce is conceivable
-                if(!sauces.isEmpty()) filterMap.put(Filter.SAUCES,Set.copyOf(sauces));
-            }
+    /**
+     * Reads a menu data file's stamp, if it can be read.
+     * @param path path of the menu data file
+     * @return the MenuSnapshot.SourceStamp, <b>or null</b> if the file is missing or its details can't be read
+     */
+    private static MenuSnapshot.SourceStamp stampOf(Path path) {
+        try {
+            return MenuSnapshot.SourceStamp.of(path);
+        } catch (IOException io) {
+            return null;
+        }
+    }
 
-            if(type.equals(Type.SALAD)){
-                filterMap.put(Filter.DRESSING,dressing);
-                filterMap.put(Filter.LEAFY_GREENS,Set.copyOf(leafyGreens));
-                filterMap.put(Filter.CUCUMBER, cucumber);
-            }
+    /**
+     * Writes a MenuSnapshot of a Menu parsed from a menu data file. Failing to is reported, but not an error.
+     * @param menu the Menu
+     * @param source stamp of the menu data file it was parsed from, read before parsing it
+     * @param snapshot path of the snapshot file
+     */
+    private static void writeSnapshot(Menu menu, MenuSnapshot.SourceStamp source, Path snapshot) {
+        try {
+            MenuSnapshot.write(menu, source, snapshot);
+        } catch (IOException io) {
+            System.out.println("Menu snapshot could not be written: " + io.getMessage());
+        }
+    }
 
-            DreamMenuItem dreamMenuItem = new DreamMenuItem(filterMap);
-            MenuItem menuItem = new MenuItem(menuItemIdentifier, menuItemName,price,description, dreamMenuItem);
-            menu.addItem(menuItem);
+    /**
+     * Parses a menu data file, memory-mapping it if it's MAPPED_LOAD_MIN_BYTES or more, and prints a report of
+     * any bad rows. Exits if the file can't be read.
+     * @param path path of the menu data file
+     * @return the MenuParser.Result
+     */
+    private static MenuParser.Result parseMenuFile(Path path) {
+        MenuParser.Result parsed = null;
+        try {
+            parsed = parseMenu(path);
+        }catch (IOException io){
+            System.out.println("File could not be found");
+            System.exit(0);
         }
-        return menu;
+        if (parsed.hasErrors()) System.out.println(parsed.getReport(MENU_ERRORS_SHOWN));
+        return parsed;
+    }
+
+    /**
+     * Parses a menu data file, memory-mapping it if it's MAPPED_LOAD_MIN_BYTES or more.
+     * @param path path of the menu data file
+     * @return the MenuParser.Result
+     * @throws IOException if the file can't be read
+     */
+    private static MenuParser.Result parseMenu(Path path) throws IOException {
+        return Files.size(path) >= MAPPED_LOAD_MIN_BYTES ? MenuParser.parseMapped(path) : MenuParser.parse(path);
     }
 
     /**
@@ -330,85 +413,52 @@ public final class MenuSearcher implements GuiListener {
 
     /**
      * Helper method to create a String formatted to meet the order details txt requirements.
-     * Adapted from Ariel Halperin, COSC120 A1 orderStringToWriteOut()
+     * <p>Rendered by OrderJournal.Entry, so journaled orders print the same; the order number and time the Entry
+     * also holds aren't part of the text.
      *
      * @param order record containing all attribute values necessary to record an order.
      * @return a String of the customer's order.
      */
     private static String orderStringToWriteOut(Order order) {
-        //Adaptation if the customer is making multiple orders
-        StringJoiner itemStrings = new StringJoiner("\n");
-        for (MenuItem item : order.menuItems()) {
-            itemStrings.add("\tItem: " + item.getMenuItemName() + (" (" + item.getMenuItemIdentifier() + ")"));
-        }
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("Order details:\n");
-        sb.append("\tName: ").append(order.name())
-                .append(" (").append(order.phoneNoAsString()).append(")\n");
-        sb.append(itemStrings).append("\n\n");
-        sb.append("Customisation:");
-        //Don't add an extra blank line if nothing was written in the customisations box.
-        if (order.customisations() != null && !order.customisations().isBlank()) {
-            sb.append("\n").append(order.customisations());
-        }
-        sb.append("\n\n\n");
-        sb.append("Selected Cheese: ").append(order.selectedCheese()).append("\n\n\n");
-        sb.append("Please make this order to ").append(order.takeaway() ? "takeaway" : "have here").append(".");
-
-        return sb.toString();
+        return OrderJournal.Entry.of(0, 0, order).toOrderText();
     }
 
     /**
-     * Capitalise the first letter of each word in a string, and make following letters lowercase.
-     * <p> Sends to uppercase some common abbreviations.
-     * Adapted with minor modification from this tutorial:
-     * https://www.geeksforgeeks.org/java/java-program-to-capitalize-the-first-letter-of-each-word-in-a-string/
-     * Code copied verbatim from Ariel Halperin, UNE COSC120, Assignment 2,
-     * MenuSearcher, capitaliseFirstLettersOnly(String input)
-     *
-     * @param input the String to be modified.
-     * @return the String in the desired (capitalised[0]lowercase[1:]) format.
+     * Appends the customer's order to the orderJournal, in place of writing an order file.
+     * <p>Calls a helper to request error message display in GUI if it fails.
+     * @param order the record holding all attribute values relevant to the order.
+     * @return true if the order succeeded, false if it failed.
      */
-    private static String capitaliseFirstLettersOnly(String input) {
-        // Don't operate on null or blank strings.
-        if (input == null || input.isBlank()) return input;
-
-        Set<String> abbreviations = Set.of("NA", "N/A");
-
-        String[] words = input.split("\\s+"); // Split words on whitespace of any length
-        // Rebuild words in string, splitting char0 and the rest of the word.
-        StringBuilder sb = new StringBuilder();
-
-        for (String word : words) {
-            if (abbreviations.contains(word.toUpperCase())) {
-                sb.append(word.toUpperCase());
-            } else if (word.length()>=3 && word.substring(0,2).equalsIgnoreCase("Gc")) {
-                //WORDS BEGINNING WITH GC? should maintain their origin capitalisation at the third letter
-                sb.append("G");
-                sb.append("c");
-                sb.append(word.charAt(2));
-                if (word.length() > 3) {
-                    sb.append(word.substring(3).toLowerCase());
-                }
-            } else {
-                sb.append(Character.toUpperCase(word.charAt(0)));
-                // Only apply to words with more than one letter. Avoid possible IndexOutOfBoundsException.
-                if (word.length() > 1) sb.append(word.substring(1).toLowerCase());
-            }
-            sb.append(" ");
+    private boolean writeOrderToJournal(Order order) {
+        try {
+            OrderJournal.Entry entry = orderJournal.append(order);
+            System.out.println("Order " + entry.orderNumber() + " has been saved to the order journal\n");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing order to the order journal: " + e.getMessage());
+
+            String errorMsg = "Error: Your order could not be saved to our system. We're really sorry!"
+                    + "\nYou're welcome to try again, or else go order at the front counter.";
+
+            notifyListenersOnOrderFailure(errorMsg);
+            return false;
         }
-        return sb.toString().trim(); //trims last whitespace and any leading whitespace.
     }
 
     /**
-     * Return an immutable List of all MenuItems held in the MenuSearcher's Menu
+     * Return an immutable List of all MenuItems held in the MenuSearcher's current Menu
      * @return immutable List of MenuItem
      */
     public List<MenuItem> getAllMenuItems() {
         return List.copyOf(this.menu.getMenuItems());
     }
 
+    /**
+     * Gets the cache of recent search results, e.g. to report its hit and miss counts.
+     * @return the SearchResultCache
+     */
+    public SearchResultCache getSearchCache() {return searchCache;}
+
     //              ***LISTENER INTERFACE INTERACTION METHODS***
 
     /**
@@ -422,52 +472,117 @@ public final class MenuSearcher implements GuiListener {
     }
 
     /**
-     * Handles the search request from the GUI. Uses the Menu to find matches
-     * and notifies listeners of results or lack thereof.
+     * Handles the search request from the GUI. Answers repeated searches from the searchCache; otherwise
+     * compiles the criteria once and uses the Menu to find matches a page at a time.
+     * Notifies listeners of the first page of results, or lack thereof.
+     * <p>Searches are cached as soon as they're run, so a repeat pages through what the search has found so far
+     * without checking it again.
+     * <p>Searches run on the Menu build on the previous one where they can (see searchMenu()).
      *
      * @param dreamMenuItem DreamMenuItem representing all the user's selected filters and price range.
      *                      Will not be null when passed in.
      */
     @Override
     public void performSearch(DreamMenuItem dreamMenuItem) {
-        List<MenuItem> matching = menu.findMatch(dreamMenuItem);
+        Menu menu = this.menu;
+        CompiledQuery query = dreamMenuItem.getCompiledQuery(menu.getDictionary());
+        resultCursor = searchCache.getOrSearch(menu, dreamMenuItem, () -> searchMenu(menu, query));
 
-        if (!matching.isEmpty()) {
-            notifyListenersOnSearchResults(matching);
+        List<MenuItem> firstPage = resultCursor.nextPage(RESULTS_PAGE_SIZE);
+        if (!firstPage.isEmpty()) {
+            notifyListenersOnSearchResults(firstPage, resultCursor.hasMore());
         } else {
-            notifyListenersOnNoMatchesFound();
+            notifyListenersOnNoMatchesFound(menu.findNearestMatches(query, NEAREST_MATCHES_SHOWN));
+        }
+    }
+
+    /**
+     * Searches the Menu, building on the previous search run on it if the criteria have only narrowed or widened.
+     * <p>Customers usually change one selection at a time and search again, so:
+     * <li>If the new criteria are narrower (e.g. a sauce added, or the price range tightened), only the previous
+     * search's possible matches are checked.
+     * <li>If they're wider, the previous search's known matches are kept without checking, and only the items
+     * it excluded are checked.
+     * <li>Otherwise, or if the Menu has changed or been reloaded since, the Menu is searched from scratch.
+     * <p>Works however far the previous results were paged: what that search hadn't checked yet is checked now.
+     * @param menu the Menu to search
+     * @param query CompiledQuery of the user's search criteria
+     * @return SearchResultCursor over the matching items
+     */
+    private SearchResultCursor searchMenu(Menu menu, CompiledQuery query) {
+        MenuSearch last = lastMenuSearch;
+        SearchResultCursor cursor;
+        if (last == null || last.menu() != menu || last.menuVersion() != menu.getVersion()) {
+            cursor = menu.findMatchPaged(query);
+        } else if (query.selectsSubsetOf(last.query())) {
+            cursor = menu.findMatchPagedAmong(query, last.cursor().possibleMatchIds());
+        } else if (last.query().selectsSubsetOf(query)) {
+            cursor = menu.findMatchPagedIncluding(query, last.cursor().knownMatchIds());
+        } else {
+            cursor = menu.findMatchPaged(query);
+        }
+        lastMenuSearch = new MenuSearch(query, cursor, menu, menu.getVersion());
+        return cursor;
+    }
+
+    /**
+     * Handles the GUI's request for the next page of the latest search's results.
+     * <p>Does nothing if there was no search or it has no more results.
+     */
+    @Override
+    public void requestMoreResults() {
+        if (resultCursor == null || !resultCursor.hasMore()) return;
+        List<MenuItem> page = resultCursor.nextPage(RESULTS_PAGE_SIZE);
+        for (OrderingSystemListener listener : listeners) {
+            listener.onMoreSearchResults(page, resultCursor.hasMore());
+        }
+    }
+
+    /**
+     * Handles the GUI's request for facet counts on the user's current selections.
+     * <p>Counted by the Menu from its posting lists, so it's cheap enough to run on every selection change.
+     * @param partialSelections DreamMenuItem of the selections made so far. Will not be null when passed in.
+     */
+    @Override
+    public void requestFacetCounts(DreamMenuItem partialSelections) {
+        Map<Filter, Map<Object, Integer>> facetCounts = this.menu.getFacetCounts(partialSelections);
+        for (OrderingSystemListener listener : listeners) {
+            listener.onFacetCounts(facetCounts);
         }
     }
 
     /**
-     * Notifies all registered listeners of search results
-     * @param matching a List of MenuItems that matched the search criteria
+     * Notifies all registered listeners of the first page of search results
+     * @param firstPage a List of the first MenuItems that matched the search criteria
+     * @param moreAvailable true if there are more pages to request
      */
-    private void notifyListenersOnSearchResults(List<MenuItem> matching) {
+    private void notifyListenersOnSearchResults(List<MenuItem> firstPage, boolean moreAvailable) {
         for (OrderingSystemListener listener : listeners) {
-            listener.onSearchResults(matching);
+            listener.onSearchResults(firstPage, moreAvailable);
         }
     }
 
     /**
      * Notifies all registered listeners that no matches were found for a search.
-     * <p>Provides the full menu as a default option.
+     * <p>Provides the closest alternatives as a default option.
+     * @param nearestMatches a List of the MenuItems that came closest to matching, best first
      */
-    private void notifyListenersOnNoMatchesFound() {
+    private void notifyListenersOnNoMatchesFound(List<MenuItem> nearestMatches) {
         for (OrderingSystemListener listener : listeners) {
-            listener.onNoMatchesFound(this.getAllMenuItems());
+            listener.onNoMatchesFound(nearestMatches);
         }
     }
 
     /**
      * Handles order submission requests from the GUI.
-     * <p>Attempts to write the order to a file and notifies listeners of the success or failure.
+     * <p>Attempts to write the order to a file, or append it to the orderJournal in journal mode, and notifies
+     * listeners of the success or failure.
      * @param order Order record containing all customer details, selected items and customisations.
      *              Will not be null when passed in.
      */
     @Override
     public void submitOrder(Order order) {
-        boolean success = writeOrderToFile(order);
+        boolean success = orderJournal != null ? writeOrderToJournal(order) : writeOrderToFile(order);
 
         if (success) {
             notifyListenersOnOrderSuccess(order);
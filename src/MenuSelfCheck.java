@@ -0,0 +1,639 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Command-line self-checks that the Menu's alternative search engines agree with the plain DreamMenuItem.matches()
+ * loop, on menu.txt repeated up to a large menu and randomly generated search criteria, and that the ordering
+ * system's recovery paths recover what they should.
+ * <p>Not part of the ordering system; run from the project root with:
+ * <li>java MenuSelfCheck--every check;
+ * <li>java MenuSelfCheck scan batch--only the named checks:
+ * <li>scan--Menu.findMatchByColumnScan() and findMatchingIdsByColumnScan() with each ColumnKernel available, and
+ * the indexed Menu.findMatch().
+ * <li>batch--Menu.findMatchBatch() and findMatchingIdsBatch(), all the criteria at once.
+ * <li>incremental--searches built on the previous one as criteria narrow (Menu.findMatchPagedAmong()) or widen
+ * (Menu.findMatchPagedIncluding()), however far the previous one was paged, as MenuSearcher runs them.
+ * <li>facets--Menu.getFacetCounts() counts, for each option, the items found with it chosen in place of its Filter's
+ * selection, including items the index can't hold.
+ * <li>snapshot--a MenuSnapshot reads back the Menu it was written from, is only current while the menu data file
+ * is unchanged, and is rejected if corrupted or cut short.
+ * <li>journal--an OrderJournal reads back every order appended across its segments, drops a record torn or
+ * corrupted at the end of the last segment and writes the next order in its place, refuses to open over a
+ * corrupted record with more after it, and can't be opened twice.
+ * <p>A check that finds a difference throws an AssertionError naming the criteria, so the run ends with a stack
+ * trace and a non-zero exit status; otherwise each check prints how many comparisons it made.
+ */
+public final class MenuSelfCheck {
+    private static final List<String> CHECKS =
+            List.of("scan", "batch", "incremental", "facets", "snapshot", "journal");
+    private static final String MENU_TXT_PATH = "./menu.txt";
+    private static final int ITEM_COUNT = 5_000;
+    private static final int QUERY_COUNT = 500;
+    // Page size the incremental check pages the previous search's results by; small, so it's often part-paged.
+    private static final int PAGE_SIZE = 20;
+    // Each facet check compares every option of every Filter, so it runs fewer criteria.
+    private static final int FACET_QUERY_COUNT = 100;
+    // Buns added, each on one item, so the Menu has more than AttributeMasks.MAX_VALUES_PER_FILTER of them.
+    private static final int EXTRA_BUN_COUNT = 80;
+    private static final int ORDER_COUNT = 50;
+    // Small, so the journal check's orders span several segments.
+    private static final long JOURNAL_SEGMENT_BYTES = 1_024;
+    // A byte of the first record's payload in a segment: past the segment header and the record's length and CRC.
+    private static final int JOURNAL_FIRST_PAYLOAD_BYTE = Integer.BYTES * 4;
+    // Fixed, so a failure can be reproduced.
+    private static final long SEED = 120;
+    // A free-text value no menu item holds, so criteria can't always be encoded with the Menu's Dictionary.
+    private static final String UNKNOWN_TEXT = "Not on the menu";
+
+    /**
+     * Private constructor; static entry point only.
+     */
+    private MenuSelfCheck() {}
+
+    /**
+     * Runs the checks named by the arguments, or every check if there are none.
+     * @param args check names
+     */
+    public static void main(String[] args) {
+        List<String> checks = args.length > 0 ? List.of(args) : CHECKS;
+        for (String check : checks) {
+            switch (check) {
+                case "scan" -> checkColumnScan();
+                case "batch" -> checkBatch();
+                case "incremental" -> checkIncremental();
+                case "facets" -> checkFacets();
+                case "snapshot" -> checkSnapshot();
+                case "journal" -> checkJournal();
+                default -> {
+                    System.out.println("Unknown check '" + check + "'. Expected: " + String.join(", ", CHECKS));
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the column scan, with each ColumnKernel available, and the indexed search find exactly the items the
+     * DreamMenuItem.matches() loop does, in the same order.
+     * <p>ITEM_COUNT isn't a multiple of 64, so the last result word is a partial one.
+     */
+    private static void checkColumnScan() {
+        Menu menu = buildMenu();
+        Map<String, ColumnKernel> kernels = new LinkedHashMap<>();
+        kernels.put("scalar", ColumnKernel.SCALAR);
+        if (ColumnKernel.VECTOR != null) kernels.put("vector", ColumnKernel.VECTOR);
+
+        int comparisons = 0;
+        for (CompiledQuery query : randomQueries(menu)) {
+            List<MenuItem> expected = matchesLoop(menu, query);
+            for (Map.Entry<String, ColumnKernel> kernel : kernels.entrySet()) {
+                menu.useColumnKernel(kernel.getValue());
+                check(menu.findMatchByColumnScan(query).equals(expected), "Column scan, " + kernel.getKey(), query);
+                check(menu.findMatchingIdsByColumnScan(query).equals(idsOf(menu, expected)),
+                        "Column scan ids, " + kernel.getKey(), query);
+                comparisons += 2;
+            }
+            check(menu.findMatch(query).equals(expected), "Indexed findMatch", query);
+            comparisons++;
+        }
+        System.out.printf("scan: ok (%,d comparisons; kernels: %s)%n", comparisons,
+                String.join(", ", kernels.keySet()));
+    }
+
+    /**
+     * Checks a batch of every criteria at once finds, for each, exactly the items the DreamMenuItem.matches() loop
+     * does, in the same order.
+     */
+    private static void checkBatch() {
+        Menu menu = buildMenu();
+        List<CompiledQuery> queries = randomQueries(menu);
+        List<DreamMenuItem> criteria = new ArrayList<>(queries.size());
+        for (CompiledQuery query : queries) criteria.add(query.getCriteria());
+
+        List<List<MenuItem>> batch = menu.findMatchBatch(criteria);
+        List<BitSet> batchIds = menu.findMatchingIdsBatch(queries);
+        check(batch.size() == queries.size() && batchIds.size() == queries.size(), "Batch result count",
+                queries.get(0));
+        for (int q = 0; q < queries.size(); q++) {
+            List<MenuItem> expected = matchesLoop(menu, queries.get(q));
+            check(batch.get(q).equals(expected), "Batch", queries.get(q));
+            check(batchIds.get(q).equals(idsOf(menu, expected)), "Batch ids", queries.get(q));
+        }
+        System.out.printf("batch: ok (%,d comparisons)%n", queries.size() * 2);
+    }
+
+    /**
+     * Checks searches built on the previous one find exactly the items the DreamMenuItem.matches() loop does.
+     * <p>Walks from criteria to criteria as a customer would: each step narrows the last criteria (a Filter added,
+     * or the price range tightened), widens them (a Filter removed, or the price range loosened), or starts
+     * afresh. The last search's cursor is paged part of the way, or not at all, before the next is built on it,
+     * and each search is paged to the end to compare.
+     */
+    private static void checkIncremental() {
+        Menu menu = buildMenu();
+        Random random = new Random(SEED);
+        List<CompiledQuery> freshQueries = randomQueries(menu);
+        CompiledQuery last = freshQueries.get(0);
+        SearchResultCursor lastCursor = menu.findMatchPaged(last);
+        int narrowed = 0;
+        int widened = 0;
+        for (int step = 0; step < QUERY_COUNT; step++) {
+            for (int pages = random.nextInt(3); pages > 0; pages--) lastCursor.nextPage(PAGE_SIZE);
+
+            CompiledQuery query = switch (random.nextInt(3)) {
+                case 0 -> narrow(menu, last, random);
+                case 1 -> widen(menu, last, random);
+                default -> freshQueries.get(step);
+            };
+            if (query.selectsSubsetOf(last)) narrowed++;
+            else if (last.selectsSubsetOf(query)) widened++;
+            //Built twice: one is paged to the end to compare, the other part-paged for the next step to build on.
+            //(Cursors from fromStart() would share what the first finds.)
+            SearchResultCursor checked = searchBuildingOn(menu, query, last, lastCursor);
+            SearchResultCursor cursor = searchBuildingOn(menu, query, last, lastCursor);
+            List<MenuItem> found = new ArrayList<>();
+            while (checked.hasMore()) found.addAll(checked.nextPage(PAGE_SIZE));
+            check(found.equals(matchesLoop(menu, query)), "Incremental search", query);
+            last = query;
+            lastCursor = cursor;
+        }
+        check(narrowed > 0 && widened > 0, "Incremental search (never narrowed or widened)", last);
+        System.out.printf("incremental: ok (%,d comparisons; %,d narrowed, %,d widened)%n", QUERY_COUNT, narrowed,
+                widened);
+    }
+
+    /**
+     * Checks every facet count equals the number of items the DreamMenuItem.matches() loop finds with that option
+     * chosen in place of its Filter's selection (or the Filter left out, for its 'I don't mind' value).
+     * <p>The Menu has more buns than AttributeMasks can index, so some items are counted by value.
+     */
+    private static void checkFacets() {
+        Menu menu = buildMenu();
+        List<MenuItem> bunItems = new ArrayList<>();
+        for (MenuItem menuItem : menu.getMenuItemsInOrder()) {
+            if (menuItem.getDreamMenuItem().getAllFilters().containsKey(Filter.BUN)) bunItems.add(menuItem);
+        }
+        for (int i = 0; i < EXTRA_BUN_COUNT; i++) {
+            MenuItem template = bunItems.get(i % bunItems.size());
+            Map<Filter, FilterValue> filters = new EnumMap<>(Filter.class);
+            filters.putAll(template.getDreamMenuItem().getAllFilters());
+            filters.put(Filter.BUN, new FilterValue.TextValue("Extra bun " + i));
+            menu.addItem(new MenuItem(template.getMenuItemIdentifier() + "-" + i, template.getMenuItemName(),
+                    template.getPrice(), template.getDescription(), new DreamMenuItem(filters)));
+        }
+
+        int comparisons = 0;
+        for (CompiledQuery query : randomQueries(menu).subList(0, FACET_QUERY_COUNT)) {
+            Map<Filter, Map<Object, Integer>> facetCounts = menu.getFacetCounts(query);
+            for (Filter filter : Filter.values()) {
+                Map<Object, Integer> counts = facetCounts.get(filter);
+                Set<Object> options = new HashSet<>(menu.getAllIngredientTypes(filter));
+                options.addAll(counts.keySet());
+                for (Object option : options) {
+                    int expected = matchesLoop(menu, withOption(menu, query, filter, option)).size();
+                    check(counts.getOrDefault(option, 0) == expected,
+                            "Facet count of " + filter + " '" + option + "'", query);
+                    comparisons++;
+                }
+            }
+        }
+        System.out.printf("facets: ok (%,d option counts)%n", comparisons);
+    }
+
+    /**
+     * Gets search criteria with one Filter's selection replaced by an option, as a facet count counts it.
+     * @param menu the Menu to be searched
+     * @param query the current selections
+     * @param filter the Filter
+     * @param option one of the Filter's options, as in Menu.getAllIngredientTypes()
+     * @return a new CompiledQuery, compiled for the Menu
+     */
+    private static CompiledQuery withOption(Menu menu, CompiledQuery query, Filter filter, Object option) {
+        Map<Filter, FilterValue> filters = new EnumMap<>(Filter.class);
+        filters.putAll(query.getCriteria().getAllFilters());
+        if (filter.allowsDontMindChoice() && option.equals(filter.getDontMindValue())) {
+            filters.remove(filter);
+        } else {
+            filters.put(filter, FilterValue.of(filter, option));
+        }
+        return CompiledQuery.compile(new DreamMenuItem(filters, query.getMinPrice(), query.getMaxPrice()),
+                menu.getDictionary());
+    }
+
+    /**
+     * Checks a MenuSnapshot of a parsed menu data file:
+     * <li>reads back every item as parsed, and finds the same matches for every criteria;
+     * <li>is current for the file until its last-modified time or size changes, including a change made while it
+     * was being parsed;
+     * <li>can't be read once a byte is changed or the end is cut off.
+     */
+    private static void checkSnapshot() {
+        Path file = null;
+        Path snapshot = null;
+        try {
+            file = writeMenuFile();
+            snapshot = Files.createTempFile("menu-self-check", ".snapshot");
+            MenuSnapshot.SourceStamp stamp = MenuSnapshot.SourceStamp.of(file);
+            Menu parsed = MenuParser.parseMapped(file).menu();
+            MenuSnapshot.write(parsed, stamp, snapshot);
+            checkState(MenuSnapshot.isCurrentFor(snapshot, file),
+                    "Snapshot isn't current for the file it was written from");
+            Menu read = MenuSnapshot.read(snapshot);
+
+            List<MenuItem> parsedItems = parsed.getMenuItemsInOrder();
+            List<MenuItem> readItems = read.getMenuItemsInOrder();
+            checkState(parsedItems.size() == readItems.size(), "Snapshot holds a different number of items");
+            for (int id = 0; id < parsedItems.size(); id++) {
+                MenuItem expected = parsedItems.get(id);
+                MenuItem actual = readItems.get(id);
+                checkState(expected.getMenuItemIdentifier().equals(actual.getMenuItemIdentifier())
+                        && expected.getMenuItemName().equals(actual.getMenuItemName())
+                        && expected.getPrice() == actual.getPrice()
+                        && expected.getDescription().equals(actual.getDescription())
+                        && expected.getDreamMenuItem().getAllFilters()
+                                .equals(actual.getDreamMenuItem().getAllFilters()),
+                        "Snapshot item " + id + " differs from the parsed item " + expected.getMenuItemIdentifier());
+            }
+            for (CompiledQuery query : randomQueries(parsed)) {
+                List<String> expected = identifiersOf(parsed.findMatch(query));
+                check(identifiersOf(read.findMatch(query)).equals(expected), "Snapshot findMatch", query);
+            }
+
+            //Stale once the file changes; a changed last-modified time alone is enough.
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2_000));
+            checkState(!MenuSnapshot.isCurrentFor(snapshot, file), "Snapshot is current for a modified file");
+            //Also stale if the change was saved after the file was stamped but before the snapshot was written.
+            Path edited = Files.createTempFile("menu-self-check", ".snapshot");
+            try {
+                MenuSnapshot.write(parsed, stamp, edited);
+                checkState(!MenuSnapshot.isCurrentFor(edited, file), "Snapshot is current for a file edited mid-parse");
+            } finally {
+                Files.deleteIfExists(edited);
+            }
+            Files.writeString(file, "");
+            checkState(!MenuSnapshot.isCurrentFor(snapshot, file), "Snapshot is current for a rewritten file");
+
+            byte[] contents = Files.readAllBytes(snapshot);
+            byte[] corrupted = contents.clone();
+            corrupted[corrupted.length / 2] ^= 1;
+            Files.write(snapshot, corrupted);
+            checkState(!canRead(snapshot), "Snapshot with a changed byte was read");
+            Files.write(snapshot, Arrays.copyOf(contents, contents.length - 1));
+            checkState(!canRead(snapshot), "Snapshot cut short was read");
+        } catch (IOException io) {
+            throw new AssertionError("Snapshot check files could not be written or read", io);
+        } finally {
+            if (file != null) file.toFile().delete();
+            if (snapshot != null) snapshot.toFile().delete();
+        }
+        System.out.println("snapshot: ok (" + QUERY_COUNT + " searches)");
+    }
+
+    /**
+     * Checks an OrderJournal in a temporary directory:
+     * <li>reads back every order appended, across segments, whole and by number;
+     * <li>refuses to be opened again while it's open;
+     * <li>once the last record is cut short, reads every order before it, and on opening writes the next order
+     * in its place, with its number;
+     * <li>likewise once a byte of the last record is changed, so its checksum doesn't match;
+     * <li>refuses to be opened, and leaves the segment untouched, once a byte of a record with more after it is
+     * changed.
+     */
+    private static void checkJournal() {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("order-journal-self-check");
+            List<OrderJournal.Entry> appended = new ArrayList<>();
+            try (OrderJournal journal = OrderJournal.open(directory, JOURNAL_SEGMENT_BYTES)) {
+                for (int i = 0; i < ORDER_COUNT; i++) appended.add(journal.append(checkOrder(i)));
+                checkState(!canOpen(directory), "Order journal was opened while already open");
+            }
+            checkState(OrderJournal.readAll(directory).equals(appended), "Order journal read back different orders");
+            for (OrderJournal.Entry entry : appended) {
+                checkState(OrderJournal.read(directory, entry.orderNumber()).equals(Optional.of(entry)),
+                        "Order journal read back a different order " + entry.orderNumber());
+            }
+            Path lastSegment = lastSegment(directory);
+            checkState(!lastSegment.getFileName().toString().endsWith("000000000001.journal"),
+                    "Order journal didn't roll over to a new segment");
+
+            //A record cut short, e.g. by a crash mid-write.
+            byte[] contents = Files.readAllBytes(lastSegment);
+            Files.write(lastSegment, Arrays.copyOf(contents, contents.length - 3));
+            checkRecovery(directory, appended);
+
+            //A record whose checksum doesn't match; its last byte is changed.
+            contents = Files.readAllBytes(lastSegment);
+            contents[contents.length - 1] ^= 1;
+            Files.write(lastSegment, contents);
+            checkRecovery(directory, appended);
+
+            //A record with more after it can't have been torn by a crash, so it isn't truncated away with them.
+            contents = Files.readAllBytes(lastSegment);
+            contents[JOURNAL_FIRST_PAYLOAD_BYTE] ^= 1;
+            Files.write(lastSegment, contents);
+            checkState(!canOpen(directory), "Order journal was opened with a damaged record before its end");
+            checkState(Arrays.equals(Files.readAllBytes(lastSegment), contents),
+                    "Order journal changed a segment with a damaged record before its end");
+        } catch (IOException io) {
+            throw new AssertionError("Journal check files could not be written or read", io);
+        } finally {
+            if (directory != null) {
+                for (File file : Objects.requireNonNull(directory.toFile().listFiles())) file.delete();
+                directory.toFile().delete();
+            }
+        }
+        System.out.println("journal: ok (" + ORDER_COUNT + " orders)");
+    }
+
+    /**
+     * Checks a journal whose last record was damaged reads every order before it, then reopens it, checks the
+     * next order appended takes the damaged record's number and place, and updates the orders expected.
+     * @param directory the journal's directory
+     * @param appended the orders appended so far, in order; the last is replaced by the newly appended one
+     * @throws IOException if the journal can't be read or written
+     */
+    private static void checkRecovery(Path directory, List<OrderJournal.Entry> appended) throws IOException {
+        appended.remove(appended.size() - 1);
+        checkState(OrderJournal.readAll(directory).equals(appended),
+                "Order journal didn't read every order before a damaged record");
+        OrderJournal.Entry next;
+        try (OrderJournal journal = OrderJournal.open(directory, JOURNAL_SEGMENT_BYTES)) {
+            next = journal.append(checkOrder(appended.size()));
+        }
+        checkState(next.orderNumber() == appended.size() + 1, "Order journal numbered the order after a damaged"
+                + " record " + next.orderNumber() + ", expected " + (appended.size() + 1));
+        appended.add(next);
+        checkState(OrderJournal.readAll(directory).equals(appended),
+                "Order journal didn't write the order after a damaged record in its place");
+    }
+
+    /**
+     * Identifies whether an OrderJournal can be opened for appending; closes it again if so.
+     * @param directory the journal's directory
+     * @return false if opening it throws an IOException
+     */
+    private static boolean canOpen(Path directory) {
+        try {
+            OrderJournal.open(directory).close();
+            return true;
+        } catch (IOException io) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds the segment of a journal holding its newest orders.
+     * @param directory the journal's directory
+     * @return path of the segment
+     * @throws IOException if the directory can't be listed
+     */
+    private static Path lastSegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal"))
+                    .max(Comparator.naturalOrder())
+                    .orElseThrow(() -> new AssertionError("Order journal has no segments"));
+        }
+    }
+
+    /**
+     * Creates an order for the journal check, each a little different from the last.
+     * @param i which order
+     * @return the Order
+     */
+    private static Order checkOrder(int i) {
+        List<MenuItem> items = new ArrayList<>();
+        for (int item = 0; item <= i % 3; item++) {
+            items.add(new MenuItem("id" + item, "Item " + item, 10 + item, "Description " + item,
+                    new DreamMenuItem(Map.of())));
+        }
+        return new Order("Customer " + i, "04" + (10_000_000 + i), i % 2 == 0 ? null : "No onions, é",
+                "Cheddar", i % 4 == 0, items);
+    }
+
+    /**
+     * Identifies whether MenuSnapshot.read() accepts a snapshot.
+     * @param snapshot path of the snapshot
+     * @return false if it throws an IOException
+     */
+    private static boolean canRead(Path snapshot) {
+        try {
+            MenuSnapshot.read(snapshot);
+            return true;
+        } catch (IOException io) {
+            return false;
+        }
+    }
+
+    /**
+     * Searches the Menu as MenuSearcher does, building on the previous search if the criteria have only narrowed
+     * or widened.
+     * @param menu the Menu to search
+     * @param query the compiled search criteria
+     * @param last the previous search's criteria
+     * @param lastCursor the previous search's cursor, however far it has been paged
+     * @return SearchResultCursor over the matching items
+     */
+    private static SearchResultCursor searchBuildingOn(Menu menu, CompiledQuery query, CompiledQuery last,
+                                                       SearchResultCursor lastCursor) {
+        if (query.selectsSubsetOf(last)) return menu.findMatchPagedAmong(query, lastCursor.possibleMatchIds());
+        if (last.selectsSubsetOf(query)) return menu.findMatchPagedIncluding(query, lastCursor.knownMatchIds());
+        return menu.findMatchPaged(query);
+    }
+
+    /**
+     * Narrows criteria: adds a Filter they don't constrain, or tightens their price range.
+     * @param menu the Menu to be searched
+     * @param query the criteria to narrow
+     * @param random the source of randomness
+     * @return the narrower criteria, compiled for the Menu
+     */
+    private static CompiledQuery narrow(Menu menu, CompiledQuery query, Random random) {
+        Map<Filter, Object> filters = new EnumMap<>(query.getCriteria().getAllFilters());
+        double minPrice = query.getMinPrice();
+        double maxPrice = query.getMaxPrice();
+        Filter filter = Filter.values()[random.nextInt(Filter.values().length)];
+        if (filters.containsKey(filter)) {
+            minPrice = Math.min(maxPrice, minPrice + 1 + random.nextInt(3));
+        } else {
+            filters.put(filter, randomValue(menu, filter, random));
+        }
+        return CompiledQuery.compile(new DreamMenuItem(FilterValue.ofAll(filters), minPrice, maxPrice),
+                menu.getDictionary());
+    }
+
+    /**
+     * Widens criteria: removes one of their Filters, or loosens their price range.
+     * @param menu the Menu to be searched
+     * @param query the criteria to widen
+     * @param random the source of randomness
+     * @return the wider criteria, compiled for the Menu
+     */
+    private static CompiledQuery widen(Menu menu, CompiledQuery query, Random random) {
+        Map<Filter, Object> filters = new EnumMap<>(query.getCriteria().getAllFilters());
+        double minPrice = query.getMinPrice();
+        double maxPrice = query.getMaxPrice();
+        if (filters.size() > 1 && random.nextBoolean()) {
+            List<Filter> constrained = new ArrayList<>(filters.keySet());
+            filters.remove(constrained.get(random.nextInt(constrained.size())));
+        } else {
+            minPrice = Math.max(0, minPrice - 1 - random.nextInt(3));
+            maxPrice += 1 + random.nextInt(3);
+        }
+        return CompiledQuery.compile(new DreamMenuItem(FilterValue.ofAll(filters), minPrice, maxPrice),
+                menu.getDictionary());
+    }
+
+    /**
+     * Throws if a check failed.
+     * @param passed the check's result
+     * @param engine name of the engine checked
+     * @param query the criteria it was checked on
+     * @throws AssertionError if passed is false
+     */
+    private static void check(boolean passed, String engine, CompiledQuery query) {
+        if (!passed) {
+            throw new AssertionError(engine + " disagrees with the DreamMenuItem.matches loop for "
+                    + query.getCriteria().getAllFilters() + ", $" + query.getMinPrice() + "-" + query.getMaxPrice());
+        }
+    }
+
+    /**
+     * Throws if a check of anything but search results failed.
+     * @param passed the check's result
+     * @param message what went wrong
+     * @throws AssertionError if passed is false
+     */
+    private static void checkState(boolean passed, String message) {
+        if (!passed) throw new AssertionError(message);
+    }
+
+    /**
+     * Finds the matches of a query by checking every item's DreamMenuItem by value: the reference the engines are
+     * checked against.
+     * @param menu the Menu
+     * @param query the compiled search criteria
+     * @return List of the matching MenuItems, in menu order
+     */
+    private static List<MenuItem> matchesLoop(Menu menu, CompiledQuery query) {
+        List<MenuItem> matching = new ArrayList<>();
+        for (MenuItem menuItem : menu.getMenuItemsInOrder()) {
+            if (menuItem.getDreamMenuItem().matches(query.getCriteria()) && query.priceInRange(menuItem.getPrice())) {
+                matching.add(menuItem);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Gets the item ids (positions in the Menu) of some of its items.
+     * @param menu the Menu
+     * @param items items on the Menu, in menu order
+     * @return a new BitSet of their ids
+     */
+    private static BitSet idsOf(Menu menu, List<MenuItem> items) {
+        BitSet ids = new BitSet();
+        List<MenuItem> inOrder = menu.getMenuItemsInOrder();
+        int id = 0;
+        for (MenuItem menuItem : items) {
+            while (inOrder.get(id) != menuItem) id++;
+            ids.set(id++);
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the identifiers of items, e.g. to compare items of different Menus.
+     * @param items the items
+     * @return List of their identifiers, in the same order
+     */
+    private static List<String> identifiersOf(List<MenuItem> items) {
+        List<String> identifiers = new ArrayList<>(items.size());
+        for (MenuItem menuItem : items) identifiers.add(menuItem.getMenuItemIdentifier());
+        return identifiers;
+    }
+
+    /**
+     * Writes a temporary menu data file of menu.txt's rows repeated up to ITEM_COUNT rows, each prefixed to keep
+     * its id unique.
+     * @return path of the new file; the caller deletes it
+     * @throws IOException if menu.txt can't be read or the file can't be written
+     */
+    private static Path writeMenuFile() throws IOException {
+        List<String> menuTxtLines = Files.readAllLines(Path.of(MENU_TXT_PATH));
+        List<String> rows = menuTxtLines.subList(1, menuTxtLines.size());
+        Path file = Files.createTempFile("menu-self-check", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(menuTxtLines.get(0));
+            writer.newLine();
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                writer.write(i / rows.size() + "-" + rows.get(i % rows.size()));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Builds the check menu by repeating menu.txt's items up to ITEM_COUNT.
+     * @return the Menu
+     */
+    private static Menu buildMenu() {
+        List<MenuItem> menuTxtItems = new ArrayList<>(MenuSearcher.loadMenu(MENU_TXT_PATH).getMenuItemsInOrder());
+        Menu menu = new Menu();
+        for (int i = 0; i < ITEM_COUNT; i++) menu.addItem(menuTxtItems.get(i % menuTxtItems.size()));
+        return menu;
+    }
+
+    /**
+     * Generates random search criteria from the options the Menu offers, as the GUI would send them: one to four
+     * Filters, each with a single value, a set of one or two values, or NONE where allowed, and a price range.
+     * <p>Now and then a free-text value is one no item holds.
+     * @param menu the Menu to be searched
+     * @return List of QUERY_COUNT CompiledQuery, compiled for the Menu
+     */
+    private static List<CompiledQuery> randomQueries(Menu menu) {
+        Random random = new Random(SEED);
+        List<CompiledQuery> queries = new ArrayList<>(QUERY_COUNT);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            Map<Filter, Object> filters = new EnumMap<>(Filter.class);
+            int filterCount = 1 + random.nextInt(4);
+            while (filters.size() < filterCount) {
+                Filter filter = Filter.values()[random.nextInt(Filter.values().length)];
+                filters.put(filter, randomValue(menu, filter, random));
+            }
+            int minPrice = random.nextInt(20);
+            queries.add(CompiledQuery.compile(
+                    new DreamMenuItem(FilterValue.ofAll(filters), minPrice, minPrice + 1 + random.nextInt(15)),
+                    menu.getDictionary()));
+        }
+        return queries;
+    }
+
+    /**
+     * Picks a random criteria value for a Filter from the options the Menu offers.
+     * @param menu the Menu to be searched
+     * @param filter the Filter
+     * @param random the source of randomness
+     * @return a Boolean, NONE, a single value, or a Set of one or two values
+     */
+    private static Object randomValue(Menu menu, Filter filter, Random random) {
+        if (filter.valuesCanBeRepresentedByBooleanWrapper()) return random.nextBoolean();
+        if (filter.allowsNoneChoice() && random.nextInt(5) == 0) return SpecialChoice.NONE;
+
+        List<Object> options = new ArrayList<>(menu.getAllIngredientTypes(filter));
+        options.remove(SpecialChoice.NONE);
+        if (filter.allowsDontMindChoice()) options.remove(filter.getDontMindValue());
+        if (!filter.hasEnumRepresentingItsValues() && random.nextInt(10) == 0) options.add(UNKNOWN_TEXT);
+        Object first = options.get(random.nextInt(options.size()));
+        if (filter == Filter.TYPE || filter == Filter.BUN || random.nextBoolean()) return first;
+        Object second = options.get(random.nextInt(options.size()));
+        return first.equals(second) ? Set.of(first) : Set.of(first, second);
+    }
+}
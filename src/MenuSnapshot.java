@@ -0,0 +1,409 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary copy of a parsed Menu, so later startups can skip parsing the menu data text.
+ * <p>Holds each item's attributes dictionary-coded: every String (identifiers, names, descriptions and free-text
+ * values) is stored once in a string table, and every distinct attribute value once in a value table (Enum values as
+ * ordinals or ordinal masks), each referred to by index; prices are primitive doubles. Loading decodes each distinct
+ * value once, and every item with it shares the one FilterValue. Descriptions aren't decoded at all: their UTF-8
+ * bytes are copied into the Menu's TextStore as they are. The Menu's indexes aren't stored: they're rebuilt as
+ * the items are added, which costs a fraction of parsing the text.
+ * <p>Records the size and last-modified time of the menu data file it was compiled from, so a snapshot is only used
+ * while that file is unchanged (see isCurrentFor()).
+ * <p>Layout, big-endian:
+ * <li>header: MAGIC, FORMAT_VERSION, the source file's last-modified millis and size, and a schema fingerprint
+ * (every Filter and its Enum's constants, in ordinal order), so a snapshot from different code isn't misread;
+ * <li>the string table: a count, then each String's UTF-8 length and bytes;
+ * <li>the value table: a count, then each distinct value of each Filter: the Filter's ordinal, the kind of value,
+ * and the value (a boolean, ordinal, ordinal mask, or string table indexes);
+ * <li>the items: a count, then per item its identifier, name and description indexes, price, and the number of
+ * Filters it has followed by the value table index of each.
+ * <li>a CRC-32 of everything before it.
+ */
+public final class MenuSnapshot {
+    // "OBMS": Overloaded Burgers Menu Snapshot.
+    private static final int MAGIC = 0x4F424D53;
+    // Incremented whenever the layout changes, so older snapshots are recompiled rather than misread.
+    private static final int FORMAT_VERSION = 1;
+    // Bytes of the header before the schema fingerprint: MAGIC, FORMAT_VERSION, last-modified and size.
+    private static final int FIXED_HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES * 2;
+
+    // Kinds of value, each written before the value.
+    private static final byte BOOLEAN = 0, ENUM = 1, ENUM_SET = 2, TEXT = 3, TEXT_SET = 4;
+
+    private static final Filter[] FILTERS = Filter.values();
+
+    /**
+     * Private constructor; static methods only.
+     */
+    private MenuSnapshot() {}
+
+    /**
+     * A menu data file's last-modified time and size, as a snapshot records them.
+     * <p>Read before the file is parsed, so an edit saved while it's being parsed leaves the snapshot stale rather
+     * than recording the edited file's details against the menu parsed before it.
+     * @param lastModifiedMillis the file's last-modified time, in milliseconds since the epoch
+     * @param size the file's size in bytes
+     */
+    public record SourceStamp(long lastModifiedMillis, long size) {
+        /**
+         * Reads a menu data file's stamp as it is now.
+         * @param source path of the menu data file; must exist
+         * @return SourceStamp
+         * @throws IOException if the file's details can't be read
+         */
+        public static SourceStamp of(Path source) throws IOException {
+            return new SourceStamp(Files.getLastModifiedTime(source).toMillis(), Files.size(source));
+        }
+    }
+
+    /**
+     * Writes a snapshot of a Menu parsed from a menu data file.
+     * <p>Writes to a temporary file first and moves it into place, so a reader never sees a partial snapshot.
+     * @param menu the parsed Menu
+     * @param source the stamp of the menu data file it was parsed from, read before parsing it
+     * @param snapshot path to write the snapshot to; replaced if it exists
+     * @throws IOException if the snapshot can't be written
+     * @throws IllegalArgumentException if an item holds a value no menu data file could have given it
+     */
+    public static void write(Menu menu, SourceStamp source, Path snapshot) throws IOException {
+        List<MenuItem> items = menu.getMenuItemsInOrder();
+        //Number the Strings, and each Filter's distinct values, in order of first use.
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<AttributeValue, Integer> valueIds = new HashMap<>();
+        List<AttributeValue> values = new ArrayList<>();
+        for (MenuItem menuItem : items) {
+            addString(menuItem.getMenuItemIdentifier(), stringIds, strings);
+            addString(menuItem.getMenuItemName(), stringIds, strings);
+            addString(menuItem.getDescription(), stringIds, strings);
+            menuItem.getDreamMenuItem().getAllFilters().forEach((filter, value) -> {
+                AttributeValue attributeValue = new AttributeValue(filter, value);
+                if (valueIds.putIfAbsent(attributeValue, values.size()) != null) return;
+                values.add(attributeValue);
+                if (value instanceof FilterValue.TextValue text) addString(text.value(), stringIds, strings);
+                if (value instanceof FilterValue.TextSetValue texts) {
+                    for (String text : texts.values()) addString(text, stringIds, strings);
+                }
+            });
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(source.lastModifiedMillis());
+        out.writeLong(source.size());
+        writeString(out, schemaFingerprint());
+
+        out.writeInt(strings.size());
+        for (String string : strings) writeString(out, string);
+
+        out.writeInt(values.size());
+        for (AttributeValue value : values) writeValue(out, value.filter(), value.value(), stringIds);
+
+        out.writeInt(items.size());
+        for (MenuItem menuItem : items) {
+            out.writeInt(stringIds.get(menuItem.getMenuItemIdentifier()));
+            out.writeInt(stringIds.get(menuItem.getMenuItemName()));
+            out.writeInt(stringIds.get(menuItem.getDescription()));
+            out.writeDouble(menuItem.getPrice());
+            Map<Filter, FilterValue> filterMap = menuItem.getDreamMenuItem().getAllFilters();
+            out.writeByte(filterMap.size());
+            for (Map.Entry<Filter, FilterValue> entry : filterMap.entrySet()) {
+                out.writeInt(valueIds.get(new AttributeValue(entry.getKey(), entry.getValue())));
+            }
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        byte[] contents = bytes.toByteArray();
+
+        Path temporary = Files.createTempFile(snapshot.toAbsolutePath().getParent(), "menu", ".snapshot.tmp");
+        try {
+            Files.write(temporary, contents);
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Identifies whether a snapshot exists and was compiled from a menu data file as it is now, by comparing the
+     * file's size and last-modified time with those recorded in the snapshot.
+     * <p>A snapshot is also current if the menu data file is missing, since there's nothing newer to load.
+     * <p>Reads only the snapshot's header; read() still checks the rest.
+     * @param snapshot path of the snapshot
+     * @param source path of the menu data file
+     * @return true if the snapshot can be used instead of parsing the file
+     */
+    public static boolean isCurrentFor(Path snapshot, Path source) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return false;
+            SourceStamp recorded = new SourceStamp(in.readLong(), in.readLong());
+            if (!Files.exists(source)) return true;
+            return recorded.equals(SourceStamp.of(source));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a snapshot back into a new Menu, with its items in their original order.
+     * @param snapshot path of the snapshot
+     * @return the new Menu
+     * @throws IOException if the snapshot can't be read, is corrupt (its checksum doesn't match), is of another
+     * format version, or was written for Filters or Enums other than this code's
+     */
+    public static Menu read(Path snapshot) throws IOException {
+        byte[] contents = Files.readAllBytes(snapshot);
+        if (contents.length < FIXED_HEADER_BYTES + Long.BYTES) throw new IOException("Menu snapshot is truncated");
+        ByteBuffer in = ByteBuffer.wrap(contents);
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, contents.length - Long.BYTES);
+        if (in.getLong(contents.length - Long.BYTES) != crc.getValue()) {
+            throw new IOException("Menu snapshot is corrupt: checksum mismatch");
+        }
+        if (in.getInt() != MAGIC) throw new IOException("Not a menu snapshot");
+        int version = in.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Menu snapshot is format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        in.getLong(); //source details; see isCurrentFor()
+        in.getLong();
+
+        try {
+            if (!readString(in).equals(schemaFingerprint())) {
+                throw new IOException("Menu snapshot was written for different filters or values");
+            }
+            StringTable strings = new StringTable(in);
+            TextStore textStore = new TextStore();
+
+            //Each Enum Filter's constants, by ordinal; looked up once rather than per value.
+            Object[][] enumConstants = new Object[FILTERS.length][];
+            for (Filter filter : FILTERS) {
+                if (filter.hasEnumRepresentingItsValues()) enumConstants[filter.ordinal()] = filter.getEnumValues().toArray();
+            }
+            //Decoded once each and shared by every item that has them, since FilterValues are immutable.
+            AttributeValue[] values = new AttributeValue[in.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                Filter filter = FILTERS[in.get()];
+                values[i] = new AttributeValue(filter, readValue(in, filter, strings, enumConstants[filter.ordinal()]));
+            }
+
+            Menu menu = new Menu();
+            int itemCount = in.getInt();
+            for (int i = 0; i < itemCount; i++) {
+                String identifier = strings.get(in.getInt());
+                String name = strings.get(in.getInt());
+                long description = strings.storeIn(textStore, in.getInt());
+                double price = in.getDouble();
+                Map<Filter, FilterValue> filterMap = new EnumMap<>(Filter.class);
+                for (int filterCount = in.get(); filterCount > 0; filterCount--) {
+                    AttributeValue value = values[in.getInt()];
+                    filterMap.put(value.filter(), value.value());
+                }
+                menu.addItem(new MenuItem(identifier, name, price, textStore, description,
+                        new DreamMenuItem(filterMap)));
+            }
+            if (in.remaining() != Long.BYTES) throw new IOException("Menu snapshot has unexpected trailing data");
+            return menu;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            //Only possible if the layout was misread, since the checksum matched.
+            throw new IOException("Menu snapshot could not be decoded: " + e, e);
+        }
+    }
+
+    /**
+     * The string table of a snapshot being read, whose Strings are decoded only when first needed, and
+     * descriptions not at all.
+     */
+    private static final class StringTable {
+        private final ByteBuffer in;
+        // Position of each String's UTF-8 bytes in the snapshot, and their length.
+        private final int[] positions;
+        private final int[] lengths;
+        // Each String once decoded, or null.
+        private final String[] strings;
+        // Each String's handle once added to the TextStore, or -1.
+        private final long[] textHandles;
+
+        /**
+         * Reads the string table's layout, leaving the input after it.
+         * @param in the snapshot, positioned at the string table
+         */
+        StringTable(ByteBuffer in) {
+            this.in = in;
+            int count = in.getInt();
+            this.positions = new int[count];
+            this.lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                lengths[i] = in.getInt();
+                positions[i] = in.position();
+                in.position(in.position() + lengths[i]);
+            }
+            this.strings = new String[count];
+            this.textHandles = new long[count];
+            Arrays.fill(textHandles, -1);
+        }
+
+        /**
+         * Gets a String, decoding it the first time.
+         * @param index its index in the table
+         * @return the String
+         */
+        String get(int index) {
+            if (strings[index] == null) {
+                strings[index] = new String(in.array(), in.arrayOffset() + positions[index], lengths[index],
+                        StandardCharsets.UTF_8);
+            }
+            return strings[index];
+        }
+
+        /**
+         * Adds a String's UTF-8 bytes to a TextStore as they are, the first time; items sharing it share the handle.
+         * @param textStore the TextStore
+         * @param index its index in the table
+         * @return its handle in the textStore
+         */
+        long storeIn(TextStore textStore, int index) {
+            if (textHandles[index] == -1) textHandles[index] = textStore.add(in, positions[index], lengths[index]);
+            return textHandles[index];
+        }
+    }
+
+    /**
+     * One Filter's value, as held by menu items; the unit of the snapshot's value table.
+     * @param filter the Filter
+     * @param value its value
+     */
+    private record AttributeValue(Filter filter, FilterValue value) {}
+
+    /**
+     * Writes one attribute value, preceded by its Filter's ordinal and its kind.
+     * @param out the output
+     * @param filter the Filter the value belongs to
+     * @param value the value
+     * @param stringIds the string table's index of each String
+     * @throws IOException if the output fails
+     * @throws IllegalArgumentException for a value a menu item can't hold, e.g. a 'NONE' search choice
+     */
+    private static void writeValue(DataOutputStream out, Filter filter, FilterValue value,
+                                   Map<String, Integer> stringIds) throws IOException {
+        out.writeByte(filter.ordinal());
+        if (value instanceof FilterValue.BooleanValue booleanValue) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(booleanValue.value());
+        } else if (value instanceof FilterValue.EnumValue enumValue && filter.isConstantOfItsEnum(enumValue.value())) {
+            out.writeByte(ENUM);
+            out.writeByte(enumValue.value().ordinal());
+        } else if (value instanceof FilterValue.EnumSetValue enumSetValue
+                && enumSetValue.values().stream().allMatch(filter::isConstantOfItsEnum)) {
+            out.writeByte(ENUM_SET);
+            out.writeLong(enumSetValue.ordinals());
+        } else if (value instanceof FilterValue.TextValue text) {
+            out.writeByte(TEXT);
+            out.writeInt(stringIds.get(text.value()));
+        } else if (value instanceof FilterValue.TextSetValue texts) {
+            out.writeByte(TEXT_SET);
+            out.writeInt(texts.values().size());
+            for (String text : texts.values()) out.writeInt(stringIds.get(text));
+        } else {
+            throw new IllegalArgumentException("Not a menu item value of " + filter + ": " + value);
+        }
+    }
+
+    /**
+     * Reads one attribute value written by writeValue(), after its Filter's ordinal.
+     * @param in the input
+     * @param filter the Filter the value belongs to
+     * @param strings the string table
+     * @param enumConstants the Filter's Enum constants by ordinal, or null if it has no Enum
+     * @return the value
+     * @throws IOException if the kind of value is unknown
+     */
+    private static FilterValue readValue(ByteBuffer in, Filter filter, StringTable strings, Object[] enumConstants)
+            throws IOException {
+        byte kind = in.get();
+        return switch (kind) {
+            case BOOLEAN -> FilterValue.BooleanValue.of(in.get() != 0);
+            case ENUM -> new FilterValue.EnumValue((Enum<?>) enumConstants[in.get()]);
+            case ENUM_SET -> {
+                List<Object> constants = new ArrayList<>();
+                for (long ordinals = in.getLong(); ordinals != 0; ordinals &= ordinals - 1) {
+                    constants.add(enumConstants[Long.numberOfTrailingZeros(ordinals)]);
+                }
+                yield FilterValue.EnumSetValue.of(constants);
+            }
+            case TEXT -> new FilterValue.TextValue(strings.get(in.getInt()));
+            case TEXT_SET -> {
+                Set<String> texts = new HashSet<>();
+                for (int count = in.getInt(); count > 0; count--) texts.add(strings.get(in.getInt()));
+                yield new FilterValue.TextSetValue(Set.copyOf(texts));
+            }
+            default -> throw new IOException("Unknown value kind " + kind + " for " + filter);
+        };
+    }
+
+    /**
+     * Describes the Filters and their Enums' constants, in ordinal order, which the snapshot's masks and ordinals
+     * depend on.
+     * @return the fingerprint
+     */
+    private static String schemaFingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        for (Filter filter : FILTERS) {
+            fingerprint.append(filter.name());
+            if (filter.hasEnumRepresentingItsValues()) {
+                for (Object constant : filter.getEnumValues()) fingerprint.append(',').append(((Enum<?>) constant).name());
+            }
+            fingerprint.append(';');
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Adds a String to the string table if it isn't there already.
+     * @param string the String
+     * @param stringIds each String's index, updated
+     * @param strings the table, updated
+     */
+    private static void addString(String string, Map<String, Integer> stringIds, List<String> strings) {
+        if (stringIds.putIfAbsent(string, strings.size()) == null) strings.add(string);
+    }
+
+    /**
+     * Writes a String as its UTF-8 length and bytes; unlike writeUTF(), not limited to 64 KB.
+     * @param out the output
+     * @param string the String
+     * @throws IOException if the output fails
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Reads a String written by writeString().
+     * @param in the input
+     * @return the String
+     */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return string;
+    }
+}
@@ -11,7 +11,8 @@ import java.util.List;
  *
  * Images created by ChatGPT5.
  */
-public final class OrderGui implements OrderingSystemListener, ResultsPanelListener, OrderCreationPanelListener {
+public final class OrderGui implements OrderingSystemListener, ResultsPanelListener, OrderCreationPanelListener,
+        FilterEntryPanelListener {
     private final JFrame frame;
     private final CardLayout topCardLayout = new CardLayout();
     private final JPanel topCardPanel = new JPanel(topCardLayout);
@@ -60,6 +61,7 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
     public OrderGui(Map<Filter, List<Object>> filterOptions) {
         //CREATE VIEW PANELS
         this.filterEntryPanel = new FilterEntryPanel(filterOptions);
+        this.filterEntryPanel.setFilterEntryPanelListener(this); //register as listener
 
         this.resultsPanel = new ResultsPanel();
         this.resultsPanel.setResultsPanelListener(this); //register as listener
@@ -140,7 +142,10 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
                         (int)(GUI_PREFERRED_SIZE.height / WELCOME_CARD_ROWS))
         );
         orderNow.setBorderPainted(false); //get rid of the default rectangular border
-        orderNow.addActionListener(e -> switchCard("mainFilterPanel"));
+        orderNow.addActionListener(e -> {
+            requestFacetCounts(); //show every option's count before the first selection
+            switchCard("mainFilterPanel");
+        });
 
 
         //                      *** LAYOUT MANAGEMENT ***
@@ -353,6 +358,34 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
     }
 
 
+    /**
+     * Collects the user's current, possibly incomplete, selections and asks the GuiListener for facet counts on them.
+     * <p>Nothing is validated: unselected filters are simply left out, and an invalid or empty price
+     * range is treated as no price limit.
+     */
+    private void requestFacetCounts() {
+        FilterSelections selections = filterEntryPanel.getFilterSelections();
+
+        double minPrice = 0;
+        double maxPrice = Double.MAX_VALUE;
+        if (InputValidators.isValidPrice(selections.minPrice()) && InputValidators.isValidPrice(selections.maxPrice())) {
+            double minPriceEntered = Double.parseDouble(selections.minPrice());
+            double maxPriceEntered = Double.parseDouble(selections.maxPrice());
+            //The fields start at 0.00 each; only limit the counts once a sensible range is entered.
+            if (maxPriceEntered > minPriceEntered) {
+                minPrice = minPriceEntered;
+                maxPrice = maxPriceEntered;
+            }
+        }
+
+        DreamMenuItem partialSelections =
+                new DreamMenuItem(buildFilterMapFromRecord(selections), minPrice, maxPrice);
+
+        for (GuiListener listener : listeners) {
+            listener.requestFacetCounts(partialSelections);
+        }
+    }
+
     /**
      * Private helper to translate FilterSelections Record to the required format for search by DreamMenuItem.
      * <p>Calls on its own helpers for tidiness.</p>
@@ -360,10 +393,10 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
      * Selections irrelevant to the type are also not added--type relevance informed by Filter Smart Enum.
      * @param selections FilterSelections Record of selections by user.
      * @return immutable and not-null Map containing all non-skipped selections,
-     * or SpecialChoice.NONE if they were deliberate NONE selections.
+     * or FilterValue.NONE if they were deliberate NONE selections.
      */
-    private Map<Filter, Object> buildFilterMapFromRecord(FilterSelections selections) {
-        Map<Filter, Object> filterMap = new HashMap<>();
+    private Map<Filter, FilterValue> buildFilterMapFromRecord(FilterSelections selections) {
+        Map<Filter, FilterValue> filterMap = new EnumMap<>(Filter.class);
 
         Type selectedType = selections.selectedType(); //local var to avoid isRelevant lookup
 
@@ -372,13 +405,11 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
                     (selectedType == Type.BURGER && filter.isRelevantForBurger()) ||
                             (selectedType == Type.SALAD && filter.isRelevantForSalad());
             if (isRelevant) {
-                Object value = getFilterValue(filter, selections);
-                if (value != null) {
-                    filterMap.put(filter, value);
-                }
+                FilterValue value = getFilterValue(filter, selections);
+                if (value != null) filterMap.put(filter, value);
             }
         }
-        return Map.copyOf(filterMap);
+        return Collections.unmodifiableMap(filterMap);
     }
 
     /**
@@ -409,23 +440,28 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
      * and unpack them from Collections if necessary.
      * @param filter the Filter being checked
      * @param selections the FilterSelections Record
-     * @return <li>null if it was intended to be skipped, <li>SpecialChoice.NONE if it was an intended NONE choice,
-     * <li>or the full Collection or original object if it didn't contain either special choice.
+     * @return <li>null if it was intended to be skipped, or nothing has been selected yet,
+     * <li>FilterValue.NONE if it was an intended NONE choice,
+     * <li>or the FilterValue of the full Collection or original object if it didn't contain either special choice.
+     * Free-text values are held as selected; one the menu no longer holds (e.g. after a reload) matches no item.
      */
-    private Object getFilterValue(Filter filter, FilterSelections selections) {
+    private FilterValue getFilterValue(Filter filter, FilterSelections selections) {
         Object value = getRawFilterValue(filter, selections);
         if (value == null) return null;
 
         if (value instanceof Collection<?> collectedValues) {
+            //Nothing selected yet; only possible before a search is validated (e.g. for facet counts).
+            if (collectedValues.isEmpty()) return null;
+
             if (filter.allowsDontMindChoice() && collectedValues.contains(filter.getDontMindValue())) {
                 return null; //Don't filter based on this.
             }
 
             if (filter.allowsNoneChoice() && collectedValues.contains(SpecialChoice.NONE)) {
-                return SpecialChoice.NONE;
+                return FilterValue.NONE;
             }
 
-            return collectedValues; //Obviously a normal selection--return it as is
+            return FilterValue.of(filter, collectedValues); //Obviously a normal selection--return it as is
         } else {
             //Now do non-collection objects--i.e. single choice-only selectors
             if (filter.allowsDontMindChoice() && value.equals(filter.getDontMindValue())) {
@@ -433,10 +469,10 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
             }
 
             if  (filter.allowsNoneChoice() && value.equals(SpecialChoice.NONE)) {
-                return SpecialChoice.NONE;
+                return FilterValue.NONE;
             }
 
-            return value; //obviously a normal selection--return it.
+            return FilterValue.of(filter, value); //obviously a normal selection--return it.
         }
     }
 
@@ -471,27 +507,74 @@ public final class OrderGui implements OrderingSystemListener, ResultsPanelListe
     public void addGuiListener(GuiListener listener) {this.listeners.add(listener);}
 
     /**
-     * Shows the search results in the ResultsPanel and switches to that view.
-     * @param matches a List of the MenuItems that matched.
+     * Shows the first page of search results in the ResultsPanel and switches to that view.
+     * @param firstPage a List of the first MenuItems that matched.
+     * @param moreAvailable true if there are more matches to page through
      */
     @Override
-    public void onSearchResults(List<MenuItem> matches) {
-        resultsPanel.displayItems(matches, "You've matched! Here are your results:");
+    public void onSearchResults(List<MenuItem> firstPage, boolean moreAvailable) {
+        resultsPanel.displayItems(firstPage, "You've matched! Here are your results:", moreAvailable);
         switchCard("resultsPanel");
     }
 
+    /**
+     * Adds the next page of search results to the ResultsPanel.
+     * @param page a List of the next MenuItems that matched
+     * @param moreAvailable true if there are more matches to page through
+     */
+    @Override
+    public void onMoreSearchResults(List<MenuItem> page, boolean moreAvailable) {
+        resultsPanel.appendItems(page, moreAvailable);
+    }
+
+    /**
+     * Passes the ResultsPanel's request for more results on to the GuiListener (currently MenuSearcher).
+     */
+    @Override
+    public void onMoreResultsWanted() {
+        for (GuiListener listener : listeners) {
+            listener.requestMoreResults();
+        }
+    }
+
     /**
      * Switches to the ResultsPanel view.
-     * Informs the user that no matches were found and shows the full menu as a default fallback.
-     * @param fullMenu List of all MenuItems
+     * Informs the user that no matches were found and shows the closest alternatives as a default fallback.
+     * @param nearestMatches List of the closest MenuItems, best first
      */
     @Override
-    public void onNoMatchesFound(List<MenuItem> fullMenu) {
-        String title = "Sorry, no matches were found. Here is our full menu:";
-        resultsPanel.displayItems(fullMenu, title);
+    public void onNoMatchesFound(List<MenuItem> nearestMatches) {
+        String title = "Sorry, no matches were found. Here are our closest alternatives:";
+        resultsPanel.displayItems(nearestMatches, title);
         switchCard("resultsPanel");
     }
 
+    /**
+     * Passes the facet counts for the current selections to the filterEntryPanel to show beside each option.
+     * @param facetCounts Map of Filter to a Map of each option to its matching-item count
+     */
+    @Override
+    public void onFacetCounts(Map<Filter, Map<Object, Integer>> facetCounts) {
+        filterEntryPanel.showFacetCounts(facetCounts);
+    }
+
+    /**
+     * Passes the reloaded menu's filter options to the filterEntryPanel, which refreshes its selectors in place.
+     * @param filterOptions Map of Filter to the List of options to present for it
+     */
+    @Override
+    public void onMenuReloaded(Map<Filter, List<Object>> filterOptions) {
+        filterEntryPanel.setFilterOptions(filterOptions);
+    }
+
+    /**
+     * Requests fresh facet counts whenever the user changes a selection on the filterEntryPanel.
+     */
+    @Override
+    public void onSelectionsChanged() {
+        requestFacetCounts();
+    }
+
     /**
      * Clears all selections on the filterEntryPanel, then switches to the that view.
      */
@@ -0,0 +1,586 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of submitted orders, in place of a text file per order.
+ * <p>Orders are appended as records to one segment file at a time, so saving an order is one write and one sync
+ * of an open file, rather than probing for an unused file name and creating a file. Once a segment reaches
+ * maxSegmentBytes, the journal rolls over to a new one.
+ * <p>Orders are numbered from 1 in the order they were saved. Each segment is named after the number of its first
+ * order (e.g. orders-000000000001.journal), so an order is found by reading just the segment that holds it.
+ * <p>Layout of a segment, big-endian:
+ * <li>header: MAGIC and FORMAT_VERSION;
+ * <li>records: each the length of its payload, a CRC-32 of the payload, then the payload: the time the order was
+ * placed, the customer's name and phone number, customisations, cheese, takeaway, and each item's identifier and
+ * name. Strings are UTF-8, preceded by their length (-1 for null).
+ * <p>A record cut short or corrupted ends its segment: readers stop before it. A crash mid-write can only damage
+ * the last record, so opening the journal truncates the last segment there if the damaged record runs to its end,
+ * and the next order is written in its place. A damaged record with more after it can't be from a crash, so open()
+ * fails and leaves the segment as it is rather than discarding the orders after it.
+ * <p>Only one OrderJournal at a time may append to a directory: open() takes an exclusive lock on its LOCK_FILE,
+ * held until close(), and fails if another process (or another OrderJournal in this one) holds it. Reading
+ * doesn't lock, so orders can be printed while the ordering system runs.
+ * <p>Renders orders in the same text format as the order files on demand; see Entry.toOrderText(), and main() to
+ * print them from the command line.
+ * <p>Thread-safe.
+ */
+public final class OrderJournal implements Closeable {
+    /**
+     * Directory the ordering system keeps its journal in.
+     */
+    public static final String DEFAULT_DIRECTORY = "./orders";
+
+    // "OBOJ": Overloaded Burgers Order Journal.
+    private static final int MAGIC = 0x4F424F4A;
+    // Incremented whenever the layout changes, so older segments are rejected rather than misread.
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    // Bytes before each record's payload: its length and CRC-32.
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES * 2;
+    // Largest payload a reader accepts; anything larger can only be a corrupt length.
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    // Default size at which the journal rolls over to a new segment.
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 16L << 20;
+
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    // File in the journal's directory that an open journal holds the lock of.
+    private static final String LOCK_FILE = "journal.lock";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    // The LOCK_FILE, locked for as long as this journal is open.
+    private final FileChannel lockFile;
+    // The segment being appended to.
+    private FileChannel segment;
+    // Number the next order appended will get.
+    private long nextOrderNumber;
+
+    /**
+     * One order as held in the journal.
+     * @param orderNumber the order's number, counting from 1
+     * @param placedAtMillis when the order was saved, in milliseconds since the epoch
+     * @param name the customer's name
+     * @param phoneNoAsString the customer's phone number
+     * @param customisations the customer's customisations, or null
+     * @param selectedCheese the customer's cheese preference
+     * @param takeaway true if takeaway
+     * @param items immutable List of the items ordered
+     */
+    public record Entry(long orderNumber, long placedAtMillis, String name, String phoneNoAsString,
+                        String customisations, String selectedCheese, boolean takeaway, List<Item> items) {
+
+        /**
+         * One item of an order, as much of it as the order text shows.
+         * @param identifier the MenuItem's identifier
+         * @param name the MenuItem's name
+         */
+        public record Item(String identifier, String name) {}
+
+        /**
+         * Creates an Entry holding an Order's details.
+         * @param orderNumber the order's number
+         * @param placedAtMillis when the order was placed
+         * @param order the Order
+         * @return the new Entry
+         */
+        public static Entry of(long orderNumber, long placedAtMillis, Order order) {
+            List<Item> items = new ArrayList<>(order.menuItems().size());
+            for (MenuItem menuItem : order.menuItems()) {
+                items.add(new Item(menuItem.getMenuItemIdentifier(), menuItem.getMenuItemName()));
+            }
+            return new Entry(orderNumber, placedAtMillis, order.name(), order.phoneNoAsString(),
+                    order.customisations(), order.selectedCheese(), order.takeaway(), List.copyOf(items));
+        }
+
+        /**
+         * Renders the order as the text written to an order file.
+         * <p>Adapted from Ariel Halperin, COSC120 A1 orderStringToWriteOut()
+         * @return a String of the customer's order.
+         */
+        public String toOrderText() {
+            //Adaptation if the customer is making multiple orders
+            StringJoiner itemStrings = new StringJoiner("\n");
+            for (Item item : items) {
+                itemStrings.add("\tItem: " + item.name() + (" (" + item.identifier() + ")"));
+            }
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("Order details:\n");
+            sb.append("\tName: ").append(name)
+                    .append(" (").append(phoneNoAsString).append(")\n");
+            sb.append(itemStrings).append("\n\n");
+            sb.append("Customisation:");
+            //Don't add an extra blank line if nothing was written in the customisations box.
+            if (customisations != null && !customisations.isBlank()) {
+                sb.append("\n").append(customisations);
+            }
+            sb.append("\n\n\n");
+            sb.append("Selected Cheese: ").append(selectedCheese).append("\n\n\n");
+            sb.append("Please make this order to ").append(takeaway ? "takeaway" : "have here").append(".");
+
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Creates an OrderJournal; use open().
+     * @param directory the journal's directory
+     * @param maxSegmentBytes size at which to roll over to a new segment
+     * @param lockFile the directory's LOCK_FILE, locked
+     */
+    private OrderJournal(Path directory, long maxSegmentBytes, FileChannel lockFile) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * Opens the journal in a directory for appending, rolling over at DEFAULT_MAX_SEGMENT_BYTES.
+     * @param directory the journal's directory; created if it doesn't exist
+     * @return the open OrderJournal
+     * @throws IOException if the directory or its last segment can't be read or written, or the journal is
+     * already open
+     */
+    public static OrderJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the journal in a directory for appending.
+     * <p>Carries on from its last segment, truncating a record cut short or corrupted at its end.
+     * @param directory the journal's directory; created if it doesn't exist
+     * @param maxSegmentBytes size at which to roll over to a new segment; a segment holds at least one order
+     * @return the open OrderJournal
+     * @throws IOException if the directory or its last segment can't be read or written, the last segment has a
+     * damaged record before its end, or the journal is already open
+     */
+    public static OrderJournal open(Path directory, long maxSegmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel lockFile = lock(directory);
+        try {
+            return open(new OrderJournal(directory, maxSegmentBytes, lockFile));
+        } catch (IOException | RuntimeException e) {
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a journal, with its directory locked, for appending; see open(Path, long).
+     * @param journal the new OrderJournal
+     * @return the journal, open
+     * @throws IOException if its last segment can't be read or written, or has a damaged record before its end
+     */
+    private static OrderJournal open(OrderJournal journal) throws IOException {
+        Path directory = journal.directory;
+        List<Long> firstOrderNumbers = segmentFirstOrderNumbers(directory);
+        if (firstOrderNumbers.isEmpty()) {
+            journal.segment = createSegment(directory, 1);
+            journal.nextOrderNumber = 1;
+        } else {
+            long firstOrderNumber = firstOrderNumbers.get(firstOrderNumbers.size() - 1);
+            FileChannel channel = FileChannel.open(segmentPath(directory, firstOrderNumber),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            List<Entry> entries = new ArrayList<>();
+            try {
+                //A crash just after creating the segment can leave it without a whole header.
+                if (channel.size() < HEADER_BYTES) writeHeader(channel.truncate(0));
+                long end = readSegment(channel, firstOrderNumber, entries, true);
+                channel.truncate(end);
+                channel.position(end);
+            } catch (IOException io) {
+                channel.close();
+                throw io;
+            }
+            journal.segment = channel;
+            journal.nextOrderNumber = firstOrderNumber + entries.size();
+        }
+        return journal;
+    }
+
+    /**
+     * Appends an order to the journal, and syncs it to the disk before returning.
+     * <p>Rolls over to a new segment first if the order would take the current one past maxSegmentBytes.
+     * @param order the Order
+     * @return the Entry as journaled, with its order number
+     * @throws IOException if the order can't be written
+     */
+    public synchronized Entry append(Order order) throws IOException {
+        Entry entry = Entry.of(nextOrderNumber, System.currentTimeMillis(), order);
+        byte[] payload = encode(entry);
+        if (payload.length > MAX_PAYLOAD_BYTES) throw new IOException("Order is too large to journal");
+
+        if (segment.size() > HEADER_BYTES && segment.size() + RECORD_HEADER_BYTES + payload.length > maxSegmentBytes) {
+            //The new segment is created before the full one is closed, so if it can't be, this one carries on
+            //being appended to and the rollover is tried again with the next order.
+            FileChannel full = segment;
+            segment = createSegment(directory, nextOrderNumber);
+            full.close();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        writeFully(segment, record);
+        segment.force(false);
+        nextOrderNumber++;
+        return entry;
+    }
+
+    /**
+     * Closes the segment being appended to, and releases the journal's lock.
+     * @throws IOException if it can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            segment.close();
+        } finally {
+            lockFile.close();
+        }
+    }
+
+    /**
+     * Reads every order in a journal, oldest first.
+     * @param directory the journal's directory
+     * @return immutable List of the Entries; empty if there's no journal
+     * @throws IOException if a segment can't be read or is of another format version
+     */
+    public static List<Entry> readAll(Path directory) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return List.of();
+        for (long firstOrderNumber : segmentFirstOrderNumbers(directory)) {
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, firstOrderNumber))) {
+                readSegment(channel, firstOrderNumber, entries, false);
+            }
+        }
+        return List.copyOf(entries);
+    }
+
+    /**
+     * Reads one order from a journal, reading only the segment that holds it.
+     * @param directory the journal's directory
+     * @param orderNumber the order's number
+     * @return the Entry, or empty if there's no such order
+     * @throws IOException if the segment can't be read or is of another format version
+     */
+    public static Optional<Entry> read(Path directory, long orderNumber) throws IOException {
+        if (!Files.isDirectory(directory)) return Optional.empty();
+        long holdingSegment = -1;
+        for (long firstOrderNumber : segmentFirstOrderNumbers(directory)) {
+            if (firstOrderNumber <= orderNumber) holdingSegment = firstOrderNumber;
+        }
+        if (holdingSegment == -1) return Optional.empty();
+
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, holdingSegment))) {
+            readSegment(channel, holdingSegment, entries, false);
+        }
+        int index = (int) (orderNumber - holdingSegment);
+        return index < entries.size() ? Optional.of(entries.get(index)) : Optional.empty();
+    }
+
+    /**
+     * Prints orders from the journal in DEFAULT_DIRECTORY, as the text of their order files.
+     * <p>Run from the project root with:
+     * <li>java OrderJournal--every order;
+     * <li>java OrderJournal 12 15--orders 12 and 15.
+     * @param args order numbers, or none for every order
+     */
+    public static void main(String[] args) {
+        Path directory = Path.of(DEFAULT_DIRECTORY);
+        try {
+            List<Entry> entries = new ArrayList<>();
+            if (args.length == 0) entries.addAll(readAll(directory));
+            for (String arg : args) {
+                Optional<Entry> entry = read(directory, Long.parseLong(arg));
+                if (entry.isPresent()) entries.add(entry.get());
+                else System.out.println("There is no order " + arg + " in " + directory + ".\n");
+            }
+            for (Entry entry : entries) {
+                System.out.println("Order " + entry.orderNumber() + ", placed "
+                        + Instant.ofEpochMilli(entry.placedAtMillis()) + ":");
+                System.out.println(entry.toOrderText() + "\n");
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Expected order numbers, but got: " + String.join(" ", args));
+            System.exit(1);
+        } catch (IOException io) {
+            System.out.println("Order journal could not be read: " + io.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Locks a journal's directory for appending, by taking an exclusive lock on its LOCK_FILE.
+     * <p>The lock is the operating system's, so it's released if the process dies without closing the journal.
+     * @param directory the journal's directory
+     * @return the LOCK_FILE, locked until it's closed
+     * @throws IOException if the lock is held elsewhere, or the LOCK_FILE can't be opened
+     */
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel lockFile = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockFile.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; //Held by another OrderJournal in this process.
+        } catch (IOException io) {
+            lockFile.close();
+            throw io;
+        }
+        if (lock == null) {
+            lockFile.close();
+            throw new IOException("The order journal in " + directory + " is already open for appending elsewhere");
+        }
+        return lockFile;
+    }
+
+    /**
+     * Creates a new segment, with its header written.
+     * <p>If the header can't be written, the file is deleted again, so it can be created afresh later.
+     * @param directory the journal's directory
+     * @param firstOrderNumber number of the segment's first order
+     * @return the segment, positioned after its header
+     * @throws IOException if it can't be created
+     */
+    private static FileChannel createSegment(Path directory, long firstOrderNumber) throws IOException {
+        Path path = segmentPath(directory, firstOrderNumber);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeHeader(channel);
+        } catch (IOException io) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw io;
+        }
+        return channel;
+    }
+
+    /**
+     * Writes a segment's header at its position, and syncs it to the disk with the new file's metadata.
+     * @param channel the segment
+     * @throws IOException if it can't be written
+     */
+    private static void writeHeader(FileChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION).flip());
+        channel.force(true);
+    }
+
+    /**
+     * Reads a segment's orders, stopping at the end or at the first record cut short or corrupted.
+     * <p>A damaged record is the torn tail of a crash mid-write if it claims to run to the end of the segment or
+     * past it; appends write whole records in order, so no other record can be torn.
+     * @param channel the segment
+     * @param firstOrderNumber number of the segment's first order
+     * @param entries List the Entries are added to, in order
+     * @param failBeforeEnd true to throw at a damaged record that isn't the torn tail, rather than stop there
+     * @return position after the last whole record
+     * @throws IOException if the segment can't be read, or its header is wrong, or failBeforeEnd and a damaged
+     * record isn't the torn tail
+     */
+    private static long readSegment(FileChannel channel, long firstOrderNumber, List<Entry> entries,
+                                    boolean failBeforeEnd) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            throw new IOException("Order journal segment " + firstOrderNumber + " is missing its header");
+        }
+        ByteBuffer header = readAt(channel, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) throw new IOException("Not an order journal segment: " + firstOrderNumber);
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Order journal segment " + firstOrderNumber + " is format version " + version
+                    + ", expected " + FORMAT_VERSION);
+        }
+
+        long position = HEADER_BYTES;
+        long orderNumber = firstOrderNumber;
+        while (size - position >= RECORD_HEADER_BYTES) {
+            ByteBuffer recordHeader = readAt(channel, position, RECORD_HEADER_BYTES);
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+            Entry entry = null;
+            if (length >= 0 && length <= MAX_PAYLOAD_BYTES && size - position - RECORD_HEADER_BYTES >= length) {
+                ByteBuffer payload = readAt(channel, position + RECORD_HEADER_BYTES, length);
+                CRC32 crc = new CRC32();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() == checksum) {
+                    try {
+                        entry = decode(orderNumber, payload);
+                    } catch (RuntimeException e) {
+                        //Only possible if the payload was misread, since the checksum matched.
+                    }
+                }
+            }
+            if (entry == null) {
+                boolean isTornTail = length >= 0 && position + RECORD_HEADER_BYTES + length >= size;
+                if (failBeforeEnd && !isTornTail) {
+                    throw new IOException("Order journal segment " + firstOrderNumber + " has a damaged record"
+                            + " (order " + orderNumber + ", at byte " + position + ") with more records after it;"
+                            + " left as it is, since truncating it would lose them");
+                }
+                break;
+            }
+            entries.add(entry);
+            position += RECORD_HEADER_BYTES + length;
+            orderNumber++;
+        }
+        return position;
+    }
+
+    /**
+     * Encodes an Entry as a record payload; its order number isn't included, as it's implied by its position.
+     * @param entry the Entry
+     * @return the payload
+     */
+    private static byte[] encode(Entry entry) {
+        List<byte[]> strings = new ArrayList<>();
+        strings.add(utf8(entry.name()));
+        strings.add(utf8(entry.phoneNoAsString()));
+        strings.add(utf8(entry.customisations()));
+        strings.add(utf8(entry.selectedCheese()));
+        for (Entry.Item item : entry.items()) {
+            strings.add(utf8(item.identifier()));
+            strings.add(utf8(item.name()));
+        }
+        int size = Long.BYTES + 1 + Integer.BYTES;
+        for (byte[] string : strings) size += Integer.BYTES + (string == null ? 0 : string.length);
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putLong(entry.placedAtMillis());
+        for (int i = 0; i < 4; i++) putString(payload, strings.get(i));
+        payload.put((byte) (entry.takeaway() ? 1 : 0));
+        payload.putInt(entry.items().size());
+        for (int i = 4; i < strings.size(); i++) putString(payload, strings.get(i));
+        return payload.array();
+    }
+
+    /**
+     * Decodes a record payload written by encode().
+     * @param orderNumber the order's number
+     * @param payload the payload
+     * @return the Entry
+     * @throws java.nio.BufferUnderflowException if the payload is too short
+     */
+    private static Entry decode(long orderNumber, ByteBuffer payload) {
+        long placedAtMillis = payload.getLong();
+        String name = getString(payload);
+        String phoneNoAsString = getString(payload);
+        String customisations = getString(payload);
+        String selectedCheese = getString(payload);
+        boolean takeaway = payload.get() != 0;
+        int itemCount = payload.getInt();
+        List<Entry.Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) items.add(new Entry.Item(getString(payload), getString(payload)));
+        return new Entry(orderNumber, placedAtMillis, name, phoneNoAsString, customisations, selectedCheese,
+                takeaway, List.copyOf(items));
+    }
+
+    /**
+     * Encodes a String as UTF-8.
+     * @param string the String, or null
+     * @return its bytes, or null
+     */
+    private static byte[] utf8(String string) {
+        return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a String's UTF-8 bytes, preceded by their length, or -1 for null.
+     * @param payload the output
+     * @param utf8 the bytes, or null
+     */
+    private static void putString(ByteBuffer payload, byte[] utf8) {
+        if (utf8 == null) {
+            payload.putInt(-1);
+        } else {
+            payload.putInt(utf8.length).put(utf8);
+        }
+    }
+
+    /**
+     * Reads a String written by putString().
+     * @param payload the input
+     * @return the String, or null
+     */
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length == -1) return null;
+        byte[] utf8 = new byte[length];
+        payload.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lists the first order numbers of a journal's segments, in order.
+     * @param directory the journal's directory
+     * @return sorted List of first order numbers
+     * @throws IOException if the directory can't be listed
+     */
+    private static List<Long> segmentFirstOrderNumbers(Path directory) throws IOException {
+        List<Long> firstOrderNumbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) continue;
+                try {
+                    firstOrderNumbers.add(Long.parseLong(
+                            fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    //Not a segment; ignore it.
+                }
+            }
+        }
+        Collections.sort(firstOrderNumbers);
+        return firstOrderNumbers;
+    }
+
+    /**
+     * Gets the path of a segment.
+     * @param directory the journal's directory
+     * @param firstOrderNumber number of the segment's first order
+     * @return the path
+     */
+    private static Path segmentPath(Path directory, long firstOrderNumber) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, firstOrderNumber, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Reads bytes from a position in a file.
+     * @param channel the file
+     * @param position where to read from
+     * @param length number of bytes; must all be there
+     * @return a buffer of the bytes, ready to read
+     * @throws IOException if they can't be read
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+        return bytes.flip();
+    }
+
+    /**
+     * Writes every byte of a buffer at a file's position.
+     * @param channel the file
+     * @param bytes the buffer
+     * @throws IOException if they can't be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) channel.write(bytes);
+    }
+}
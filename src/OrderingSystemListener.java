@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.Map;
 
 /**
  * Defines the contract for the ordering system listener (i.e. OrderGui).
@@ -8,19 +9,48 @@ import java.util.List;
 public interface OrderingSystemListener {
 
     /**
-     * Call when a search successfully finds matching menu items.
-     * <p>Listener is expected to display the provided list of matches to the user, or call an appropriate view to do so.
-     * @param matches List of MenuItems that matched the user search criteria. List will never be null or empty.
+     * Call when a search successfully finds matching menu items; delivers the first page of them.
+     * <p>Listener is expected to display the provided page of matches to the user, or call an appropriate view to
+     * do so, and ask for more pages through GuiListener.requestMoreResults() as the user wants them.
+     * @param firstPage List of the first MenuItems that matched the user search criteria.
+     *                  List will never be null or empty.
+     * @param moreAvailable true if there are more matches to request
      */
-    void onSearchResults(List<MenuItem> matches);
+    void onSearchResults(List<MenuItem> firstPage, boolean moreAvailable);
+
+    /**
+     * Call with the next page of matches for the latest search, after GuiListener.requestMoreResults().
+     * <p>Listener is expected to add them after the matches already displayed.
+     * @param page List of the next matching MenuItems. List will not be null.
+     * @param moreAvailable true if there are more matches to request
+     */
+    void onMoreSearchResults(List<MenuItem> page, boolean moreAvailable);
 
     /**
      * Call when a search completes with no matches.
      * <p>Listener is expected to inform the user that their search found no matches and should display
-     * the provided full menu from which to seelct
-     * @param fullMenu a List containing every MenuItem on the Menu. List will not be null.
+     * the provided closest alternatives from which to select
+     * @param nearestMatches a short List of the MenuItems that came closest to matching, best first.
+     *                       List will not be null.
+     */
+    void onNoMatchesFound(List<MenuItem> nearestMatches);
+
+    /**
+     * Call when facet counts for the user's current selections are ready.
+     * <p>Listener is expected to show each option's count next to it, or call an appropriate view to do so.
+     * @param facetCounts Map of Filter to a Map of each option to the number of menu items that would match if
+     *                    it were chosen. Options matching nothing may be missing. Will not be null.
+     */
+    void onFacetCounts(Map<Filter, Map<Object, Integer>> facetCounts);
+
+    /**
+     * Call on the EDT once the menu has been reloaded (e.g. after the menu file changed), with its filter options.
+     * <p>Listener is expected to offer the new options in its selectors, keeping the user's selections that are
+     * still available. Searches from now on run on the reloaded menu.
+     * @param filterOptions Map of Filter to an immutable List of the options to present for it, as when the
+     *                      GUI was created. Will not be null.
      */
-    void onNoMatchesFound(List<MenuItem> fullMenu);
+    void onMenuReloaded(Map<Filter, List<Object>> filterOptions);
 
     /**
      * Call when an order has been successfully submitted and saved.
@@ -0,0 +1,203 @@
+import java.util.*;
+
+/**
+ * Inverted index over a Menu's items, maintained as items are added.
+ * <p>Items are identified by their position in the Menu (their 'item id'). For every (Filter, value) pair
+ * there is a posting bitmap of the ids of items holding that value, using the same bit indexes as
+ * AttributeMasks. Each Filter also has an 'absent' posting of items that would satisfy a 'NONE' search.
+ * <p>A search narrows its candidates by intersecting (AND) the postings of each constrained Filter, after
+ * combining (OR) the postings of the values chosen for that Filter, so its cost depends on how many items
+ * match rather than menu size.
+ */
+public final class PostingIndex {
+    // postings[filter ordinal][bit index]; created on first use since most values never occur.
+    private final BitSet[][] postings = new BitSet[AttributeMasks.MASK_COUNT][];
+    // absent[filter ordinal]; items with nothing (or only false) for that Filter.
+    private final BitSet[] absent = new BitSet[AttributeMasks.MASK_COUNT];
+    // Items whose attributes couldn't be encoded; always returned as candidates for the caller to check.
+    private final BitSet unindexed = new BitSet();
+    // Every item id held by the index.
+    private final BitSet allItems = new BitSet();
+    // The Menu's Dictionary, to decode free-text values' bits by.
+    private final AttributeMasks.Dictionary dictionary;
+
+    /**
+     * Creates an empty PostingIndex.
+     * @param dictionary the AttributeMasks.Dictionary the Menu's items are encoded with
+     */
+    public PostingIndex(AttributeMasks.Dictionary dictionary) {
+        this.dictionary = dictionary;
+        for (int i = 0; i < AttributeMasks.MASK_COUNT; i++) {
+            postings[i] = new BitSet[AttributeMasks.MAX_VALUES_PER_FILTER];
+            absent[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Adds an item's attributes to the index.
+     * @param itemId the item's id (its position in the Menu)
+     * @param attributeMasks the item's masks from AttributeMasks.encodeMenuItem(), or null if it couldn't be encoded.
+     */
+    public void add(int itemId, long[] attributeMasks) {
+        allItems.set(itemId);
+        if (attributeMasks == null) {
+            unindexed.set(itemId);
+            return;
+        }
+        for (Filter filter : Filter.values()) {
+            int f = filter.ordinal();
+            long mask = attributeMasks[f];
+            if ((mask & AttributeMasks.absentForbiddenMask(filter)) == 0) absent[f].set(itemId);
+
+            //Walk the set bits of the mask: lowest set bit each round, then clear it.
+            while (mask != 0) {
+                int bit = Long.numberOfTrailingZeros(mask);
+                if (postings[f][bit] == null) postings[f][bit] = new BitSet();
+                postings[f][bit].set(itemId);
+                mask &= mask - 1;
+            }
+        }
+    }
+
+    /**
+     * Gets the ids of every item in the index, as the starting candidates for a search.
+     * @return a new BitSet of all item ids
+     */
+    public BitSet allItemIds() {
+        return (BitSet) allItems.clone();
+    }
+
+    /**
+     * Gets the ids of every item whose attributes are held by the index.
+     * @return a new BitSet of item ids
+     */
+    public BitSet indexedItemIds() {
+        BitSet indexed = (BitSet) allItems.clone();
+        indexed.andNot(unindexed);
+        return indexed;
+    }
+
+    /**
+     * Gets the ids of every item whose attributes couldn't be encoded, so aren't held by the index.
+     * @return a new BitSet of item ids
+     */
+    public BitSet unindexedItemIds() {
+        return (BitSet) unindexed.clone();
+    }
+
+    /**
+     * Identifies whether a plan's predicate can be answered from posting lists.
+     * @param plan the compiled search criteria; must be encoded
+     * @param index position of the predicate in the plan
+     * @return true for attribute predicates, false for PRICE_RANGE
+     */
+    public boolean canNarrow(CompiledQuery plan, int index) {
+        return plan.kindAt(index) != CompiledQuery.PredicateKind.PRICE_RANGE;
+    }
+
+    /**
+     * Narrows candidate item ids to those passing one attribute predicate, using its posting lists.
+     * <p>Unindexed items are kept as candidates; the caller must check them itself (see isIndexed()).
+     * @param candidates the candidate ids; modified in place
+     * @param plan the compiled search criteria; must be encoded
+     * @param index position of the predicate in the plan; canNarrow() must be true
+     */
+    public void narrow(BitSet candidates, CompiledQuery plan, int index) {
+        int f = plan.filterAt(index).ordinal();
+        switch (plan.kindAt(index)) {
+            case MUST_BE_ABSENT -> candidates.and(absent[f]);
+            case VALUE_EQUALS, SET_CONTAINS, SET_INTERSECTS -> {
+                long mask = plan.operandAt(index);
+                //A single value's posting is ANDed in directly, with no union to allocate.
+                if (Long.bitCount(mask) == 1) {
+                    BitSet posting = postings[f][Long.numberOfTrailingZeros(mask)];
+                    if (posting == null) candidates.clear();
+                    else candidates.and(posting);
+                } else {
+                    candidates.and(unionOfPostings(f, mask));
+                }
+            }
+            case PRICE_RANGE -> throw new IllegalArgumentException("Price ranges are not held by the PostingIndex");
+        }
+        candidates.or(unindexed);
+    }
+
+    /**
+     * Finds the indexed items passing one attribute predicate.
+     * <p>Unlike narrow(), unindexed items are left out, since their values are unknown to the index.
+     * @param plan the compiled search criteria; must be encoded
+     * @param index position of the predicate in the plan; canNarrow() must be true
+     * @return a new BitSet of item ids
+     */
+    public BitSet idsPassing(CompiledQuery plan, int index) {
+        int f = plan.filterAt(index).ordinal();
+        return switch (plan.kindAt(index)) {
+            case MUST_BE_ABSENT -> (BitSet) absent[f].clone();
+            case VALUE_EQUALS, SET_CONTAINS, SET_INTERSECTS -> unionOfPostings(f, plan.operandAt(index));
+            case PRICE_RANGE -> throw new IllegalArgumentException("Price ranges are not held by the PostingIndex");
+        };
+    }
+
+    /**
+     * Counts, for every value of a Filter, how many of a set of items hold it.
+     * <p>Each count is the size of the intersection of the value's posting with the items, so the cost is one
+     * pass over the postings of the values that occur; no item is looked at.
+     * <p>Includes 'NONE' (the absent posting) if the Filter allows it, and the Filter's 'I don't mind' value,
+     * which every one of the items satisfies.
+     * @param filter the Filter
+     * @param itemIds the items to count within
+     * @param scratch working space, overwritten; saves allocating one per value
+     * @return a new Map of value (as in getAllIngredientTypes()) to count; values held by no item are left out
+     */
+    public Map<Object, Integer> countValues(Filter filter, BitSet itemIds, BitSet scratch) {
+        int f = filter.ordinal();
+        Map<Object, Integer> counts = new HashMap<>();
+        for (int bit = 0; bit < postings[f].length; bit++) {
+            if (postings[f][bit] == null) continue;
+            Object value = AttributeMasks.valueOf(dictionary, filter, bit);
+            if (value != null) counts.put(value, intersectionSize(itemIds, postings[f][bit], scratch));
+        }
+        if (filter.allowsNoneChoice()) counts.put(SpecialChoice.NONE, intersectionSize(itemIds, absent[f], scratch));
+        if (filter.allowsDontMindChoice()) counts.put(filter.getDontMindValue(), itemIds.cardinality());
+        return counts;
+    }
+
+    /**
+     * Identifies whether an item's attributes are held by the index.
+     * @param itemId the item's id
+     * @return true if indexed, false if the caller must check the item itself.
+     */
+    public boolean isIndexed(int itemId) {
+        return !unindexed.get(itemId);
+    }
+
+    /**
+     * Counts the ids in both of two BitSets, without modifying either.
+     * @param a the first BitSet
+     * @param b the second BitSet
+     * @param scratch working space, overwritten
+     * @return size of the intersection
+     */
+    private static int intersectionSize(BitSet a, BitSet b, BitSet scratch) {
+        scratch.clear();
+        scratch.or(a);
+        scratch.and(b);
+        return scratch.cardinality();
+    }
+
+    /**
+     * Combines the postings of every value in a mask for one Filter.
+     * @param filterOrdinal the Filter's ordinal
+     * @param mask the values' bits
+     * @return a new BitSet of item ids holding at least one of the values.
+     */
+    private BitSet unionOfPostings(int filterOrdinal, long mask) {
+        BitSet union = new BitSet();
+        while (mask != 0) {
+            BitSet posting = postings[filterOrdinal][Long.numberOfTrailingZeros(mask)];
+            if (posting != null) union.or(posting);
+            mask &= mask - 1;
+        }
+        return union;
+    }
+}
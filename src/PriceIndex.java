@@ -0,0 +1,115 @@
+import java.util.*;
+
+/**
+ * Index of a Menu's item prices, sorted so a min/max price range is found by binary search.
+ * <p>Held as two parallel primitive arrays: the prices in ascending order, and the id of the item with each price.
+ * Items are appended as they're added to the Menu; the arrays are re-sorted on the first lookup after a change.
+ * <p>Thread-safe.
+ */
+public final class PriceIndex {
+    private double[] sortedPrices = new double[0];
+    private int[] sortedIds = new int[0];
+    // Prices by item id, in the order they were added.
+    private double[] pricesById = new double[16];
+    private int size;
+    private boolean sorted = true;
+
+    /**
+     * Adds an item's price to the index.
+     * @param itemId the item's id (its position in the Menu)
+     * @param price the item's price
+     */
+    public synchronized void add(int itemId, double price) {
+        if (itemId >= pricesById.length) {
+            pricesById = Arrays.copyOf(pricesById, Math.max(itemId + 1, pricesById.length * 2));
+        }
+        pricesById[itemId] = price;
+        size = Math.max(size, itemId + 1);
+        sorted = false;
+    }
+
+    /**
+     * Counts the items priced within a range, without listing them.
+     * @param minPrice lowest price, inclusive
+     * @param maxPrice highest price, inclusive
+     * @return number of items with minPrice <= price <= maxPrice
+     */
+    public synchronized int countInRange(double minPrice, double maxPrice) {
+        ensureSorted();
+        return Math.max(0, upperBound(maxPrice) - lowerBound(minPrice));
+    }
+
+    /**
+     * Finds the ids of the items priced within a range.
+     * @param minPrice lowest price, inclusive
+     * @param maxPrice highest price, inclusive
+     * @return a new BitSet of item ids with minPrice <= price <= maxPrice
+     */
+    public synchronized BitSet idsInRange(double minPrice, double maxPrice) {
+        ensureSorted();
+        BitSet ids = new BitSet(size);
+        int end = upperBound(maxPrice);
+        for (int i = lowerBound(minPrice); i < end; i++) {
+            ids.set(sortedIds[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the number of items held by the index.
+     * @return int
+     */
+    public synchronized int size() {return size;}
+
+    /**
+     * Re-sorts the parallel arrays if items were added since the last sort.
+     * <p>Called by every lookup; call it directly to sort ahead of the first lookup after adding items.
+     */
+    public synchronized void ensureSorted() {
+        if (sorted) return;
+        //Boxed ids just for the sort, since there's no primitive sort with a comparator; lookups stay primitive.
+        Integer[] ids = new Integer[size];
+        for (int i = 0; i < size; i++) ids[i] = i;
+        Arrays.sort(ids, Comparator.comparingDouble(id -> pricesById[id]));
+
+        sortedPrices = new double[size];
+        sortedIds = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedIds[i] = ids[i];
+            sortedPrices[i] = pricesById[ids[i]];
+        }
+        sorted = true;
+    }
+
+    /**
+     * Binary search for the first position whose price is >= the given price.
+     * @param price the price
+     * @return position in sortedPrices, or size if every price is lower
+     */
+    private int lowerBound(double price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] < price) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first position whose price is > the given price.
+     * @param price the price
+     * @return position in sortedPrices, or size if no price is higher
+     */
+    private int upperBound(double price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= price) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -6,7 +6,9 @@ import java.util.List;
 /**
  * Panel showing the results screen.
  * <p>Shows a scrollable list of MenuItemPanels that match the user's search criteria,
- * or the full menu if no matches were found.
+ * or the closest alternatives if no matches were found.
+ * <p>Matches arrive a page at a time: the first page shows straight away, and the listener is asked for the next
+ * page whenever the user scrolls near the end of those shown (or they don't fill the view).
  * <p>Allows the user to select >=1 items via checkboxes and then proceed to the order creation view
  * or return to the search view.
  */
@@ -14,6 +16,7 @@ public final class ResultsPanel {
     private final JPanel corePanel;
     private final JLabel titleLabel;
     private final JPanel itemsListPanel;
+    private final JScrollPane scrollPane;
     private final JButton proceedButton;
     private final JButton backButton;
 
@@ -22,6 +25,13 @@ public final class ResultsPanel {
     //Store the MenuItemPanels to display.
     private final List<MenuItemPanel> menuItemPanels = new ArrayList<>();
 
+    // Whether the listener has more results to give, and whether they've already been asked for.
+    private boolean moreResultsAvailable;
+    private boolean moreResultsRequested;
+
+    // Ask for the next page when the user scrolls within this many pixels of the end of the results.
+    private static final int LOAD_MORE_THRESHOLD_PX = 200;
+
     /**
      * Constructor for the search results panel.
      * <p>Initialises all GUI components and composes final layout.
@@ -36,11 +46,12 @@ public final class ResultsPanel {
         itemsListPanel = new JPanel();
         itemsListPanel.setLayout(new BoxLayout(itemsListPanel, BoxLayout.Y_AXIS));
 
-        JScrollPane scrollPane = new JScrollPane(itemsListPanel);
+        scrollPane = new JScrollPane(itemsListPanel);
         scrollPane.setBorder(BorderFactory.createEtchedBorder());
         //Default scroll is so slow! Fix from:
         //https://stackoverflow.com/questions/10119587/how-to-increase-the-slow-scroll-speed-on-a-jscrollpane
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> requestMoreResultsIfNearEnd());
 
         backButton = new JButton("Back to Search");
         proceedButton = new JButton("Confirm Selection and Order");
@@ -89,34 +100,73 @@ public final class ResultsPanel {
         });
     }
 
+    /**
+     * Clears any previous search results and shows a complete list of MenuItems, with no more to come.
+     * @param items List of MenuItems to display
+     * @param title String of the title text
+     */
+    public void displayItems(List<MenuItem> items, String title) {
+        displayItems(items, title, false);
+    }
+
     /**
      * Clears any previous search results and shows a new list of MenuItems.
      * <p>Creates a new MenuItemPanel for each item in the provided List and adds it to the scrollable view.
      * <p>Also updates the title of the panel to indicate search matches/lack thereof.
      * <p>After adding the new components, repaints and revalidates to ensure correct UI display and proportions.
-     * @param items List of MenuItems to display
+     * @param items List of MenuItems to display; the first page if more are available
      * @param title String of the title text
+     * @param moreAvailable true if the listener can provide more results after these
      */
-    public void displayItems(List<MenuItem> items, String title) {
+    public void displayItems(List<MenuItem> items, String title, boolean moreAvailable) {
         //CLEAR ANY ITEMS FROM A PREVIOUS SEARCH
         itemsListPanel.removeAll();
         menuItemPanels.clear();
         titleLabel.setText(title);
+        scrollPane.getVerticalScrollBar().setValue(0);
 
         if (items.isEmpty()) {
             JLabel noItemsLabel = new JLabel("No Items to Display.", SwingConstants.CENTER);
             itemsListPanel.add(noItemsLabel);
-        } else {
-            for (MenuItem item : items) {
-                MenuItemPanel itemPanel = new MenuItemPanel(item);
-                menuItemPanels.add(itemPanel);
-                itemsListPanel.add(itemPanel.getCorePanel());
-                itemsListPanel.add(Box.createRigidArea(new Dimension(0, 5))); //Add a small separator
-            }
         }
+        appendItems(items, moreAvailable);
+    }
+
+    /**
+     * Adds the next page of MenuItems after those already shown.
+     * <p>After adding the new components, repaints and revalidates to ensure correct UI display and proportions.
+     * @param items List of MenuItems to add
+     * @param moreAvailable true if the listener can provide more results after these
+     */
+    public void appendItems(List<MenuItem> items, boolean moreAvailable) {
+        for (MenuItem item : items) {
+            MenuItemPanel itemPanel = new MenuItemPanel(item);
+            menuItemPanels.add(itemPanel);
+            itemsListPanel.add(itemPanel.getCorePanel());
+            itemsListPanel.add(Box.createRigidArea(new Dimension(0, 5))); //Add a small separator
+        }
+        this.moreResultsAvailable = moreAvailable;
+        this.moreResultsRequested = false;
+
         //Explicit instruction to rejig Component proportions to fit new Components and actually show them on screen.
         this.corePanel.revalidate();
         this.corePanel.repaint();
+        //Once laid out, check whether these already reach the end of the view; if so, there's no scroll to wait for.
+        SwingUtilities.invokeLater(this::requestMoreResultsIfNearEnd);
+    }
+
+    /**
+     * Asks the listener for the next page of results if there are more, they haven't already been asked for,
+     * and the user is within LOAD_MORE_THRESHOLD_PX of the end of those shown.
+     */
+    private void requestMoreResultsIfNearEnd() {
+        if (!moreResultsAvailable || moreResultsRequested || listener == null) return;
+        JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+        int distanceToEnd = scrollBar.getMaximum() - (scrollBar.getValue() + scrollBar.getVisibleAmount());
+        if (distanceToEnd <= LOAD_MORE_THRESHOLD_PX) {
+            moreResultsRequested = true;
+            listener.onMoreResultsWanted();
+        }
     }
 
     /**
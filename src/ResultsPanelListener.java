@@ -12,6 +12,12 @@ public interface ResultsPanelListener {
      */
     void onBackButtonPressed();
 
+    /**
+     * Call when the user has scrolled near the end of the displayed results and more are available.
+     * <p>Listener expected to fetch the next page and pass it back with ResultsPanel.appendItems().
+     */
+    void onMoreResultsWanted();
+
     /**
      * Call when user selects one or more items and clicks the "Confirm Selection and Order" button.
      * <p>Listener expected to take the List of selected items and proceed to final order confirmation view.
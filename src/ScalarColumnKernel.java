@@ -0,0 +1,40 @@
+/**
+ * ColumnKernel of plain primitive loops, one item per iteration with no branches or switch per item; use
+ * ColumnKernel.SCALAR.
+ */
+public final class ScalarColumnKernel implements ColumnKernel {
+
+    /**
+     * Package-private constructor; use ColumnKernel.SCALAR.
+     */
+    ScalarColumnKernel() {}
+
+    @Override
+    public long codeWord(int[] codes, long allowed, int from, int to) {
+        long word = 0L;
+        for (int id = from; id < to; id++) {
+            //Shift distances are taken mod 64, so NO_VALUE (-1) reads bit 63.
+            word |= ((allowed >>> codes[id]) & 1L) << (id - from);
+        }
+        return word;
+    }
+
+    @Override
+    public long maskWord(long[] masks, long operand, int from, int to) {
+        long word = 0L;
+        for (int id = from; id < to; id++) {
+            word |= ((masks[id] & operand) != 0 ? 1L : 0L) << (id - from);
+        }
+        return word;
+    }
+
+    @Override
+    public long priceWord(double[] prices, double minPrice, double maxPrice, int from, int to) {
+        long word = 0L;
+        for (int id = from; id < to; id++) {
+            //Non-short-circuit '&' keeps the loop free of branches.
+            word |= (prices[id] >= minPrice & prices[id] <= maxPrice ? 1L : 0L) << (id - from);
+        }
+        return word;
+    }
+}
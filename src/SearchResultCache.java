@@ -0,0 +1,142 @@
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, least-recently-used cache of search results, keyed by a canonical form of the search criteria.
+ * <p>Kiosk customers repeat a handful of searches, so repeats skip the Menu entirely.
+ * <p>Holds each search as a SearchResultCursor from the moment it's run, so a repeat is answered from what the
+ * search has found however far it was paged: its known matches are served without checking, and only items
+ * past them are checked, if the repeat is paged further (see SearchResultCursor.fromStart()).
+ * <p>Results belong to one version of one Menu (see Menu.getVersion()). The cache empties itself when it's
+ * asked about a different Menu, or the same Menu after items were added.
+ * <p>Thread-safe.
+ */
+public final class SearchResultCache {
+    private final int capacity;
+    // Access-ordered, so the eldest entry is the least recently used.
+    private final LinkedHashMap<SearchKey, SearchResultCursor> results;
+
+    // The Menu and Menu version the cached results were found on.
+    private Menu cachedMenu;
+    private long cachedMenuVersion;
+
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Canonical, hashable form of search criteria. Equal criteria give equal keys, however their values
+     * were collected.
+     * @param filters immutable Map of the criteria's FilterValues
+     * @param minPrice the criteria's min price
+     * @param maxPrice the criteria's max price
+     */
+    public record SearchKey(Map<Filter, FilterValue> filters, double minPrice, double maxPrice) {
+
+        /**
+         * Builds the canonical key for search criteria.
+         * @param criteria DreamMenuItem representing the user's search criteria
+         * @return SearchKey
+         */
+        public static SearchKey of(DreamMenuItem criteria) {
+            //FilterValues are already canonical: immutable, with Collections holding 'NONE' reduced to NONE.
+            return new SearchKey(criteria.getAllFilters(), criteria.getMinPrice(), criteria.getMaxPrice());
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     * @param capacity max number of searches to hold results for; must be positive.
+     */
+    public SearchResultCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        //LinkedHashMap LRU idea from https://docs.oracle.com/javase/8/docs/api/java/util/LinkedHashMap.html#removeEldestEntry-java.util.Map.Entry-
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SearchKey, SearchResultCursor> eldest) {
+                return size() > SearchResultCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a cursor over the cached results of a search on a Menu, or runs the search and caches its cursor.
+     * <p>Any cached results from another Menu, or an older version of this one, are discarded first.
+     * @param menu the Menu being searched
+     * @param criteria DreamMenuItem representing the user's search criteria
+     * @param search runs the search on the menu if the results aren't cached
+     * @return SearchResultCursor at the start of the matching MenuItems
+     */
+    public synchronized SearchResultCursor getOrSearch(Menu menu, DreamMenuItem criteria,
+                                                       Supplier<SearchResultCursor> search) {
+        SearchResultCursor cached = getIfCached(menu, criteria);
+        if (cached != null) return cached;
+        SearchResultCursor found = search.get();
+        put(menu, criteria, found);
+        return found;
+    }
+
+    /**
+     * Gets a cursor over the cached results of a search on a Menu, if there are any; counts as a hit or a miss.
+     * <p>Any cached results from another Menu, or an older version of this one, are discarded first.
+     * @param menu the Menu being searched
+     * @param criteria DreamMenuItem representing the user's search criteria
+     * @return SearchResultCursor at the start of the matching MenuItems, <b>or null</b> if they aren't cached.
+     */
+    public synchronized SearchResultCursor getIfCached(Menu menu, DreamMenuItem criteria) {
+        discardIfStale(menu);
+        SearchResultCursor cached = results.get(SearchKey.of(criteria));
+        if (cached != null) hitCount++;
+        else missCount++;
+        return cached == null ? null : cached.fromStart();
+    }
+
+    /**
+     * Caches a search on a Menu as soon as it's run; later cursors over it share whatever it goes on to find.
+     * @param menu the Menu that was searched
+     * @param criteria DreamMenuItem representing the user's search criteria
+     * @param found a cursor over the search's results, however far it has been paged
+     */
+    public synchronized void put(Menu menu, DreamMenuItem criteria, SearchResultCursor found) {
+        discardIfStale(menu);
+        results.put(SearchKey.of(criteria), found);
+    }
+
+    /**
+     * Empties the cache if it holds results from another Menu, or an older version of this one.
+     * @param menu the Menu being searched
+     */
+    private void discardIfStale(Menu menu) {
+        if (menu != cachedMenu || menu.getVersion() != cachedMenuVersion) {
+            results.clear();
+            cachedMenu = menu;
+            cachedMenuVersion = menu.getVersion();
+        }
+    }
+
+    /**
+     * Discards every cached result. Hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        results.clear();
+        cachedMenu = null;
+    }
+
+    /**
+     * Gets the number of searches answered from the cache.
+     * @return long
+     */
+    public synchronized long getHitCount() {return hitCount;}
+
+    /**
+     * Gets the number of searches that had to be run on the Menu.
+     * @return long
+     */
+    public synchronized long getMissCount() {return missCount;}
+
+    /**
+     * Gets the number of searches currently cached.
+     * @return int
+     */
+    public synchronized int size() {return results.size();}
+}
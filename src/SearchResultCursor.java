@@ -0,0 +1,151 @@
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Page-by-page cursor over the results of a search, so the first page can be shown before the rest are found.
+ * <p>Walks candidate item ids in ascending (menu) order, checking each only when a page needs it, so the time to
+ * the first page depends on the page size rather than on how many items match.
+ * <p>Always holds the next match in advance, so hasMore() is exact.
+ * <p>Calls back after each batch of checks (i.e. each page), e.g. so the Menu can record the search's selectivity
+ * statistics as it goes, however far the cursor is paged before it's dropped.
+ * <p>Remembers which ids it has found to match and how far it has checked, so a later search with narrower or
+ * wider criteria can start from what this one already knows (see possibleMatchIds() and knownMatchIds()).
+ * <p>What it has found is shared with the cursors from fromStart(), so a repeat of the search pages through the
+ * known matches without checking them again, and checks the rest only if it gets further (see SearchResultCache).
+ * <p>Not thread-safe, nor are cursors sharing a search with each other; intended for use from a single thread
+ * (e.g. the Swing EDT).
+ */
+public final class SearchResultCursor {
+    private final Search search;
+    private int nextMatchId; //-1 once there are no more matches
+
+    /**
+     * What one search has found so far, shared by every cursor over its results.
+     */
+    private static final class Search {
+        private final BitSet candidates;
+        private final IntPredicate isMatch;
+        private final IntFunction<MenuItem> itemById;
+        private final Runnable afterChecking;
+        // Ids found to match so far, including each cursor's nextMatchId.
+        private final BitSet matchedIds = new BitSet();
+        // Every candidate below this id has been checked.
+        private int checkedTo;
+
+        /**
+         * Creates a search that has checked nothing yet; see the SearchResultCursor constructors.
+         */
+        private Search(BitSet candidates, IntPredicate isMatch, IntFunction<MenuItem> itemById,
+                       Runnable afterChecking) {
+            this.candidates = candidates;
+            this.isMatch = isMatch;
+            this.itemById = itemById;
+            this.afterChecking = afterChecking;
+        }
+
+        /**
+         * Finds the first matching candidate at or after an id: a known match if there is one, otherwise by
+         * checking candidates from where checking stopped, recording them as checked and matched.
+         * @param fromId the id to start at
+         * @return the matching id, or -1 if there are none
+         */
+        private int findMatchFrom(int fromId) {
+            //Every known match is below checkedTo, and candidates below it that aren't known matches don't match.
+            int known = matchedIds.nextSetBit(fromId);
+            if (known >= 0) return known;
+            for (int id = candidates.nextSetBit(Math.max(fromId, checkedTo)); id >= 0;
+                 id = candidates.nextSetBit(id + 1)) {
+                if (isMatch.test(id)) {
+                    matchedIds.set(id);
+                    checkedTo = id + 1;
+                    return id;
+                }
+            }
+            checkedTo = Integer.MAX_VALUE;
+            return -1;
+        }
+    }
+
+    /**
+     * Creates a cursor over the candidates that pass a check.
+     * @param candidates ids of the items that may match; not modified
+     * @param isMatch checks whether a candidate id matches
+     * @param itemById gets the MenuItem with an id
+     */
+    public SearchResultCursor(BitSet candidates, IntPredicate isMatch, IntFunction<MenuItem> itemById) {
+        this(candidates, isMatch, itemById, () -> {});
+    }
+
+    /**
+     * Creates a cursor over the candidates that pass a check, calling back after each batch of checks.
+     * @param candidates ids of the items that may match; not modified
+     * @param isMatch checks whether a candidate id matches
+     * @param itemById gets the MenuItem with an id
+     * @param afterChecking called once the first match has been found, and after each page
+     */
+    public SearchResultCursor(BitSet candidates, IntPredicate isMatch, IntFunction<MenuItem> itemById,
+                              Runnable afterChecking) {
+        this(new Search(candidates, isMatch, itemById, afterChecking));
+    }
+
+    /**
+     * Creates a cursor at the start of a search's results.
+     * @param search the search, sharing what it has found so far
+     */
+    private SearchResultCursor(Search search) {
+        this.search = search;
+        this.nextMatchId = search.findMatchFrom(0);
+        search.afterChecking.run();
+    }
+
+    /**
+     * Creates a cursor at the start of this one's results, sharing what this one has found: matches already
+     * found aren't checked again, and matches either cursor goes on to find are known to both.
+     * @return a new SearchResultCursor
+     */
+    public SearchResultCursor fromStart() {
+        return new SearchResultCursor(search);
+    }
+
+    /**
+     * Finds up to the next pageSize results.
+     * @param pageSize max number of results to return; must be positive
+     * @return immutable List of the next results, in menu order; empty if there are no more.
+     */
+    public List<MenuItem> nextPage(int pageSize) {
+        if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        List<MenuItem> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize && nextMatchId >= 0) {
+            page.add(search.itemById.apply(nextMatchId));
+            nextMatchId = search.findMatchFrom(nextMatchId + 1);
+        }
+        search.afterChecking.run();
+        return List.copyOf(page);
+    }
+
+    /**
+     * Identifies whether there are more results to page through.
+     * @return true if nextPage() would return at least one result
+     */
+    public boolean hasMore() {return nextMatchId >= 0;}
+
+    /**
+     * Gets the ids of every item that may match: those found to match so far and the candidates not yet checked.
+     * <p>A superset of all the results, however far the cursor has been paged.
+     * @return a new BitSet of ids
+     */
+    public BitSet possibleMatchIds() {
+        BitSet possible = (BitSet) search.candidates.clone();
+        possible.clear(0, search.checkedTo);
+        possible.or(search.matchedIds);
+        return possible;
+    }
+
+    /**
+     * Gets the ids of the items found to match so far.
+     * <p>A subset of all the results, however far the cursor has been paged.
+     * @return a new BitSet of ids
+     */
+    public BitSet knownMatchIds() {return (BitSet) search.matchedIds.clone();}
+}
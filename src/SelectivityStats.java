@@ -0,0 +1,197 @@
+import java.util.*;
+
+/**
+ * Runtime statistics on how selective each search predicate is for one Menu, used to order CompiledQuery plans.
+ * <p>Tracks, per predicate (Filter, kind and chosen values), how many items it was evaluated on and how many it
+ * rejected. Samples come from Menu.findMatch(): exactly from each posting list intersection, and from every
+ * SAMPLE_INTERVAL-th item checked one by one, gathered in a Tally per search and recorded once.
+ * <p>Plans are ordered so predicates with the highest rejection rate per unit of evaluation cost run first.
+ * Predicates with no samples keep their Filter.searchOrder() position relative to each other.
+ * <p>Belongs to a single Menu, so a reloaded Menu starts adapting from scratch. Thread-safe.
+ */
+public final class SelectivityStats {
+    /**
+     * Every nth item checked one by one has all its predicates evaluated to sample their rejection rates.
+     */
+    public static final int SAMPLE_INTERVAL = 16;
+
+    //Rejection rate assumed for predicates that haven't been sampled yet.
+    private static final double PRIOR_REJECTION_RATE = 0.5;
+
+    // Counters per predicate: [0] evaluated, [1] rejected.
+    private final Map<PredicateKey, long[]> counters = new HashMap<>();
+
+    // Totals of items checked one by one, and predicates evaluated on them, to report the plan's efficiency.
+    private long itemsEvaluated;
+    private long predicatesEvaluated;
+
+    /**
+     * Identifies a predicate independently of its position in a plan.
+     * @param kind the predicate's kind
+     * @param filter its Filter (null for PRICE_RANGE)
+     * @param operand its operand mask (0 for PRICE_RANGE, so all price ranges share one entry)
+     */
+    private record PredicateKey(CompiledQuery.PredicateKind kind, Filter filter, long operand) {
+        private static PredicateKey of(CompiledQuery plan, int index) {
+            return new PredicateKey(plan.kindAt(index), plan.filterAt(index), plan.operandAt(index));
+        }
+    }
+
+    /**
+     * Counts gathered while checking items one by one against a plan, kept apart from the statistics until the
+     * search passes them to record(), so checking an item never takes the statistics' lock.
+     * <p>Counts are by position in the plan rather than by predicate, so recording a sample is two array
+     * increments.
+     * <p>Not thread-safe: a parallel search gives each fork/join task its own, and merges them as the tasks join.
+     */
+    public static final class Tally {
+        private final CompiledQuery plan;
+        // Per position in the plan, the sampled items its predicate was evaluated on, and how many it rejected.
+        private final long[] sampled;
+        private final long[] rejected;
+        // Unsampled items checked, and predicates evaluated on them.
+        private long itemsEvaluated;
+        private long predicatesEvaluated;
+
+        /**
+         * Creates an empty Tally for a plan.
+         * @param plan the ordered plan being run
+         */
+        public Tally(CompiledQuery plan) {
+            this.plan = plan;
+            this.sampled = new long[plan.size()];
+            this.rejected = new long[plan.size()];
+        }
+
+        /**
+         * Counts one predicate's result on a sampled item.
+         * @param index the predicate's position in the plan
+         * @param rejected true if the predicate rejected the item
+         */
+        public void recordSample(int index, boolean rejected) {
+            sampled[index]++;
+            if (rejected) this.rejected[index]++;
+        }
+
+        /**
+         * Counts an unsampled item checked one by one.
+         * @param predicates number of predicates evaluated on it
+         */
+        public void recordEvaluation(int predicates) {
+            itemsEvaluated++;
+            predicatesEvaluated += predicates;
+        }
+
+        /**
+         * Adds another Tally's counts for the same plan to this one's, e.g. when fork/join tasks join.
+         * @param other the other Tally; not modified
+         */
+        public void merge(Tally other) {
+            for (int i = 0; i < sampled.length; i++) {
+                sampled[i] += other.sampled[i];
+                rejected[i] += other.rejected[i];
+            }
+            itemsEvaluated += other.itemsEvaluated;
+            predicatesEvaluated += other.predicatesEvaluated;
+        }
+
+        /**
+         * Zeroes every count.
+         */
+        private void clear() {
+            Arrays.fill(sampled, 0);
+            Arrays.fill(rejected, 0);
+            itemsEvaluated = 0;
+            predicatesEvaluated = 0;
+        }
+    }
+
+    /**
+     * Orders a plan's predicates by estimated rejection rate per unit cost, highest first.
+     * @param query the compiled search criteria
+     * @return a reordered CompiledQuery (or the same one if its order is already best)
+     */
+    public synchronized CompiledQuery order(CompiledQuery query) {
+        Integer[] order = new Integer[query.size()];
+        double[] rank = new double[query.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            rank[i] = rejectionRate(PredicateKey.of(query, i)) / evaluationCost(query.kindAt(i));
+        }
+        //Stable sort, so unsampled predicates keep their Filter.searchOrder() order.
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> rank[i]).reversed());
+        return query.reorder(order);
+    }
+
+    /**
+     * Records the result of narrowing candidates by one predicate's posting list.
+     * @param plan the plan being run
+     * @param index the predicate's position in the plan
+     * @param before number of candidates before the predicate was applied
+     * @param after number of candidates after
+     */
+    public synchronized void recordIndexed(CompiledQuery plan, int index, int before, int after) {
+        long[] counter = counters.computeIfAbsent(PredicateKey.of(plan, index), k -> new long[2]);
+        counter[0] += before;
+        counter[1] += Math.max(0, before - after);
+    }
+
+    /**
+     * Merges the counts a search gathered into the statistics, and clears them to gather more.
+     * @param tally the search's counts
+     */
+    public synchronized void record(Tally tally) {
+        for (int i = 0; i < tally.sampled.length; i++) {
+            if (tally.sampled[i] == 0) continue;
+            long[] counter = counters.computeIfAbsent(PredicateKey.of(tally.plan, i), k -> new long[2]);
+            counter[0] += tally.sampled[i];
+            counter[1] += tally.rejected[i];
+        }
+        itemsEvaluated += tally.itemsEvaluated;
+        predicatesEvaluated += tally.predicatesEvaluated;
+        tally.clear();
+    }
+
+    /**
+     * Gets the average number of predicates evaluated per item checked one by one, since the last reset.
+     * <p>Lower is better: the most rejecting predicates are running first.
+     * @return average predicates per item, or 0 if no items have been checked
+     */
+    public synchronized double getAveragePredicatesPerItem() {
+        return itemsEvaluated == 0 ? 0 : (double) predicatesEvaluated / itemsEvaluated;
+    }
+
+    /**
+     * Discards all statistics; called when the Menu's contents change.
+     */
+    public synchronized void reset() {
+        counters.clear();
+        itemsEvaluated = 0;
+        predicatesEvaluated = 0;
+    }
+
+    /**
+     * Estimates a predicate's rejection rate from its counters.
+     * @param key the predicate
+     * @return rejection rate in [0, 1]
+     */
+    private double rejectionRate(PredicateKey key) {
+        long[] counter = counters.get(key);
+        if (counter == null || counter[0] == 0) return PRIOR_REJECTION_RATE;
+        return (double) counter[1] / counter[0];
+    }
+
+    /**
+     * Relative cost of evaluating one predicate on one item.
+     * <p>Attribute predicates are a single mask operation; the price check has to load the MenuItem.
+     * These take nanoseconds--far below what System.nanoTime() can sample per predicate--so they are fixed.
+     * @param kind the predicate's kind
+     * @return relative cost, where a mask operation is 1
+     */
+    private static double evaluationCost(CompiledQuery.PredicateKind kind) {
+        return switch (kind) {
+            case VALUE_EQUALS, SET_CONTAINS, SET_INTERSECTS, MUST_BE_ABSENT -> 1.0;
+            case PRICE_RANGE -> 2.0;
+        };
+    }
+}
@@ -0,0 +1,112 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Append-only store of text held as UTF-8 off the heap, for long text that's rarely read, e.g. item descriptions.
+ * <p>Each String added is encoded into direct ByteBuffers ('chunks'), and identified by a long handle packing
+ * its chunk, its offset in the chunk and its length; text longer than CHUNK_BYTES gets a chunk of its own. So the
+ * heap holds one long per String rather than a String and its array, and the garbage collector has nothing to
+ * trace however much text there is. Strings are only decoded by get(), e.g. when an item is displayed.
+ * <p>The first chunk is small, and each one after is twice the size of the last, up to CHUNK_BYTES, so a store
+ * holding little text (e.g. one item's description) only takes a little memory.
+ * <p>A Menu's items share one store; its memory is freed once the store and every item holding one of its handles
+ * are garbage collected (e.g. after the menu is reloaded).
+ * <p>Thread-safe: the chunks of a parallel parse add to one store.
+ */
+public final class TextStore {
+    // Largest size of a shared chunk; also the offset field's range.
+    private static final int CHUNK_BYTES = 1 << 20;
+    // Smallest size of the first chunk; it's bigger if the first text added is.
+    private static final int FIRST_CHUNK_BYTES = 1 << 10;
+    // Handle layout, high to low: chunk index (20 bits), offset in the chunk (20 bits), length (24 bits).
+    private static final int OFFSET_BITS = 20;
+    private static final int LENGTH_BITS = 24;
+    private static final int MAX_CHUNKS = 1 << 20;
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    // The chunk being filled, and its index, or null before the first add(); text goes in at its position.
+    private ByteBuffer current;
+    private int currentIndex;
+    // Total bytes of text held.
+    private long size;
+
+    /**
+     * Adds a String to the store.
+     * @param text the String
+     * @return the handle to get() it back by
+     * @throws IllegalArgumentException if its UTF-8 encoding is longer than 16 MB
+     */
+    public long add(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        return add(ByteBuffer.wrap(utf8), 0, utf8.length);
+    }
+
+    /**
+     * Adds UTF-8 bytes as they are, without decoding them, e.g. from a memory-mapped file.
+     * @param source the buffer holding the bytes, read by absolute index only; its position isn't changed
+     * @param index index of the first byte
+     * @param length number of bytes
+     * @return the handle to get() the String back by
+     * @throws IllegalArgumentException if the text is longer than 16 MB
+     */
+    public synchronized long add(ByteBuffer source, int index, int length) {
+        if (length > MAX_LENGTH) throw new IllegalArgumentException("Text of " + length + " bytes is too long to store");
+        int chunkIndex;
+        ByteBuffer chunk;
+        if (length > CHUNK_BYTES) {
+            //Gets a chunk of its own, exactly its size; the current chunk carries on being filled.
+            chunk = newChunk(length);
+            chunkIndex = chunks.size() - 1;
+        } else {
+            if (current == null || current.remaining() < length) {
+                int capacity = current == null ? FIRST_CHUNK_BYTES : Math.min(CHUNK_BYTES, current.capacity() * 2);
+                //Powers of two up to CHUNK_BYTES, so this stops there at the latest.
+                while (capacity < length) capacity *= 2;
+                current = newChunk(capacity);
+                currentIndex = chunks.size() - 1;
+            }
+            chunk = current;
+            chunkIndex = currentIndex;
+        }
+        int offset = chunk.position();
+        chunk.put(offset, source, index, length);
+        chunk.position(offset + length);
+        size += length;
+        return ((long) chunkIndex << (OFFSET_BITS + LENGTH_BITS)) | ((long) offset << LENGTH_BITS) | length;
+    }
+
+    /**
+     * Gets a String back from the store, decoding it from UTF-8.
+     * @param handle the handle add() returned
+     * @return the String
+     */
+    public synchronized String get(long handle) {
+        int length = (int) (handle & MAX_LENGTH);
+        int offset = (int) ((handle >>> LENGTH_BITS) & (CHUNK_BYTES - 1));
+        ByteBuffer chunk = chunks.get((int) (handle >>> (OFFSET_BITS + LENGTH_BITS)));
+        byte[] utf8 = new byte[length];
+        chunk.get(offset, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of bytes of text held, excluding space left at the end of each chunk.
+     * @return bytes
+     */
+    public synchronized long sizeInBytes() {return size;}
+
+    /**
+     * Allocates a new chunk and appends it to the chunks.
+     * @param capacity the chunk's size in bytes
+     * @return the chunk
+     * @throws IllegalStateException if the store already has as many chunks as a handle can address
+     */
+    private ByteBuffer newChunk(int capacity) {
+        if (chunks.size() == MAX_CHUNKS) throw new IllegalStateException("Text store is full");
+        ByteBuffer chunk = ByteBuffer.allocateDirect(capacity);
+        chunks.add(chunk);
+        return chunk;
+    }
+}